@@ -0,0 +1,239 @@
+package com.project.edlink.config;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Slow-consumer policy for STOMP sessions, on top of Spring's per-session send-time and
+ * buffer limits (which close the session outright).
+ *
+ * Every session is wrapped to time the socket write in progress. A session whose current
+ * write has been running longer than stall-ms is stalled: presence and typing frames for it
+ * are dropped before they reach the outbound queue, chat frames still go (counted as delayed). A write
+ * stuck longer than evict-ms closes the session with a reason telling the client to reconnect
+ * and resume from its last message id. evict-ms sits below the send-time limit, so we evict
+ * before Spring terminates the session without a hint.
+ *
+ * A stalled session holds exactly one outbound thread, the one blocked in its write; frames
+ * queued for it meanwhile go into Spring's per-session buffer. So once more sessions stall than
+ * the outbound pool has threads, healthy sessions stop getting frames. To keep them flowing at
+ * most max-stalled sessions may sit in a stalled write: past that, the longest-stalled ones are
+ * evicted at the next check instead of after evict-ms. Closing a session can itself block on
+ * the stuck write, so closes run on their own small "ws-evict" pool, never on the scheduler.
+ */
+@Component
+public class SlowConsumerGuard {
+
+    // Frames a stalled client can afford to miss; the next transition or poll corrects them
+    private static final List<String> DROPPABLE_PREFIXES = List.of("/topic/presence.", "/topic/typing.");
+
+    static final CloseStatus SLOW_CONSUMER = CloseStatus.SESSION_NOT_RELIABLE
+            .withReason("slow consumer; reconnect and resume after your last message id");
+
+    private final long stallNanos;
+    private final long evictNanos;
+    private final int maxStalled;
+
+    private final ThreadPoolExecutor closer;
+
+    private final Map<String, TrackedSession> sessions = new ConcurrentHashMap<>();
+
+    private final LongAdder droppedFrames = new LongAdder();
+    private final LongAdder delayedFrames = new LongAdder();
+    private final LongAdder evictedSessions = new LongAdder();
+    private final LongAdder earlyEvictions = new LongAdder();
+    private final LongAdder failedCloses = new LongAdder();
+
+    /**
+     * @param maxStalled sessions allowed in a stalled write at once; 0 means the number of
+     *                   processors, half of the default outbound pool
+     */
+    public SlowConsumerGuard(@Value("${edlink.ws.slow-consumer.stall-ms:1000}") long stallMillis,
+                             @Value("${edlink.ws.slow-consumer.evict-ms:5000}") long evictMillis,
+                             @Value("${edlink.ws.slow-consumer.max-stalled:0}") int maxStalled) {
+        this.stallNanos = stallMillis * 1_000_000;
+        this.evictNanos = evictMillis * 1_000_000;
+        this.maxStalled = maxStalled > 0 ? maxStalled : Runtime.getRuntime().availableProcessors();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.closer = new ThreadPoolExecutor(4, 4, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "ws-evict-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.closer.allowCoreThreadTimeOut(true);
+    }
+
+    public WebSocketHandlerDecoratorFactory decoratorFactory() {
+        return handler -> new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                TrackedSession tracked = new TrackedSession(session);
+                sessions.put(session.getId(), tracked);
+                super.afterConnectionEstablished(tracked);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * Outbound channel interceptor. Runs on the sending thread, before the frame is queued.
+     */
+    public ChannelInterceptor outboundInterceptor() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+                TrackedSession session = sessionId != null ? sessions.get(sessionId) : null;
+                if (session == null || !session.isStalled(System.nanoTime(), stallNanos)) {
+                    return message;
+                }
+                if (isDroppable(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))) {
+                    droppedFrames.increment();
+                    return null;
+                }
+                delayedFrames.increment();
+                return message;
+            }
+        };
+    }
+
+    static boolean isDroppable(String destination) {
+        if (destination == null) {
+            return false;
+        }
+        for (String prefix : DROPPABLE_PREFIXES) {
+            if (destination.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Scheduled(fixedRateString = "${edlink.ws.slow-consumer.check-ms:250}")
+    public void evictStalled() {
+        long now = System.nanoTime();
+        List<Stalled> stalled = new ArrayList<>();
+        for (TrackedSession session : sessions.values()) {
+            long since = session.sendStartedAt;
+            if (since == 0 || now - since <= stallNanos) {
+                continue;
+            }
+            if (now - since > evictNanos) {
+                evict(session);
+            } else {
+                stalled.add(new Stalled(session, since));
+            }
+        }
+
+        // Each of these holds an outbound thread; free the longest-stuck ones beyond the budget
+        if (stalled.size() > maxStalled) {
+            stalled.sort(Comparator.comparingLong(Stalled::since));
+            for (Stalled over : stalled.subList(0, stalled.size() - maxStalled)) {
+                earlyEvictions.increment();
+                evict(over.session());
+            }
+        }
+    }
+
+    private void evict(TrackedSession session) {
+        if (sessions.remove(session.getId()) == null) {
+            return;
+        }
+        evictedSessions.increment();
+        System.out.println("Evicting slow WebSocket session " + session.getId());
+        try {
+            closer.execute(() -> {
+                try {
+                    session.getDelegate().close(SLOW_CONSUMER);
+                } catch (IOException | RuntimeException e) {
+                    failedCloses.increment();
+                    System.err.println("Failed to close slow session " + session.getId() + ": " + e.getMessage());
+                }
+            });
+        } catch (RuntimeException e) {
+            // Rejected while shutting down
+            failedCloses.increment();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closer.shutdownNow();
+    }
+
+    public Map<String, Object> getStats() {
+        long now = System.nanoTime();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessions", sessions.size());
+        stats.put("stalledNow", sessions.values().stream().filter(s -> s.isStalled(now, stallNanos)).count());
+        stats.put("droppedFrames", droppedFrames.sum());
+        stats.put("delayedFrames", delayedFrames.sum());
+        stats.put("evictedSessions", evictedSessions.sum());
+        stats.put("evictedOverStallBudget", earlyEvictions.sum());
+        stats.put("maxStalled", maxStalled);
+        stats.put("failedCloses", failedCloses.sum());
+        return stats;
+    }
+
+    private record Stalled(TrackedSession session, long since) {
+    }
+
+    /**
+     * Marks the start of each socket write; Spring's concurrent decorator above this one
+     * guarantees at most one write in progress per session.
+     */
+    static class TrackedSession extends WebSocketSessionDecorator {
+
+        private volatile long sendStartedAt;
+
+        TrackedSession(WebSocketSession delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            sendStartedAt = System.nanoTime();
+            try {
+                super.sendMessage(message);
+            } finally {
+                sendStartedAt = 0;
+            }
+        }
+
+        boolean isStalled(long now, long thresholdNanos) {
+            long started = sendStartedAt;
+            return started != 0 && now - started > thresholdNanos;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.project.edlink.config;
+
+import com.project.edlink.service.ClusterBus;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the STOMP channel executors and records where chat messages wait.
+ *
+ * Per channel: pool size, active threads, queue depth and the time tasks sat in the queue.
+ * Per destination (numeric subject ids folded into {id}): handling count, mean and max time,
+ * measured on the executor thread between beforeHandle and afterMessageHandled. Destinations
+ * come from clients, so only the ones the application uses get their own entry; everything
+ * else is counted under "other", and the number of entries stays fixed.
+ */
+@Component
+public class StompChannelMetrics {
+
+    private static final Pattern NUMERIC_SEGMENT = Pattern.compile("(?<=[./])\\d+");
+
+    static final String OTHER_DESTINATION = "other";
+
+    // After folding; @MessageMapping targets, subject topics (JSON and CBOR) and the relay's own
+    private static final Set<String> KNOWN_DESTINATIONS = Set.of(
+            "/app/chat.send", "/app/presence.update", "/app/typing",
+            "/topic/chat.{id}", "/topic/presence.{id}", "/topic/typing.{id}",
+            "/topic/chat.{id}" + StompCodecs.CBOR_SUFFIX,
+            "/topic/presence.{id}" + StompCodecs.CBOR_SUFFIX,
+            "/topic/typing.{id}" + StompCodecs.CBOR_SUFFIX,
+            ClusterBus.DESTINATION, "/topic/simp-user-registry", "/topic/unresolved-user-destination");
+
+    private final Map<String, ThreadPoolTaskExecutor> pools = new LinkedHashMap<>();
+    private final Map<String, Latency> queueWaits = new ConcurrentHashMap<>();
+    private final Map<String, Latency> latencies = new ConcurrentHashMap<>();
+
+    /**
+     * Fixed-size pool for one channel, like Spring's own channel defaults.
+     *
+     * @param poolSize       threads; 0 or less means twice the available processors
+     * @param queueCapacity  0 or less means unbounded; the queue is what we want to see growing
+     */
+    public ThreadPoolTaskExecutor newPool(String channel, int poolSize, int queueCapacity) {
+        if (poolSize <= 0) {
+            poolSize = Runtime.getRuntime().availableProcessors() * 2;
+        }
+        if (queueCapacity <= 0) {
+            queueCapacity = Integer.MAX_VALUE;
+        }
+        Latency wait = queueWaits.computeIfAbsent(channel, c -> new Latency());
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("stomp-" + channel + "-");
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setTaskDecorator(task -> {
+            long queuedAt = System.nanoTime();
+            return () -> {
+                wait.record(System.nanoTime() - queuedAt);
+                task.run();
+            };
+        });
+        executor.initialize();
+
+        synchronized (pools) {
+            pools.put(channel, executor);
+        }
+        return executor;
+    }
+
+    /**
+     * One virtual thread per inbound message, so blocking JPA work in handlers does not
+     * pin a platform thread. Needs Java 21; returns null on older runtimes.
+     */
+    public Executor newVirtualThreadExecutor(String channel) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ExecutorService delegate = (ExecutorService) factory.invoke(null);
+            Latency wait = queueWaits.computeIfAbsent(channel, c -> new Latency());
+            return task -> {
+                long queuedAt = System.nanoTime();
+                delegate.execute(() -> {
+                    wait.record(System.nanoTime() - queuedAt);
+                    task.run();
+                });
+            };
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Virtual threads need Java 21+, " + channel + " channel stays on a thread pool");
+            return null;
+        }
+    }
+
+    /**
+     * Interceptor for a channel backed by an executor; the callbacks run on the handling thread.
+     * Each channel has its own start slot, since a synchronous broker channel is handled inside
+     * an inbound handler on the same thread.
+     */
+    public ExecutorChannelInterceptor latencyInterceptor(String channel) {
+        ThreadLocal<Long> handleStart = new ThreadLocal<>();
+        return new ExecutorChannelInterceptor() {
+            @Override
+            public Message<?> beforeHandle(Message<?> message, MessageChannel ch, MessageHandler handler) {
+                handleStart.set(System.nanoTime());
+                return message;
+            }
+
+            @Override
+            public void afterMessageHandled(Message<?> message, MessageChannel ch, MessageHandler handler, Exception ex) {
+                Long start = handleStart.get();
+                if (start == null) {
+                    return;
+                }
+                handleStart.remove();
+                String key = channel + " " + destinationOf(message);
+                latencies.computeIfAbsent(key, k -> new Latency()).record(System.nanoTime() - start);
+            }
+        };
+    }
+
+    static String destinationOf(Message<?> message) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null) {
+            Object type = message.getHeaders().get(SimpMessageHeaderAccessor.MESSAGE_TYPE_HEADER);
+            return type != null ? type.toString() : "unknown";
+        }
+        // Keep the key space bounded: /topic/chat.42 -> /topic/chat.{id}, made-up names -> other
+        String folded = NUMERIC_SEGMENT.matcher(destination).replaceAll("{id}");
+        return KNOWN_DESTINATIONS.contains(folded) ? folded : OTHER_DESTINATION;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (pools) {
+            pools.forEach((channel, executor) -> {
+                stats.put(channel + ".poolSize", executor.getPoolSize());
+                stats.put(channel + ".activeThreads", executor.getActiveCount());
+                stats.put(channel + ".queueDepth", executor.getThreadPoolExecutor().getQueue().size());
+            });
+        }
+        queueWaits.forEach((channel, wait) -> {
+            stats.put(channel + ".queueWaitMeanMicros", wait.meanMicros());
+            stats.put(channel + ".queueWaitMaxMicros", wait.maxNanos.get() / 1000);
+            stats.put(channel + ".tasks", wait.count.sum());
+        });
+        latencies.forEach((key, latency) -> {
+            stats.put(key + ".count", latency.count.sum());
+            stats.put(key + ".meanMicros", latency.meanMicros());
+            stats.put(key + ".maxMicros", latency.maxNanos.get() / 1000);
+        });
+        return stats;
+    }
+
+    private static class Latency {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        long meanMicros() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / n / 1000;
+        }
+    }
+}
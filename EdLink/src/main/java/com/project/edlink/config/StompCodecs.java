@@ -0,0 +1,323 @@
+package com.project.edlink.config;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.project.edlink.dto.ChatMessageDto;
+import com.project.edlink.dto.PresenceUpdateDto;
+import com.project.edlink.service.ClusterBus;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional binary encoding for chat and presence broadcasts.
+ *
+ * Only on the raw WebSocket endpoint (/ws-binary, no SockJS): SockJS carries text only, and
+ * Spring writes a binary WebSocket frame only for application/octet-stream payloads on a
+ * non-SockJS session. A client there asks for it with a "codec: cbor" header on CONNECT. Its
+ * SUBSCRIBEs to /topic/chat.{id} and /topic/presence.{id} are then moved to the ".cbor" twin
+ * of the destination. JSON stays the default, and /ws never negotiates CBOR.
+ *
+ * Broadcasts are encoded for a ".cbor" twin only while some session subscribes to it: on this
+ * replica (counted from SUBSCRIBE, UNSUBSCRIBE and DISCONNECT), or in relay mode on another
+ * one, which shares its set of ".cbor" destinations over the ClusterBus when it changes and
+ * every interest-digest-ms. A replica that missed that event skips the frames for up to one
+ * digest; a subscriber resuming with last-seen-id gets them replayed.
+ *
+ * Binary payloads are CBOR with DTOs written as positional arrays, so field names are not
+ * repeated in every message:
+ *   message:  [id, subjectId, senderId, senderName, senderRole, content, createdAt, own]
+ *   presence: [userId, subjectId, userName, role, online]
+ */
+@Component
+public class StompCodecs {
+
+    // What makes StompSubProtocolHandler send a BinaryMessage; the payload is CBOR
+    public static final MimeType BINARY = MimeTypeUtils.APPLICATION_OCTET_STREAM;
+
+    public static final String CONNECT_HEADER = "codec";
+    public static final String SESSION_ATTRIBUTE = "edlink.codec";
+    public static final String CBOR_SUFFIX = ".cbor";
+
+    // Set by the /ws-binary handshake; SockJS sessions never have it
+    static final String RAW_TRANSPORT_ATTRIBUTE = "edlink.rawWebSocket";
+    private static final String SUBSCRIPTIONS_ATTRIBUTE = "edlink.cborSubscriptions";
+
+    static final String INTEREST_EVENT = "cbor-interest";
+
+    private static final ObjectMapper CBOR_MAPPER = cborMapper();
+
+    private final boolean cborEnabled;
+    private final long remoteTtlMillis;
+
+    @Autowired
+    private ClusterBus clusterBus;
+
+    // ".cbor" destination -> subscriptions on this replica
+    private final Map<String, Integer> localSubscribers = new ConcurrentHashMap<>();
+
+    // origin replica -> its ".cbor" destinations
+    private final Map<String, RemoteInterest> remoteInterest = new ConcurrentHashMap<>();
+
+    private final LongAdder cborFrames = new LongAdder();
+    private final LongAdder skippedFrames = new LongAdder();
+
+    public StompCodecs(@Value("${edlink.ws.cbor.enabled:false}") boolean cborEnabled,
+                       @Value("${edlink.ws.cbor.interest-digest-ms:15000}") long interestDigestMillis) {
+        this.cborEnabled = cborEnabled;
+        this.remoteTtlMillis = interestDigestMillis * 3;
+    }
+
+    @PostConstruct
+    public void listen() {
+        clusterBus.onPerOrigin(INTEREST_EVENT, Interest.class, this::remoteInterest);
+    }
+
+    public boolean isCborEnabled() {
+        return cborEnabled;
+    }
+
+    public static boolean wantsCbor(Map<String, Object> sessionAttributes) {
+        return sessionAttributes != null && "cbor".equals(sessionAttributes.get(SESSION_ATTRIBUTE));
+    }
+
+    /**
+     * Marks sessions that came in through the raw WebSocket endpoint.
+     */
+    public HandshakeInterceptor rawTransportMarker() {
+        return new HandshakeInterceptor() {
+            @Override
+            public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                           WebSocketHandler wsHandler, Map<String, Object> attributes) {
+                attributes.put(RAW_TRANSPORT_ATTRIBUTE, Boolean.TRUE);
+                return true;
+            }
+
+            @Override
+            public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                       WebSocketHandler wsHandler, Exception exception) {
+            }
+        };
+    }
+
+    /**
+     * Called for an authenticated CONNECT: binary broadcasts only if enabled, asked for, and the
+     * session can carry binary frames.
+     */
+    public void negotiate(StompHeaderAccessor accessor) {
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (cborEnabled && attributes != null
+                && Boolean.TRUE.equals(attributes.get(RAW_TRANSPORT_ATTRIBUTE))
+                && "cbor".equalsIgnoreCase(accessor.getFirstNativeHeader(CONNECT_HEADER))) {
+            attributes.put(SESSION_ATTRIBUTE, "cbor");
+        }
+    }
+
+    /**
+     * Whether a broadcast to this ".cbor" destination would reach anyone.
+     */
+    public boolean hasSubscribers(String cborDestination) {
+        if (!cborEnabled) {
+            return false;
+        }
+        if (localSubscribers.containsKey(cborDestination)) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        for (RemoteInterest interest : remoteInterest.values()) {
+            if (interest.until() > now && interest.destinations().contains(cborDestination)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * CBOR bytes for a ".cbor" frame, or null when nobody subscribes to it.
+     */
+    public byte[] encodeFor(String cborDestination, Object payload) {
+        if (!hasSubscribers(cborDestination)) {
+            skippedFrames.increment();
+            return null;
+        }
+        cborFrames.increment();
+        return toCbor(payload);
+    }
+
+    public static byte[] toCbor(Object payload) {
+        try {
+            return CBOR_MAPPER.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new MessageConversionException("CBOR encoding failed for " + payload.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Counts ".cbor" subscriptions; goes after ChatSubscriptionInterceptor, which rewrites them.
+     */
+    public ChannelInterceptor subscriptionTracker() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+                if (accessor == null || accessor.getCommand() == null || accessor.getSessionAttributes() == null) {
+                    return message;
+                }
+                switch (accessor.getCommand()) {
+                    case SUBSCRIBE -> subscribed(accessor.getSessionAttributes(),
+                            accessor.getSubscriptionId(), accessor.getDestination());
+                    case UNSUBSCRIBE -> unsubscribed(accessor.getSessionAttributes(), accessor.getSubscriptionId());
+                    case DISCONNECT -> disconnected(accessor.getSessionAttributes());
+                    default -> {
+                    }
+                }
+                return message;
+            }
+        };
+    }
+
+    void subscribed(Map<String, Object> sessionAttributes, String subscriptionId, String destination) {
+        if (!wantsCbor(sessionAttributes) || subscriptionId == null
+                || destination == null || !destination.endsWith(CBOR_SUFFIX)) {
+            return;
+        }
+        SessionSubscriptions session = (SessionSubscriptions) sessionAttributes
+                .computeIfAbsent(SUBSCRIPTIONS_ATTRIBUTE, key -> new SessionSubscriptions());
+        synchronized (session) {
+            // A SUBSCRIBE handled after the DISCONNECT would never be released
+            if (session.closed || session.destinations.putIfAbsent(subscriptionId, destination) != null) {
+                return;
+            }
+        }
+        increment(destination);
+    }
+
+    void unsubscribed(Map<String, Object> sessionAttributes, String subscriptionId) {
+        SessionSubscriptions session = (SessionSubscriptions) sessionAttributes.get(SUBSCRIPTIONS_ATTRIBUTE);
+        if (session == null || subscriptionId == null) {
+            return;
+        }
+        String destination;
+        synchronized (session) {
+            destination = session.destinations.remove(subscriptionId);
+        }
+        if (destination != null) {
+            decrement(destination);
+        }
+    }
+
+    // Spring sends DISCONNECT once for the client's frame and again when the socket closes
+    void disconnected(Map<String, Object> sessionAttributes) {
+        SessionSubscriptions session = (SessionSubscriptions) sessionAttributes.get(SUBSCRIPTIONS_ATTRIBUTE);
+        if (session == null) {
+            return;
+        }
+        Map<String, String> released;
+        synchronized (session) {
+            session.closed = true;
+            released = new HashMap<>(session.destinations);
+            session.destinations.clear();
+        }
+        released.values().forEach(this::decrement);
+    }
+
+    private void increment(String destination) {
+        if (localSubscribers.merge(destination, 1, Integer::sum) == 1) {
+            publishInterest();
+        }
+    }
+
+    private void decrement(String destination) {
+        boolean last = localSubscribers.computeIfPresent(destination, (d, n) -> n > 1 ? n - 1 : null) == null;
+        if (last) {
+            publishInterest();
+        }
+    }
+
+    /**
+     * Tell the other replicas which ".cbor" topics have subscribers here (relay mode only).
+     */
+    @Scheduled(fixedDelayString = "${edlink.ws.cbor.interest-digest-ms:15000}")
+    public void publishInterest() {
+        if (!cborEnabled || !clusterBus.isEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        remoteInterest.values().removeIf(interest -> interest.until() <= now);
+        clusterBus.publish(INTEREST_EVENT, new Interest(Set.copyOf(localSubscribers.keySet())));
+    }
+
+    // Each event carries the sender's whole set, so the latest one replaces the last
+    void remoteInterest(String origin, Interest interest) {
+        if (interest.destinations() == null || interest.destinations().isEmpty()) {
+            remoteInterest.remove(origin);
+        } else {
+            remoteInterest.put(origin, new RemoteInterest(interest.destinations(),
+                    System.currentTimeMillis() + remoteTtlMillis));
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", cborEnabled);
+        stats.put("localDestinations", localSubscribers.size());
+        stats.put("localSubscriptions", localSubscribers.values().stream().mapToInt(Integer::intValue).sum());
+        stats.put("remoteReplicas", remoteInterest.size());
+        stats.put("cborFrames", cborFrames.sum());
+        stats.put("skippedFrames", skippedFrames.sum());
+        return stats;
+    }
+
+    public static ObjectMapper cborMapper() {
+        ObjectMapper mapper = new ObjectMapper(new CBORFactory());
+        mapper.addMixIn(ChatMessageDto.class, ChatMessageArray.class);
+        mapper.addMixIn(PresenceUpdateDto.class, PresenceUpdateArray.class);
+        return mapper;
+    }
+
+    public record Interest(Set<String> destinations) {
+    }
+
+    private record RemoteInterest(Set<String> destinations, long until) {
+    }
+
+    private static final class SessionSubscriptions {
+        // subscription id -> ".cbor" destination
+        final Map<String, String> destinations = new HashMap<>();
+        boolean closed;
+    }
+
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"id", "subjectId", "senderId", "senderName", "senderRole", "content", "createdAt", "own"})
+    private interface ChatMessageArray {
+    }
+
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"userId", "subjectId", "userName", "role", "online"})
+    private interface PresenceUpdateArray {
+    }
+}
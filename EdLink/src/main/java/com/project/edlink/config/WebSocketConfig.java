@@ -1,25 +1,40 @@
 package com.project.edlink.config;
 
+import com.project.edlink.entities.TimeOrderedIdGenerator;
+import com.project.edlink.security.ChatSubscriptionInterceptor;
+import com.project.edlink.security.JwtClaims;
 import com.project.edlink.security.JwtUtil;
+import com.project.edlink.security.TokenVersionRegistry;
+import com.project.edlink.service.ChatResumeReplay;
+import com.project.edlink.service.ClusterBus;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
 import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * WebSocket Configuration for Real-time Chat
@@ -38,7 +53,68 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     private JwtUtil jwtUtil;
 
     @Autowired
-    private UserDetailsService userDetailsService;
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @Autowired
+    private ChatSubscriptionInterceptor chatSubscriptionInterceptor;
+
+    @Autowired
+    private StompChannelMetrics stompChannelMetrics;
+
+    @Autowired
+    private SlowConsumerGuard slowConsumerGuard;
+
+    @Autowired
+    private StompCodecs stompCodecs;
+
+    @Autowired
+    private ChatResumeReplay chatResumeReplay;
+
+    // Hard per-session limits; past either one Spring closes the session
+    @Value("${edlink.ws.send-time-limit-ms:10000}")
+    private int sendTimeLimitMillis;
+
+    @Value("${edlink.ws.send-buffer-size-limit-kb:512}")
+    private int sendBufferSizeLimitKb;
+
+    // Channel executors; pool-size 0 = 2 x cores, queue-capacity 0 = unbounded
+    @Value("${edlink.ws.inbound.pool-size:0}")
+    private int inboundPoolSize;
+
+    @Value("${edlink.ws.inbound.queue-capacity:0}")
+    private int inboundQueueCapacity;
+
+    @Value("${edlink.ws.inbound.virtual-threads:false}")
+    private boolean inboundVirtualThreads;
+
+    @Value("${edlink.ws.outbound.pool-size:0}")
+    private int outboundPoolSize;
+
+    @Value("${edlink.ws.outbound.queue-capacity:0}")
+    private int outboundQueueCapacity;
+
+    // -1 keeps the broker channel synchronous (Spring's default)
+    @Value("${edlink.ws.broker-channel.pool-size:-1}")
+    private int brokerPoolSize;
+
+    // simple = in-memory broker (single replica), relay = external STOMP broker (any number of replicas)
+    @Value("${edlink.ws.broker:simple}")
+    private String brokerMode;
+
+    @Value("${edlink.ws.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${edlink.ws.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${edlink.ws.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${edlink.ws.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${edlink.ws.relay.virtual-host:/}")
+    private String relayVirtualHost;
 
     /**
      * Configure the message broker
@@ -48,9 +124,38 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
      */
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Enable a simple in-memory message broker to send messages to clients
-        config.enableSimpleBroker("/topic", "/queue", "/user");
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            // Relay mode means several replicas writing chat_messages; hashed node ids collide
+            if (!TimeOrderedIdGenerator.isNodeIdConfigured()) {
+                throw new IllegalStateException("edlink.ws.broker=relay needs a unique EDLINK_NODE_ID (0-31) "
+                        + "per replica; the host-name default can give two replicas the same id");
+            }
+            // Chat and presence topics go through the external broker, so every replica's
+            // subscribers get them. /user destinations resolve to /queue on the broker.
+            // Per-replica state (SSE, presence, token versions, grants) follows on the ClusterBus.
+            config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setVirtualHost(relayVirtualHost)
+                    // Share connected users between replicas and forward user messages for
+                    // sessions that live on another node
+                    .setUserRegistryBroadcast("/topic/simp-user-registry")
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination");
+            System.out.println("STOMP broker relay: " + relayHost + ":" + relayPort);
+        } else {
+            // Enable a simple in-memory message broker to send messages to clients
+            config.enableSimpleBroker("/topic", "/queue", "/user");
+        }
         
+        if (brokerPoolSize >= 0) {
+            config.configureBrokerChannel().executor(stompChannelMetrics.newPool("broker", brokerPoolSize, 0));
+        }
+        config.configureBrokerChannel().interceptors(stompChannelMetrics.latencyInterceptor("broker"));
+
         // Prefix for messages bound to methods annotated with @MessageMapping
         config.setApplicationDestinationPrefixes("/app");
         
@@ -58,6 +163,29 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         config.setUserDestinationPrefix("/user");
     }
 
+    /**
+     * Subscribes the relay's system connection to the cluster bus, next to the user registry
+     * subscriptions Spring adds itself. Static so it does not pull this configuration (and the
+     * beans it injects) into the post-processor phase.
+     */
+    @Bean
+    public static BeanPostProcessor clusterBusSubscription(ObjectProvider<ClusterBus> clusterBus) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof StompBrokerRelayMessageHandler relay) {
+                    Map<String, MessageHandler> subscriptions = new HashMap<>();
+                    if (relay.getSystemSubscriptions() != null) {
+                        subscriptions.putAll(relay.getSystemSubscriptions());
+                    }
+                    subscriptions.put(ClusterBus.DESTINATION, message -> clusterBus.getObject().receive(message));
+                    relay.setSystemSubscriptions(subscriptions);
+                }
+                return bean;
+            }
+        };
+    }
+
     /**
      * Register STOMP endpoints
      * Clients will connect to this endpoint using WebSocket
@@ -69,14 +197,37 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.addEndpoint("/ws")
                 .setAllowedOrigins("http://localhost:5173", "http://localhost:3000", "http://127.0.0.1:5173")
                 .withSockJS(); // Enable SockJS fallback for older browsers
+
+        // Plain WebSocket, no SockJS: the only endpoint that can carry binary (CBOR) frames
+        // Clients will connect to: ws://localhost:8080/ws-binary
+        registry.addEndpoint("/ws-binary")
+                .setAllowedOrigins("http://localhost:5173", "http://localhost:3000", "http://127.0.0.1:5173")
+                .addInterceptors(stompCodecs.rawTransportMarker());
+    }
+
+    /**
+     * Per-session outbound limits, plus the slow-consumer decorator that times socket writes
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMillis)
+                .setSendBufferSizeLimit(sendBufferSizeLimitKb * 1024)
+                .addDecoratorFactory(slowConsumerGuard.decoratorFactory());
     }
 
     /**
      * Configure the client inbound channel
-     * This intercepts incoming messages to authenticate users via JWT
+     * This intercepts incoming messages to authenticate users via JWT,
+     * then authorizes SUBSCRIBE frames for subject topics
      */
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
+        // @MessageMapping handlers (chat.send, presence.update) run here
+        Executor virtual = inboundVirtualThreads ? stompChannelMetrics.newVirtualThreadExecutor("inbound") : null;
+        registration.executor(virtual != null
+                ? virtual
+                : stompChannelMetrics.newPool("inbound", inboundPoolSize, inboundQueueCapacity));
+
         registration.interceptors(new ChannelInterceptor() {
             @Override
             public Message<?> preSend(Message<?> message, MessageChannel channel) {
@@ -93,19 +244,22 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                             String token = authHeader.substring(7);
                             
                             try {
-                                // Validate JWT token
-                                String email = jwtUtil.extractEmail(token);
+                                // Validate JWT token (signature + expiry, parsed once)
+                                JwtClaims claims = jwtUtil.verify(token);
                                 
-                                if (email != null && jwtUtil.validateToken(token, email)) {
-                                    // Load user details and create authentication
-                                    UserDetails userDetails = userDetailsService.loadUserByUsername(email);
-                                    
+                                if (claims != null
+                                        && tokenVersionRegistry.isCurrent(claims.getUserId(), claims.getTokenVersion())) {
+                                    // Build the principal from the token claims, no user lookup needed
                                     Authentication auth = new UsernamePasswordAuthenticationToken(
-                                            userDetails, null, userDetails.getAuthorities()
+                                            claims.toPrincipal(), null,
+                                            List.of(new SimpleGrantedAuthority("ROLE_" + claims.getRole()))
                                     );
                                     
                                     // Set authentication in the accessor
                                     accessor.setUser(auth);
+
+                                    // Binary broadcasts only if asked for on CONNECT, enabled, and on /ws-binary
+                                    stompCodecs.negotiate(accessor);
                                 }
                             } catch (Exception e) {
                                 // Token validation failed - connection will be rejected
@@ -117,6 +271,16 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 
                 return message;
             }
-        });
+        }, chatSubscriptionInterceptor, stompCodecs.subscriptionTracker(), chatResumeReplay, stompChannelMetrics.latencyInterceptor("inbound"));
+    }
+
+    /**
+     * Frames written to client sessions; a slow client shows up here as queue depth
+     */
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.executor(stompChannelMetrics.newPool("outbound", outboundPoolSize, outboundQueueCapacity));
+        registration.interceptors(slowConsumerGuard.outboundInterceptor(),
+                stompChannelMetrics.latencyInterceptor("outbound"));
     }
 }
@@ -2,6 +2,7 @@ package com.project.edlink.controller;
 
 import com.project.edlink.dto.ApiResponse;
 import com.project.edlink.service.AdminService;
+import com.project.edlink.service.RuntimeMetricsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,6 +16,9 @@ public class AdminDashboardController {
     @Autowired
     private AdminService adminService;
 
+    @Autowired
+    private RuntimeMetricsService runtimeMetricsService;
+
     @GetMapping("/stats")
     public ResponseEntity<ApiResponse> getDashboardStats() {
 
@@ -23,4 +27,13 @@ public class AdminDashboardController {
                         adminService.getDashboardStats())
         );
     }
+
+    @GetMapping("/runtime")
+    public ResponseEntity<ApiResponse> getRuntimeMetrics() {
+
+        return ResponseEntity.ok(
+                new ApiResponse("Runtime metrics fetched successfully",
+                        runtimeMetricsService.getRuntimeMetrics())
+        );
+    }
 }
\ No newline at end of file
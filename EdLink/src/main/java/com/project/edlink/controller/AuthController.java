@@ -1,27 +1,34 @@
 package com.project.edlink.controller;
 
 import com.project.edlink.dto.ApiResponse;
+import com.project.edlink.dto.AuthTokens;
 import com.project.edlink.dto.ForgotPasswordRequest;
 import com.project.edlink.dto.LoginRequest;
 import com.project.edlink.dto.ResetPasswordRequest;
 import com.project.edlink.dto.SignupRequest;
 import com.project.edlink.dto.VerifyOTPRequest;
+import com.project.edlink.security.PasswordHashingBusyException;
+import com.project.edlink.security.PasswordHasher;
 import com.project.edlink.service.AuthService;
+import com.project.edlink.service.RefreshTokenService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
 @RequestMapping("/api/auth")
 public class AuthController {
 
+    private static final String REFRESH_COOKIE = "refresh_token";
+
     @Autowired
     private AuthService authService;
 
     @Autowired
-    private BCryptPasswordEncoder passwordEncoder;
+    private PasswordHasher passwordHasher;
 
     @PostMapping("/teacher/signup")
     public ResponseEntity<ApiResponse> teacherSignup(@RequestBody SignupRequest request) {
@@ -48,9 +55,9 @@ public class AuthController {
         try {
             System.out.println("Login attempt for email: " + request.getEmail());
             
-            String token = authService.login(request);
+            AuthTokens tokens = authService.login(request);
 
-            if (token == null) {
+            if (tokens == null) {
                 System.out.println("Login failed: Invalid credentials for " + request.getEmail());
                 return new ResponseEntity<>(
                         new ApiResponse("Invalid credentials!", null),
@@ -59,7 +66,7 @@ public class AuthController {
             }
 
             // Check if teacher is pending approval
-            if (token.equals("PENDING_TEACHER")) {
+            if (tokens.isPendingApproval()) {
                 return new ResponseEntity<>(
                         new ApiResponse("Your account is pending admin approval. Please wait for approval before logging in.", null),
                         HttpStatus.FORBIDDEN
@@ -67,10 +74,11 @@ public class AuthController {
             }
 
             System.out.println("Login successful for: " + request.getEmail());
-            return new ResponseEntity<>(
-                    new ApiResponse("Login successful", token),
-                    HttpStatus.OK
-            );
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.SET_COOKIE, refreshCookie(tokens.getRefreshToken()).toString())
+                    .body(new ApiResponse("Login successful", tokens.getAccessToken()));
+        } catch (PasswordHashingBusyException e) {
+            throw e;
         } catch (Exception e) {
             System.err.println("Login controller error: " + e.getMessage());
             e.printStackTrace();
@@ -81,6 +89,35 @@ public class AuthController {
         }
     }
 
+    @PostMapping("/refresh")
+    public ResponseEntity<ApiResponse> refresh(
+            @CookieValue(name = REFRESH_COOKIE, required = false) String refreshToken) {
+
+        AuthTokens tokens = authService.refresh(refreshToken);
+
+        if (tokens == null || tokens.isPendingApproval()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .header(HttpHeaders.SET_COOKIE, clearedRefreshCookie().toString())
+                    .body(new ApiResponse("Session expired. Please log in again.", null));
+        }
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.SET_COOKIE, refreshCookie(tokens.getRefreshToken()).toString())
+                .body(new ApiResponse("Token refreshed", tokens.getAccessToken()));
+    }
+
+    // Keyed by the refresh cookie, which reaches /api/auth even after the access token expired
+    @PostMapping("/logout")
+    public ResponseEntity<ApiResponse> logout(
+            @CookieValue(name = REFRESH_COOKIE, required = false) String refreshToken) {
+
+        authService.logout(refreshToken);
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.SET_COOKIE, clearedRefreshCookie().toString())
+                .body(new ApiResponse("Logged out successfully", null));
+    }
+
     @PostMapping("/forgot-password")
     public ResponseEntity<ApiResponse> forgotPassword(@RequestBody ForgotPasswordRequest request) {
         String result = authService.sendOTP(request.getEmail());
@@ -145,13 +182,40 @@ public class AuthController {
 
     @GetMapping("/test-bcrypt")
     public String testBCrypt() {
-        return passwordEncoder.matches("admin123",
+        return passwordHasher.matches("admin123",
                 "$2a$10$i/1Iw2FjaMr4X8GL.uHHyuB7rl3YJwt92O0LTh7nVks8ipWDqyUoy")
                 ? "MATCH" : "NOT MATCH";
     }
 //
     @GetMapping("/gen")
     public String generateHash() {
-        return passwordEncoder.encode("admin123");
+        return passwordHasher.encode("admin123");
+    }
+
+    // BCrypt lane is full: shed load quickly instead of queueing Tomcat threads behind it
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<ApiResponse> handleHashingBusy(PasswordHashingBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "2")
+                .body(new ApiResponse(e.getMessage(), null));
+    }
+
+    // HttpOnly so scripts never see it, scoped to /api/auth so it only travels with refresh/logout calls
+    private ResponseCookie refreshCookie(String refreshToken) {
+        return ResponseCookie.from(REFRESH_COOKIE, refreshToken)
+                .httpOnly(true)
+                .sameSite("Strict")
+                .path("/api/auth")
+                .maxAge(RefreshTokenService.REFRESH_TOKEN_TTL)
+                .build();
+    }
+
+    private ResponseCookie clearedRefreshCookie() {
+        return ResponseCookie.from(REFRESH_COOKIE, "")
+                .httpOnly(true)
+                .sameSite("Strict")
+                .path("/api/auth")
+                .maxAge(0)
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -4,11 +4,17 @@ import com.project.edlink.dto.ApiResponse;
 import com.project.edlink.dto.ChatMessageDto;
 import com.project.edlink.dto.ChatParticipantsResponse;
 import com.project.edlink.dto.SendMessageRequest;
+import com.project.edlink.security.AuthenticatedUser;
 import com.project.edlink.service.ChatService;
+import com.project.edlink.service.ChatVersions;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -20,35 +26,52 @@ public class ChatController {
     @Autowired
     private ChatService chatService;
 
+    @Autowired
+    private ChatVersions chatVersions;
+
 
+    // Keyset paging: ?limit=50 for the newest page, ?before={id} to scroll back, ?after={id} to catch up.
+    // afterId is the old name of after and is still accepted.
+    // Polls revalidate with If-None-Match; an unchanged subject gets a 304 without touching MySQL.
     @GetMapping("/subjects/{subjectId}/messages")
     public ResponseEntity<ApiResponse> getMessages(
             @PathVariable Long subjectId,
-            @RequestParam(required = false) Long afterId
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) Integer limit,
+            @AuthenticationPrincipal AuthenticatedUser user,
+            WebRequest webRequest
     ) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        List<ChatMessageDto> messages = chatService.getMessagesForSubject(email, subjectId, afterId);
-        return ResponseEntity.ok(new ApiResponse("Messages fetched", messages));
+        // Taken before the body is built: a stale tag only costs a 200, a fresh one could hide a message
+        String etag = chatService.getMessagesTag(user, subjectId);
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            chatVersions.recordNotModified();
+            return null;
+        }
+
+        Long afterCursor = after != null ? after : afterId;
+        List<ChatMessageDto> messages = chatService.getMessagesForSubject(user, subjectId, before, afterCursor, limit);
+        return withTag(etag).body(new ApiResponse("Messages fetched", messages));
     }
 
 
     @PostMapping("/subjects/{subjectId}/messages")
     public ResponseEntity<ApiResponse> sendMessage(
             @PathVariable Long subjectId,
-            @RequestBody SendMessageRequest request
+            @RequestBody SendMessageRequest request,
+            @AuthenticationPrincipal AuthenticatedUser user
     )
 
     {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        ChatMessageDto message = chatService.sendMessage(email, subjectId, request.getContent());
+        ChatMessageDto message = chatService.sendMessage(user, subjectId, request.getContent());
         return ResponseEntity.ok(new ApiResponse("Message sent", message));
     }
 
     @PostMapping("/subjects/{subjectId}/presence/ping")
-    public ResponseEntity<ApiResponse> pingPresence(@PathVariable Long subjectId) {
+    public ResponseEntity<ApiResponse> pingPresence(@PathVariable Long subjectId, @AuthenticationPrincipal AuthenticatedUser user) {
 
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        chatService.updatePresence(email, subjectId);
+        chatService.updatePresence(user, subjectId);
 
         return ResponseEntity.ok(new ApiResponse("Presence updated", null));
     }
@@ -56,10 +79,33 @@ public class ChatController {
 
 
     @GetMapping("/subjects/{subjectId}/participants")
-    public ResponseEntity<ApiResponse> getParticipants(@PathVariable Long subjectId) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        ChatParticipantsResponse response = chatService.getParticipants(email, subjectId);
-        return ResponseEntity.ok(new ApiResponse("Participants fetched", response));
+    public ResponseEntity<ApiResponse> getParticipants(@PathVariable Long subjectId, @AuthenticationPrincipal AuthenticatedUser user,
+                                                       WebRequest webRequest) {
+        String etag = chatService.getParticipantsTag(user, subjectId);
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            chatVersions.recordNotModified();
+            return null;
+        }
+
+        ChatParticipantsResponse response = chatService.getParticipants(user, subjectId);
+        return withTag(etag).body(new ApiResponse("Participants fetched", response));
+    }
+
+    // Fallback for clients whose proxies break SockJS. EventSource cannot set headers, so the
+    // JWT may come as ?access_token=. The last seen id comes as Last-Event-ID on the browser's
+    // own reconnects, or as ?after= when the client reopens the stream with a fresh token.
+    @GetMapping(value = "/subjects/{subjectId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMessages(@PathVariable Long subjectId,
+                                     @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+                                     @RequestParam(value = "after", required = false) Long after,
+                                     @AuthenticationPrincipal AuthenticatedUser user) {
+        return chatService.streamMessages(user, subjectId, lastEventId != null ? lastEventId : after);
+    }
+
+    // no-cache: the browser keeps the body but must revalidate every poll
+    private static ResponseEntity.BodyBuilder withTag(String etag) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().cacheControl(CacheControl.noCache().cachePrivate());
+        return etag != null ? builder.eTag(etag) : builder;
     }
 }
 
@@ -2,10 +2,11 @@ package com.project.edlink.controller;
 
 
 import com.project.edlink.dto.ApiResponse;
+import com.project.edlink.security.AuthenticatedUser;
 import com.project.edlink.service.SubjectService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -28,22 +29,19 @@ public class StudentController {
     @PostMapping("/subjects/enroll")
     public ResponseEntity<ApiResponse> enrollStudent(
             @RequestParam Long subjectId,
-            @RequestParam String enrollmentKey) {
+            @RequestParam String enrollmentKey,
+            @AuthenticationPrincipal AuthenticatedUser user) {
 
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-
-        String message = subjectService.enrollStudent(email, subjectId, enrollmentKey);
+        String message = subjectService.enrollStudent(user, subjectId, enrollmentKey);
 
         return ResponseEntity.ok(new ApiResponse(message, null));
     }
 
     @GetMapping("/subjects/enrolled")
-    public ResponseEntity<ApiResponse> getEnrolledSubjects() {
-
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
+    public ResponseEntity<ApiResponse> getEnrolledSubjects(@AuthenticationPrincipal AuthenticatedUser user) {
 
         return ResponseEntity.ok(
-                new ApiResponse("Enrolled subjects fetched", subjectService.getEnrolledSubjects(email))
+                new ApiResponse("Enrolled subjects fetched", subjectService.getEnrolledSubjects(user))
         );
     }
 
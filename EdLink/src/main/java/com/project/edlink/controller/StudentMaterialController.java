@@ -1,6 +1,7 @@
 package com.project.edlink.controller;
 
 import com.project.edlink.dto.ApiResponse;
+import com.project.edlink.security.AuthenticatedUser;
 import com.project.edlink.service.StudyMaterialService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
@@ -8,7 +9,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -22,14 +23,12 @@ public class StudentMaterialController {
     private StudyMaterialService materialService;
 
     @GetMapping("/{subjectId}")
-    public ResponseEntity<ApiResponse> getMaterials(@PathVariable Long subjectId) {
-
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
+    public ResponseEntity<ApiResponse> getMaterials(@PathVariable Long subjectId, @AuthenticationPrincipal AuthenticatedUser user) {
 
         try {
             return ResponseEntity.ok(
                     new ApiResponse("Materials fetched successfully",
-                            materialService.getStudentMaterials(email, subjectId))
+                            materialService.getStudentMaterials(user, subjectId))
             );
 
         } catch (RuntimeException e) {
@@ -40,12 +39,10 @@ public class StudentMaterialController {
 
 
     @GetMapping("/download/{materialId}")
-    public ResponseEntity<Resource> downloadMaterial(@PathVariable Long materialId) {
-
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
+    public ResponseEntity<Resource> downloadMaterial(@PathVariable Long materialId, @AuthenticationPrincipal AuthenticatedUser user) {
 
         try {
-            Resource resource = materialService.downloadMaterial(materialId, email);
+            Resource resource = materialService.downloadMaterial(materialId, user);
 
             // content type auto detect
             String contentType = "application/octet-stream";
@@ -2,10 +2,11 @@ package com.project.edlink.controller;
 
 import com.project.edlink.dto.ApiResponse;
 import com.project.edlink.entities.Subject;
+import com.project.edlink.security.AuthenticatedUser;
 import com.project.edlink.service.SubjectService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -16,21 +17,17 @@ public class TeacherController {
     private SubjectService subjectService;
 
     @PostMapping("/subject/create")
-    public ResponseEntity<ApiResponse> createSubject(@RequestBody Subject subject) {
+    public ResponseEntity<ApiResponse> createSubject(@RequestBody Subject subject, @AuthenticationPrincipal AuthenticatedUser user) {
 
-        // JWT se email nikalna
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        Subject saved = subjectService.createSubject(email, subject);
+        Subject saved = subjectService.createSubject(user, subject);
         return ResponseEntity.ok(new ApiResponse("Subject created successfully", saved));
     }
 
     @GetMapping("/subjects")
-    public ResponseEntity<ApiResponse> getTeacherSubjects() {
-
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
+    public ResponseEntity<ApiResponse> getTeacherSubjects(@AuthenticationPrincipal AuthenticatedUser user) {
 
         return ResponseEntity.ok(
-                new ApiResponse("Subjects fetched", subjectService.getTeacherSubjects(email))
+                new ApiResponse("Subjects fetched", subjectService.getTeacherSubjects(user))
         );
     }
 
@@ -1,10 +1,11 @@
 package com.project.edlink.controller;
 
 import com.project.edlink.dto.ApiResponse;
+import com.project.edlink.security.AuthenticatedUser;
 import com.project.edlink.service.StudyMaterialService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -19,11 +20,10 @@ public class TeacherMaterialController {
     public ResponseEntity<ApiResponse> uploadMaterial(
             @RequestParam Long subjectId,
             @RequestParam String title,
-            @RequestParam MultipartFile file) {
+            @RequestParam MultipartFile file,
+            @AuthenticationPrincipal AuthenticatedUser user) {
 
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-
-        String message = materialService.uploadMaterial(email, subjectId, file, title);
+        String message = materialService.uploadMaterial(user, subjectId, file, title);
 
         return ResponseEntity.ok(new ApiResponse(message, null));
     }
@@ -1,14 +1,16 @@
 package com.project.edlink.controller;
 
-import com.project.edlink.dto.ChatMessageDto;
-import com.project.edlink.dto.PresenceUpdateDto;
 import com.project.edlink.dto.PresenceUpdateRequest;
+import com.project.edlink.dto.TypingRequest;
 import com.project.edlink.dto.WebSocketMessageRequest;
+import com.project.edlink.security.AuthenticatedUser;
+import com.project.edlink.security.ChatAccessGuard;
 import com.project.edlink.service.ChatService;
+import com.project.edlink.service.TypingIndicators;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.stereotype.Controller;
 
 import java.security.Principal;
@@ -21,54 +23,65 @@ public class WebSocketChatController {
     private ChatService chatService;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private ChatAccessGuard chatAccessGuard;
+
+    @Autowired
+    private TypingIndicators typingIndicators;
 
 
     @MessageMapping("/chat.send")
-    public void sendMessage(@Payload WebSocketMessageRequest request, Principal principal) {
-        // Get the authenticated user's email
-        String email = principal.getName();
+    public void sendMessage(@Payload WebSocketMessageRequest request, Principal principal,
+                            SimpMessageHeaderAccessor headerAccessor) {
+        // Principal was built from the JWT on CONNECT
+        AuthenticatedUser user = AuthenticatedUser.from(principal);
+
+        // Answered from the session grant pinned on SUBSCRIBE, no query
+        chatAccessGuard.authorize(user, request.getSubjectId(), headerAccessor.getSessionAttributes());
         
-        // Save message to database
-        ChatMessageDto messageDto = chatService.sendMessageViaWebSocket(
-            email, 
+        // Save message and broadcast to /topic/chat.{subjectId} and SSE streams (ChatFanout)
+        chatService.sendMessageViaWebSocket(
+            user, 
             request.getSubjectId(), 
             request.getContent()
         );
-        
-        // Broadcast to all subscribers of this subject's chat
-        messagingTemplate.convertAndSend(
-            "/topic/chat." + request.getSubjectId(), 
-            messageDto
-        );
     }
 
     /**
-     * Handle presence updates (when user is typing, online, etc.)
+     * Handle presence updates (online heartbeats; typing has its own path below)
      * 
      * Client sends to: /app/presence.update
-     * Updates are broadcast to: /topic/presence.{subjectId}
+     * Online/offline transitions are broadcast, batched, to: /topic/presence.{subjectId}
      * 
      * @param request The presence update request containing subjectId
      * @param principal The authenticated user
+     * @param headerAccessor Gives access to the STOMP session grants
      */
     @MessageMapping("/presence.update")
-    public void updatePresence(@Payload PresenceUpdateRequest request, Principal principal) {
-        String email = principal.getName();
+    public void updatePresence(@Payload PresenceUpdateRequest request, Principal principal,
+                               SimpMessageHeaderAccessor headerAccessor) {
+        AuthenticatedUser user = AuthenticatedUser.from(principal);
         Long subjectId = request.getSubjectId();
+
+        chatAccessGuard.authorize(user, subjectId, headerAccessor.getSessionAttributes());
         
-        // Update presence in database
-        chatService.updatePresence(email, subjectId);
-        
-        // Get updated presence info and broadcast
-        PresenceUpdateDto presenceUpdate = chatService.getPresenceUpdate(email, subjectId);
-        
-        if (presenceUpdate != null) {
-            // Broadcast presence update to all subscribers
-            messagingTemplate.convertAndSend(
-                "/topic/presence." + subjectId, 
-                presenceUpdate
-            );
-        }
+        // Heartbeat only; PresenceBroadcaster sends online/offline transitions in batches
+        chatService.recordPresence(user, subjectId);
+    }
+
+    /**
+     * Handle typing signals
+     * 
+     * Client sends to: /app/typing while typing (every couple of seconds), typing=false on send
+     * Who's typing is broadcast at a fixed rate to: /topic/typing.{subjectId}
+     * Memory only, no repository calls: the access check uses the session grant
+     */
+    @MessageMapping("/typing")
+    public void typing(@Payload TypingRequest request, Principal principal,
+                       SimpMessageHeaderAccessor headerAccessor) {
+        AuthenticatedUser user = AuthenticatedUser.from(principal);
+
+        chatAccessGuard.authorize(user, request.getSubjectId(), headerAccessor.getSessionAttributes());
+
+        typingIndicators.typing(user, request.getSubjectId(), request.isTyping());
     }
 }
@@ -0,0 +1,38 @@
+package com.project.edlink.dto;
+
+/**
+ * Result of a successful login or refresh: a short-lived JWT plus the opaque refresh token
+ * that rotates on every use. The refresh token is sent back as an HttpOnly cookie, never in the body.
+ */
+public class AuthTokens {
+
+    private final String accessToken;
+    private final String refreshToken;
+    private final boolean pendingApproval;
+
+    private AuthTokens(String accessToken, String refreshToken, boolean pendingApproval) {
+        this.accessToken = accessToken;
+        this.refreshToken = refreshToken;
+        this.pendingApproval = pendingApproval;
+    }
+
+    public static AuthTokens of(String accessToken, String refreshToken) {
+        return new AuthTokens(accessToken, refreshToken, false);
+    }
+
+    public static AuthTokens pendingTeacher() {
+        return new AuthTokens(null, null, true);
+    }
+
+    public String getAccessToken() {
+        return accessToken;
+    }
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public boolean isPendingApproval() {
+        return pendingApproval;
+    }
+}
@@ -0,0 +1,35 @@
+package com.project.edlink.dto;
+
+/**
+ * DTO for typing signals via WebSocket (/app/typing)
+ * typing=false clears the indicator before its deadline, e.g. right after sending
+ */
+public class TypingRequest {
+
+    private Long subjectId;
+    private boolean typing = true;
+
+    public TypingRequest() {
+    }
+
+    public TypingRequest(Long subjectId, boolean typing) {
+        this.subjectId = subjectId;
+        this.typing = typing;
+    }
+
+    public Long getSubjectId() {
+        return subjectId;
+    }
+
+    public void setSubjectId(Long subjectId) {
+        this.subjectId = subjectId;
+    }
+
+    public boolean isTyping() {
+        return typing;
+    }
+
+    public void setTyping(boolean typing) {
+        this.typing = typing;
+    }
+}
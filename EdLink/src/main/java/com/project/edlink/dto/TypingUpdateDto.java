@@ -0,0 +1,78 @@
+package com.project.edlink.dto;
+
+import java.util.List;
+
+/**
+ * Everyone currently typing in a subject on one replica, broadcast to /topic/typing.{subjectId}
+ * An empty list means nobody is typing there any more. With several replicas each one sends its
+ * own set; clients keep the latest set per origin and show the union.
+ */
+public class TypingUpdateDto {
+
+    private Long subjectId;
+    private String origin;
+    private List<Typist> typists;
+
+    public TypingUpdateDto() {
+    }
+
+    public TypingUpdateDto(Long subjectId, String origin, List<Typist> typists) {
+        this.subjectId = subjectId;
+        this.origin = origin;
+        this.typists = typists;
+    }
+
+    public Long getSubjectId() {
+        return subjectId;
+    }
+
+    public void setSubjectId(Long subjectId) {
+        this.subjectId = subjectId;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
+    public List<Typist> getTypists() {
+        return typists;
+    }
+
+    public void setTypists(List<Typist> typists) {
+        this.typists = typists;
+    }
+
+    public static class Typist {
+
+        private Long userId;
+        private String name;
+
+        public Typist() {
+        }
+
+        public Typist(Long userId, String name) {
+            this.userId = userId;
+            this.name = name;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public void setUserId(Long userId) {
+            this.userId = userId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.project.edlink.dto;
+
+/**
+ * The public bits of a user (no email, no password hash), as cached by UserDirectory.
+ */
+public class UserProfile {
+
+    private final Long id;
+    private final String name;
+    private final String role;
+    private final String status;
+
+    public UserProfile(Long id, String name, String role, String status) {
+        this.id = id;
+        this.name = name;
+        this.role = role;
+        this.status = status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+}
@@ -10,7 +10,7 @@ import java.time.Instant;
 public class ChatPresence {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TimeOrderedId
     private Long id;
 
     private Long subjectId;
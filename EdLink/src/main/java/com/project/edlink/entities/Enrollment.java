@@ -7,7 +7,7 @@ import jakarta.persistence.*;
 public class Enrollment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TimeOrderedId
     private Long id;
 
     private Long studentId;
@@ -0,0 +1,66 @@
+package com.project.edlink.entities;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "otp_codes",
+        indexes = @Index(name = "idx_otp_codes_expires_at", columnList = "expiresAt"))
+public class OtpCode {
+
+    // One pending OTP per email; a new request overwrites the old one
+    @Id
+    private String email;
+
+    // HMAC-SHA256 of the OTP under a server-side key (see JdbcOtpStore), never the OTP itself
+    @Column(nullable = false, length = 64)
+    private String otpHash;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+
+    private int failedAttempts;
+
+    public OtpCode() {
+    }
+
+    public OtpCode(String email, String otpHash, Instant expiresAt, int failedAttempts) {
+        this.email = email;
+        this.otpHash = otpHash;
+        this.expiresAt = expiresAt;
+        this.failedAttempts = failedAttempts;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getOtpHash() {
+        return otpHash;
+    }
+
+    public void setOtpHash(String otpHash) {
+        this.otpHash = otpHash;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public int getFailedAttempts() {
+        return failedAttempts;
+    }
+
+    public void setFailedAttempts(int failedAttempts) {
+        this.failedAttempts = failedAttempts;
+    }
+}
@@ -0,0 +1,102 @@
+package com.project.edlink.entities;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "refresh_tokens",
+        indexes = {
+                @Index(name = "idx_refresh_tokens_user_id", columnList = "userId"),
+                @Index(name = "idx_refresh_tokens_family_id", columnList = "familyId")
+        })
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long userId;
+
+    // One family per login; every rotation stays in it, so logout can end just this session
+    @Column(length = 36)
+    private String familyId;
+
+    // SHA-256 of the opaque token, the raw value only ever lives in the client cookie
+    @Column(unique = true, nullable = false, length = 64)
+    private String tokenHash;
+
+    private Instant expiresAt;
+
+    // Set once the token has been rotated; presenting it again means it was stolen
+    private boolean used;
+
+    private Instant usedAt;
+
+    public RefreshToken() {
+    }
+
+    public RefreshToken(Long id, Long userId, String tokenHash, Instant expiresAt, boolean used) {
+        this.id = id;
+        this.userId = userId;
+        this.tokenHash = tokenHash;
+        this.expiresAt = expiresAt;
+        this.used = used;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getTokenHash() {
+        return tokenHash;
+    }
+
+    public void setTokenHash(String tokenHash) {
+        this.tokenHash = tokenHash;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public boolean isUsed() {
+        return used;
+    }
+
+    public void setUsed(boolean used) {
+        this.used = used;
+    }
+
+    public String getFamilyId() {
+        return familyId;
+    }
+
+    public void setFamilyId(String familyId) {
+        this.familyId = familyId;
+    }
+
+    public Instant getUsedAt() {
+        return usedAt;
+    }
+
+    public void setUsedAt(Instant usedAt) {
+        this.usedAt = usedAt;
+    }
+}
@@ -9,7 +9,7 @@ import java.time.LocalDateTime;
 public class StudyMaterial {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TimeOrderedId
     private Long id;
 
     private Long subjectId;
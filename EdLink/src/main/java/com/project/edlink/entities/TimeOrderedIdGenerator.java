@@ -0,0 +1,175 @@
+package com.project.edlink.entities;
+
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free, node-aware, time-ordered 64-bit ids for append-heavy tables.
+ *
+ * Layout (53 bits, so ids stay exact as JavaScript numbers in the frontend):
+ *   41 bits  milliseconds since 2025-01-01T00:00Z (~69 years)
+ *    5 bits  node id (0..31), one per backend replica
+ *    7 bits  sequence within the millisecond (128 ids/ms per node)
+ *
+ * The generator keeps (millis << 7 | sequence) in one AtomicLong and advances it with CAS to
+ * max(previous + 1, now << 7). Ids from one node are therefore strictly increasing, and ids
+ * from all nodes sort by creation time, which is what the chat before/after cursors rely on.
+ *
+ * Clock skew: if the wall clock steps backwards (NTP correction, VM pause), or more than 128
+ * ids are needed in one millisecond, the generator keeps counting from its last value instead
+ * of reusing a timestamp, so ids never repeat or go backwards within a process. It never blocks
+ * waiting for the clock. Regressions larger than MAX_DRIFT_MILLIS are counted and logged; if the
+ * process restarts while still ahead of the wall clock, the new one could repeat recent ids on
+ * the same node, so a large step back should be followed by a short pause before restarting.
+ *
+ * Between nodes, ids only sort by creation time as well as the clocks agree. A replica whose
+ * clock lags by d ms hands out ids up to d ms "older" than ones another replica already issued,
+ * and a client that paged with after= past those ids skips the late message until it reloads
+ * the page. Keep replicas NTP-synced; skew well under the typical gap between chat messages is
+ * harmless.
+ *
+ * Node ids must be unique per replica. The host-name hash is only a single-replica default:
+ * with 32 slots two pods collide 1 time in 32 and five pods about 28% of the time, and
+ * colliding nodes produce duplicate primary keys. Multi-replica setups must configure the id
+ * (WebSocketConfig refuses relay mode without it).
+ */
+public final class TimeOrderedIdGenerator {
+
+    public static final long EPOCH_MILLIS = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+
+    static final int NODE_BITS = 5;
+    static final int SEQUENCE_BITS = 7;
+    static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    static final long MAX_DRIFT_MILLIS = 1_000;
+
+    private static final String CONFIGURED_NODE_ID = configuredNodeId();
+
+    private static final TimeOrderedIdGenerator SHARED = new TimeOrderedIdGenerator(resolveNodeId(), System::currentTimeMillis);
+
+    private final long nodeBits;
+    private final LongSupplier clock;
+
+    // (millis since EPOCH << SEQUENCE_BITS) | sequence of the last id handed out
+    private final AtomicLong lastState = new AtomicLong();
+
+    private final LongAdder aheadOfClock = new LongAdder();
+    private final LongAdder clockRegressions = new LongAdder();
+    private volatile boolean clockBehind;
+
+    TimeOrderedIdGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    /**
+     * The process-wide generator shared by Hibernate and the chat write-behind pipeline.
+     */
+    public static TimeOrderedIdGenerator shared() {
+        return SHARED;
+    }
+
+    public long nextId() {
+        while (true) {
+            long now = clock.getAsLong() - EPOCH_MILLIS;
+            long prev = lastState.get();
+            long next = Math.max(prev + 1, now << SEQUENCE_BITS);
+
+            if (lastState.compareAndSet(prev, next)) {
+                trackSkew((next >>> SEQUENCE_BITS) - now);
+                return compose(next);
+            }
+        }
+    }
+
+    private void trackSkew(long aheadMillis) {
+        if (aheadMillis <= 0) {
+            clockBehind = false;
+            return;
+        }
+        aheadOfClock.increment();
+        if (aheadMillis > MAX_DRIFT_MILLIS && !clockBehind) {
+            clockBehind = true;
+            clockRegressions.increment();
+            System.err.println("Wall clock is " + aheadMillis + " ms behind the id generator (node "
+                    + getNodeId() + "), continuing from the last issued id");
+        }
+    }
+
+    private long compose(long state) {
+        long millis = state >>> SEQUENCE_BITS;
+        long sequence = state & SEQUENCE_MASK;
+        return (millis << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | sequence;
+    }
+
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    public static int nodeOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE_ID);
+    }
+
+    public int getNodeId() {
+        return (int) (nodeBits >>> SEQUENCE_BITS);
+    }
+
+    public long getClockRegressions() {
+        return clockRegressions.sum();
+    }
+
+    public long getAheadOfClock() {
+        return aheadOfClock.sum();
+    }
+
+    /**
+     * True when the node id came from EDLINK_NODE_ID / -Dedlink.node-id or a StatefulSet pod
+     * ordinal, i.e. it is unique by construction rather than by hash luck.
+     */
+    public static boolean isNodeIdConfigured() {
+        return CONFIGURED_NODE_ID != null;
+    }
+
+    private static String configuredNodeId() {
+        String configured = System.getProperty("edlink.node-id", System.getenv("EDLINK_NODE_ID"));
+        if (configured != null && !configured.isBlank()) {
+            return configured.trim();
+        }
+        // StatefulSet pods are named {set}-{ordinal}
+        String host = System.getenv("HOSTNAME");
+        if (host != null && host.matches(".*-\\d{1,2}")) {
+            String ordinal = host.substring(host.lastIndexOf('-') + 1);
+            if (Integer.parseInt(ordinal) <= MAX_NODE_ID) {
+                return ordinal;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * EDLINK_NODE_ID env var or -Dedlink.node-id wins, then a StatefulSet pod ordinal;
+     * otherwise a hash of the host name, good enough for a single replica only.
+     */
+    private static int resolveNodeId() {
+        if (CONFIGURED_NODE_ID != null) {
+            return Integer.parseInt(CONFIGURED_NODE_ID);
+        }
+
+        String host = System.getenv("HOSTNAME");
+        if (host == null || host.isBlank()) {
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (Exception e) {
+                host = "localhost";
+            }
+        }
+        return Math.floorMod(host.hashCode(), MAX_NODE_ID + 1);
+    }
+}
@@ -0,0 +1,21 @@
+package com.project.edlink.entities;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+import java.lang.reflect.Member;
+
+/**
+ * Hibernate adapter for {@link TimeOrderedId}; every entity shares the one process-wide generator.
+ */
+public class TimeOrderedIdentifierGenerator implements IdentifierGenerator {
+
+    public TimeOrderedIdentifierGenerator(TimeOrderedId config, Member member, CustomIdGeneratorCreationContext context) {
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object entity) {
+        return TimeOrderedIdGenerator.shared().nextId();
+    }
+}
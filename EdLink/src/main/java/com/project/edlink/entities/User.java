@@ -2,8 +2,11 @@ package com.project.edlink.entities;
 
 import jakarta.persistence.*;
 
+import java.time.Instant;
+
 @Entity
-@Table(name = "users")
+@Table(name = "users",
+        indexes = @Index(name = "idx_users_token_revoked_at", columnList = "tokenRevokedAt"))
 public class User {
 
     @Id
@@ -26,6 +29,13 @@ public class User {
     // PENDING / APPROVED / REJECTED
     private String status;
 
+    // Bumped to revoke every JWT issued to this user
+    @Column(nullable = false, columnDefinition = "integer default 0")
+    private int tokenVersion;
+
+    // When tokenVersion was last bumped; replicas poll this to pick up each other's revocations
+    private Instant tokenRevokedAt;
+
     public User() {
         super();
     }
@@ -95,4 +105,20 @@ public class User {
     public void setStatus(String status) {
         this.status = status;
     }
-}
\ No newline at end of file
+
+    public int getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public void setTokenVersion(int tokenVersion) {
+        this.tokenVersion = tokenVersion;
+    }
+
+    public Instant getTokenRevokedAt() {
+        return tokenRevokedAt;
+    }
+
+    public void setTokenRevokedAt(Instant tokenRevokedAt) {
+        this.tokenRevokedAt = tokenRevokedAt;
+    }
+}
@@ -1,15 +1,18 @@
 package com.project.edlink.repository;
 
 import com.project.edlink.entities.ChatMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.List;
 
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
 
-    List<ChatMessage> findBySubjectIdOrderByIdAsc(Long subjectId);
+    // Keyset pages, all served by idx_chat_messages_subject_id_id; Pageable only carries the LIMIT
 
-    List<ChatMessage> findBySubjectIdAndIdGreaterThanOrderByIdAsc(Long subjectId, Long id);
-}
+    List<ChatMessage> findBySubjectIdOrderByIdDesc(Long subjectId, Pageable page);
 
+    List<ChatMessage> findBySubjectIdAndIdLessThanOrderByIdDesc(Long subjectId, Long id, Pageable page);
 
+    List<ChatMessage> findBySubjectIdAndIdGreaterThanOrderByIdAsc(Long subjectId, Long id, Pageable page);
+}
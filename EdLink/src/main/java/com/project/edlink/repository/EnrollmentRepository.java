@@ -2,6 +2,7 @@ package com.project.edlink.repository;
 
 import com.project.edlink.entities.Enrollment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 
@@ -14,4 +15,8 @@ public interface EnrollmentRepository extends JpaRepository<Enrollment, Long> {
     long countBySubjectId(Long subjectId);
 
     boolean existsByStudentIdAndSubjectId(Long studentId, Long subjectId);
+
+    // Id pairs only, used to build EnrollmentIndex without materializing entities
+    @Query("select e.studentId, e.subjectId from Enrollment e")
+    List<Object[]> findAllStudentSubjectPairs();
 }
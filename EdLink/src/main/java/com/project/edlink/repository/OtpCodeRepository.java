@@ -0,0 +1,41 @@
+package com.project.edlink.repository;
+
+import com.project.edlink.entities.OtpCode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+public interface OtpCodeRepository extends JpaRepository<OtpCode, String> {
+
+    @Query("select count(o) > 0 from OtpCode o where o.email = :email and o.otpHash = :otpHash " +
+            "and o.expiresAt > :now and o.failedAttempts < :maxAttempts")
+    boolean existsValid(@Param("email") String email,
+                        @Param("otpHash") String otpHash,
+                        @Param("now") Instant now,
+                        @Param("maxAttempts") int maxAttempts);
+
+    // Single-statement check-and-consume: only one concurrent caller can delete the row
+    @Modifying
+    @Transactional
+    @Query("delete from OtpCode o where o.email = :email and o.otpHash = :otpHash " +
+            "and o.expiresAt > :now and o.failedAttempts < :maxAttempts")
+    int consumeValid(@Param("email") String email,
+                     @Param("otpHash") String otpHash,
+                     @Param("now") Instant now,
+                     @Param("maxAttempts") int maxAttempts);
+
+    @Modifying
+    @Transactional
+    @Query("update OtpCode o set o.failedAttempts = o.failedAttempts + 1 where o.email = :email")
+    int recordFailedAttempt(@Param("email") String email);
+
+    // Batched purge; walks idx_otp_codes_expires_at and keeps each transaction short
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM otp_codes WHERE expires_at < :now LIMIT :batchSize", nativeQuery = true)
+    int purgeExpired(@Param("now") Instant now, @Param("batchSize") int batchSize);
+}
@@ -1,8 +1,15 @@
 package com.project.edlink.repository;
 
+import com.project.edlink.dto.UserProfile;
 import com.project.edlink.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,4 +21,22 @@ public interface UserRepository extends JpaRepository<User, Long> {
     long countByRole(String role);
 
     long countByRoleAndStatus(String role, String status);
-}
\ No newline at end of file
+
+    // Profile projection for UserDirectory, leaves the password hash in the table
+    @Query("select new com.project.edlink.dto.UserProfile(u.id, u.name, u.role, u.status) from User u where u.id in :ids")
+    List<UserProfile> findProfilesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select u.id, u.tokenVersion from User u where u.tokenVersion > 0")
+    List<Object[]> findRevokedTokenVersions();
+
+    @Query("select u.id, u.tokenVersion from User u where u.tokenRevokedAt >= :since")
+    List<Object[]> findTokenVersionsRevokedSince(@Param("since") Instant since);
+
+    @Modifying
+    @Transactional
+    @Query("update User u set u.tokenVersion = u.tokenVersion + 1, u.tokenRevokedAt = :now where u.id = :id")
+    int incrementTokenVersion(@Param("id") Long id, @Param("now") Instant now);
+
+    @Query("select u.tokenVersion from User u where u.id = :id")
+    Optional<Integer> findTokenVersionById(@Param("id") Long id);
+}
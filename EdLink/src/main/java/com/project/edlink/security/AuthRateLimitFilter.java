@@ -0,0 +1,159 @@
+package com.project.edlink.security;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Throttles the open /api/auth endpoints per client IP and per target email.
+ *
+ * Runs ahead of JwtFilter. Both keys must have a token left; otherwise the call is answered
+ * with 429 and a Retry-After header before any BCrypt, OTP or mail work happens.
+ *
+ * The email bucket is the tight one. The IP bucket is a looser backstop, because a school
+ * network puts many students behind one NAT address. The client IP is getRemoteAddr(), which
+ * with server.forward-headers-strategy=native is taken from X-Forwarded-For, but only when the
+ * hop in front of us is a trusted proxy (server.tomcat.remoteip.internal-proxies).
+ */
+@Component
+public class AuthRateLimitFilter extends OncePerRequestFilter {
+
+    private static final Set<String> LIMITED_PATHS = Set.of(
+            "/api/auth/login",
+            "/api/auth/forgot-password",
+            "/api/auth/verify-otp",
+            "/api/auth/reset-password",
+            "/api/auth/teacher/signup",
+            "/api/auth/student/signup"
+    );
+
+    // Auth payloads are a handful of fields; anything bigger is not a real client
+    private static final int MAX_BODY_BYTES = 8 * 1024;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    private final TokenBucketTable ipBuckets;
+    private final TokenBucketTable emailBuckets;
+
+    public AuthRateLimitFilter(
+            @Value("${edlink.ratelimit.ip.capacity:120}") int ipCapacity,
+            @Value("${edlink.ratelimit.ip.per-minute:120}") int ipPerMinute,
+            @Value("${edlink.ratelimit.email.capacity:5}") int emailCapacity,
+            @Value("${edlink.ratelimit.email.per-minute:5}") int emailPerMinute) {
+        this.ipBuckets = new TokenBucketTable(ipCapacity, ipPerMinute);
+        this.emailBuckets = new TokenBucketTable(emailCapacity, emailPerMinute);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || !LIMITED_PATHS.contains(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+
+        long now = System.nanoTime();
+
+        long waitNanos = ipBuckets.tryAcquire(request.getRemoteAddr(), now);
+        if (waitNanos > 0) {
+            reject(response, waitNanos);
+            return;
+        }
+
+        // Content-Length catches honest clients early; the capped read catches chunked bodies
+        if (request.getContentLengthLong() > MAX_BODY_BYTES) {
+            response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value());
+            return;
+        }
+
+        CachedBodyRequest cached = new CachedBodyRequest(request, MAX_BODY_BYTES);
+        if (cached.isOverLimit()) {
+            response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value());
+            return;
+        }
+
+        String email = extractEmail(cached.getBody());
+
+        if (email != null) {
+            waitNanos = emailBuckets.tryAcquire(email, now);
+            if (waitNanos > 0) {
+                reject(response, waitNanos);
+                return;
+            }
+        }
+
+        filterChain.doFilter(cached, response);
+    }
+
+    private void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"message\":\"Too many attempts. Please try again in "
+                + retryAfterSeconds + " seconds.\",\"data\":null}");
+    }
+
+    /**
+     * Pull the top-level "email" field with the streaming parser; no tree, no DTO.
+     */
+    String extractEmail(byte[] body) {
+        if (body.length == 0) {
+            return null;
+        }
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("email".equals(field) && value == JsonToken.VALUE_STRING) {
+                    return parser.getText().trim().toLowerCase(Locale.ROOT);
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            // Malformed JSON: let the controller produce its normal 400
+        }
+        return null;
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        ipBuckets.evictIdle(now);
+        emailBuckets.evictIdle(now);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ipBuckets", ipBuckets.size());
+        stats.put("emailBuckets", emailBuckets.size());
+        stats.put("allowed", ipBuckets.getAllowed());
+        stats.put("limitedByIp", ipBuckets.getLimited());
+        stats.put("limitedByEmail", emailBuckets.getLimited());
+        return stats;
+    }
+}
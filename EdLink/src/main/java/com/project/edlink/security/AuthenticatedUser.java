@@ -0,0 +1,63 @@
+package com.project.edlink.security;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.Authentication;
+
+import java.security.Principal;
+
+/**
+ * Lightweight principal built straight from verified JWT claims.
+ * Placed in the SecurityContext (and on STOMP sessions) instead of a UserDetails
+ * loaded from the database, so services can use the caller's id and role directly.
+ */
+public final class AuthenticatedUser implements AuthenticatedPrincipal {
+
+    private final Long id;
+    private final String email;
+    private final String name;
+    private final String role;
+
+    public AuthenticatedUser(Long id, String email, String name, String role) {
+        this.id = id;
+        this.email = email;
+        this.name = name;
+        this.role = role;
+    }
+
+    /**
+     * Unwrap the principal from a WebSocket/STOMP Principal (the Authentication set on CONNECT).
+     */
+    public static AuthenticatedUser from(Principal principal) {
+        if (principal instanceof Authentication authentication
+                && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            return user;
+        }
+        throw new RuntimeException("User not authenticated");
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    // Authentication.getName() resolves to the email, same as with the old UserDetails principal
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    public String getDisplayName() {
+        return name;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public boolean hasRole(String expected) {
+        return expected.equalsIgnoreCase(role);
+    }
+}
@@ -0,0 +1,43 @@
+package com.project.edlink.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Picks a BCrypt cost factor for this host at startup.
+ *
+ * Hashes a throwaway password at increasing strengths and keeps the highest one whose
+ * hash time stays under the target. Never goes below the Spring default (10), so enabling
+ * it can only make hashes stronger. Existing hashes keep working because the cost is
+ * stored inside each hash.
+ */
+final class BCryptCostTuner {
+
+    static final int MIN_STRENGTH = 10;
+    static final int MAX_STRENGTH = 14;
+
+    private static final String SAMPLE = "edlink-cost-probe";
+
+    private BCryptCostTuner() {
+    }
+
+    static int tune(long targetMillis) {
+        int chosen = MIN_STRENGTH;
+
+        for (int strength = MIN_STRENGTH; strength <= MAX_STRENGTH; strength++) {
+            BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+            encoder.encode(SAMPLE); // warm-up
+
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE);
+            long tookMillis = (System.nanoTime() - start) / 1_000_000;
+
+            System.out.println("BCrypt cost " + strength + " takes " + tookMillis + " ms on this host");
+            if (tookMillis > targetMillis) {
+                break;
+            }
+            chosen = strength;
+        }
+
+        return chosen;
+    }
+}
@@ -0,0 +1,88 @@
+package com.project.edlink.security;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Request wrapper that reads the (small) body up front so a filter can inspect it
+ * and the controller can still deserialize it afterwards.
+ *
+ * At most maxBytes + 1 bytes are read, whatever Content-Length says, so a chunked request
+ * (Content-Length -1) cannot make us buffer an arbitrary body. The read itself blocks the
+ * request thread like any servlet body read.
+ */
+class CachedBodyRequest extends HttpServletRequestWrapper {
+
+    private final byte[] body;
+    private final boolean overLimit;
+
+    CachedBodyRequest(HttpServletRequest request, int maxBytes) throws IOException {
+        super(request);
+        this.body = request.getInputStream().readNBytes(maxBytes + 1);
+        this.overLimit = body.length > maxBytes;
+    }
+
+    byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * True when the client sent more than maxBytes; the body is then cut short and must
+     * not be passed on.
+     */
+    boolean isOverLimit() {
+        return overLimit;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+        ByteArrayInputStream in = new ByteArrayInputStream(body);
+        return new ServletInputStream() {
+            @Override
+            public boolean isFinished() {
+                return in.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            // The body is already in memory, so it is all available at once
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                try {
+                    if (!isFinished()) {
+                        readListener.onDataAvailable();
+                    }
+                    readListener.onAllDataRead();
+                } catch (IOException e) {
+                    readListener.onError(e);
+                }
+            }
+
+            @Override
+            public int read() {
+                return in.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return in.read(b, off, len);
+            }
+        };
+    }
+
+    @Override
+    public BufferedReader getReader() {
+        return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+    }
+}
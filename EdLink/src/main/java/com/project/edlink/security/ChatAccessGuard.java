@@ -0,0 +1,187 @@
+package com.project.edlink.security;
+
+import com.project.edlink.entities.Subject;
+import com.project.edlink.repository.SubjectRepository;
+import com.project.edlink.service.ClusterBus;
+import com.project.edlink.service.EnrollmentIndex;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Subject chat access checks, with a per-STOMP-session cache of grants.
+ *
+ * A subject is checked against the database once (on SUBSCRIBE, or on the first SEND if the
+ * client skipped subscribing) and then pinned in the session attributes together with the
+ * user id. Later frames for the same subject are answered from the session without any query.
+ * REST polling has no session, so its grants are kept in a bounded per-user table instead.
+ *
+ * Grants are stamped with a per-user epoch. Anything that changes what a user may see
+ * (enrollment, teacher rejection) calls {@link #invalidate(Long)}, and the next frame from any
+ * of that user's sessions drops its pinned subjects and re-checks. In relay mode the
+ * invalidation is repeated on the other replicas through the {@link ClusterBus}; since that
+ * event can be lost, a grant is also re-checked once it is older than grant-ttl-ms.
+ */
+@Component
+public class ChatAccessGuard {
+
+    static final String SESSION_ATTRIBUTE = "edlink.chatGrants";
+
+    private static final int MAX_REST_GRANT_USERS = 10_000;
+
+    static final String CLUSTER_EVENT = "access";
+
+    @Autowired
+    private SubjectRepository subjectRepository;
+
+    @Autowired
+    private EnrollmentIndex enrollmentIndex;
+
+    @Autowired
+    private ClusterBus clusterBus;
+
+    // 0 = grants live as long as their session
+    @Value("${edlink.chat.access.grant-ttl-ms:600000}")
+    private long grantTtlMillis;
+
+    // userId -> epoch; users whose grants never changed are not stored
+    private final Map<Long, AtomicInteger> epochs = new ConcurrentHashMap<>();
+
+    // userId -> grants for requests that have no STOMP session (REST polling)
+    private final Map<Long, SessionGrants> restGrants = new ConcurrentHashMap<>();
+
+    private final LongAdder pinnedHits = new LongAdder();
+    private final LongAdder databaseChecks = new LongAdder();
+    private final LongAdder denied = new LongAdder();
+
+    @PostConstruct
+    public void listen() {
+        clusterBus.on(CLUSTER_EVENT, Long.class, this::invalidateLocally);
+    }
+
+    /**
+     * Make sure the user may use this subject's chat, checking the database only if there is
+     * no valid grant for it yet.
+     *
+     * @param sessionAttributes STOMP session attributes, or null outside a WebSocket session
+     * @throws RuntimeException if the subject does not exist or the user has no access to it
+     */
+    public void authorize(AuthenticatedUser user, Long subjectId, Map<String, Object> sessionAttributes) {
+        if (subjectId == null) {
+            throw new RuntimeException("Subject id is required");
+        }
+
+        SessionGrants grants = sessionAttributes != null ? sessionGrants(user, sessionAttributes) : restGrants(user);
+        if (grants.subjects.contains(subjectId)) {
+            pinnedHits.increment();
+            return;
+        }
+
+        databaseChecks.increment();
+        Subject subject = subjectRepository.findById(subjectId)
+                .orElseThrow(() -> new RuntimeException("Subject not found"));
+        check(user, subject);
+
+        grants.subjects.add(subjectId);
+    }
+
+    /**
+     * Throws unless the user teaches the subject or is enrolled in it.
+     */
+    public void check(AuthenticatedUser user, Subject subject) {
+        boolean teacher = user.hasRole("TEACHER")
+                && subject.getTeacherId() != null
+                && subject.getTeacherId().equals(user.getId());
+        boolean student = !teacher
+                && user.hasRole("STUDENT")
+                && enrollmentIndex.isEnrolled(user.getId(), subject.getId());
+
+        if (!teacher && !student) {
+            denied.increment();
+            throw new RuntimeException("You do not have access to this subject chat");
+        }
+    }
+
+    /**
+     * Drop every pinned grant of this user, in all of their open sessions on every replica.
+     */
+    public void invalidate(Long userId) {
+        invalidateLocally(userId);
+        clusterBus.publish(CLUSTER_EVENT, userId);
+    }
+
+    private void invalidateLocally(Long userId) {
+        epochs.computeIfAbsent(userId, id -> new AtomicInteger()).incrementAndGet();
+        restGrants.remove(userId);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pinnedHits", pinnedHits.sum());
+        stats.put("databaseChecks", databaseChecks.sum());
+        stats.put("denied", denied.sum());
+        stats.put("invalidatedUsers", epochs.size());
+        stats.put("restGrantUsers", restGrants.size());
+        return stats;
+    }
+
+    private SessionGrants sessionGrants(AuthenticatedUser user, Map<String, Object> sessionAttributes) {
+        int epoch = currentEpoch(user.getId());
+
+        SessionGrants grants = (SessionGrants) sessionAttributes.get(SESSION_ATTRIBUTE);
+        if (grants == null || !grants.userId.equals(user.getId()) || grants.epoch != epoch || expired(grants)) {
+            grants = new SessionGrants(user.getId(), epoch);
+            sessionAttributes.put(SESSION_ATTRIBUTE, grants);
+        }
+        return grants;
+    }
+
+    private SessionGrants restGrants(AuthenticatedUser user) {
+        int epoch = currentEpoch(user.getId());
+
+        SessionGrants grants = restGrants.get(user.getId());
+        if (grants == null || grants.epoch != epoch || expired(grants)) {
+            if (grants == null && restGrants.size() >= MAX_REST_GRANT_USERS) {
+                // Full: forget an arbitrary tenth, those users just get re-checked once
+                Iterator<Long> it = restGrants.keySet().iterator();
+                for (int i = 0; i < MAX_REST_GRANT_USERS / 10 && it.hasNext(); i++) {
+                    it.next();
+                    it.remove();
+                }
+            }
+            grants = new SessionGrants(user.getId(), epoch);
+            restGrants.put(user.getId(), grants);
+        }
+        return grants;
+    }
+
+    private boolean expired(SessionGrants grants) {
+        return grantTtlMillis > 0 && System.currentTimeMillis() - grants.createdAt > grantTtlMillis;
+    }
+
+    private int currentEpoch(Long userId) {
+        AtomicInteger epoch = epochs.get(userId);
+        return epoch == null ? 0 : epoch.get();
+    }
+
+    private static final class SessionGrants {
+        private final Long userId;
+        private final int epoch;
+        private final long createdAt = System.currentTimeMillis();
+        private final Set<Long> subjects = ConcurrentHashMap.newKeySet();
+
+        private SessionGrants(Long userId, int epoch) {
+            this.userId = userId;
+            this.epoch = epoch;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.project.edlink.security;
+
+import com.project.edlink.config.StompCodecs;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Authorizes STOMP SUBSCRIBE and SEND frames.
+ *
+ * /topic/chat.{subjectId}, /topic/presence.{subjectId} and /topic/typing.{subjectId} require access to the subject chat,
+ * checked through {@link ChatAccessGuard} so the grant is pinned for later SENDs. Any other
+ * /topic destination is rejected; user queues are left to the broker's user resolution.
+ * Sessions that negotiated CBOR on CONNECT are moved to the ".cbor" twin of the topic; no other
+ * session may subscribe to a ".cbor" topic, since its frames are binary.
+ *
+ * Clients may only SEND to /app destinations. A SEND to /topic or /queue would otherwise go
+ * straight to the broker: a forged chat frame, or in relay mode an event on the cluster bus.
+ */
+@Component
+public class ChatSubscriptionInterceptor implements ChannelInterceptor {
+
+    private static final String[] SUBJECT_TOPICS = {"/topic/chat.", "/topic/presence.", "/topic/typing."};
+
+    @Autowired
+    private ChatAccessGuard chatAccessGuard;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null) {
+            return message;
+        }
+        if (StompCommand.SEND.equals(accessor.getCommand())) {
+            String destination = accessor.getDestination();
+            if (destination == null || !destination.startsWith("/app/")) {
+                throw new AccessDeniedException("Clients may only send to /app destinations");
+            }
+            return message;
+        }
+        if (!StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            return message;
+        }
+
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith("/topic/")) {
+            return message;
+        }
+
+        Long subjectId = subjectIdOf(destination);
+        if (subjectId == null) {
+            throw new AccessDeniedException("Unknown destination: " + destination);
+        }
+
+        AuthenticatedUser user;
+        try {
+            user = AuthenticatedUser.from(accessor.getUser());
+        } catch (RuntimeException e) {
+            throw new AccessDeniedException("Not authenticated");
+        }
+
+        try {
+            chatAccessGuard.authorize(user, subjectId, accessor.getSessionAttributes());
+        } catch (RuntimeException e) {
+            throw new AccessDeniedException("No access to " + destination);
+        }
+
+        boolean cbor = StompCodecs.wantsCbor(accessor.getSessionAttributes());
+        if (!cbor && destination.endsWith(StompCodecs.CBOR_SUFFIX)) {
+            throw new AccessDeniedException("Binary topics need codec: cbor on /ws-binary");
+        }
+        if (cbor && !destination.endsWith(StompCodecs.CBOR_SUFFIX)) {
+            accessor.setDestination(destination + StompCodecs.CBOR_SUFFIX);
+        }
+        return message;
+    }
+
+    /**
+     * @return the subject id of a chat, presence or typing topic (JSON or ".cbor"), or null for any other destination
+     */
+    public static Long subjectIdOf(String destination) {
+        if (destination == null) {
+            return null;
+        }
+        if (destination.endsWith(StompCodecs.CBOR_SUFFIX)) {
+            destination = destination.substring(0, destination.length() - StompCodecs.CBOR_SUFFIX.length());
+        }
+        for (String prefix : SUBJECT_TOPICS) {
+            if (destination.startsWith(prefix)) {
+                try {
+                    return Long.parseLong(destination.substring(prefix.length()));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,56 @@
+package com.project.edlink.security;
+
+/**
+ * Immutable view of a token that has already passed signature and expiry checks.
+ * Produced once by {@link JwtUtil#verify(String)} and shared through the verified-token cache.
+ */
+public final class JwtClaims {
+
+    private final Long userId;
+    private final String email;
+    private final String name;
+    private final String role;
+    private final int tokenVersion;
+    private final long expiresAtMillis;
+
+    public JwtClaims(Long userId, String email, String name, String role, int tokenVersion, long expiresAtMillis) {
+        this.userId = userId;
+        this.email = email;
+        this.name = name;
+        this.role = role;
+        this.tokenVersion = tokenVersion;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public int getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return expiresAtMillis <= nowMillis;
+    }
+
+    public AuthenticatedUser toPrincipal() {
+        return new AuthenticatedUser(userId, email, name, role);
+    }
+}
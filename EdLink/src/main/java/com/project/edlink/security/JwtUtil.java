@@ -2,6 +2,7 @@ package com.project.edlink.security;
 
 
 
+import com.project.edlink.entities.User;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.stereotype.Component;
@@ -14,44 +15,92 @@ public class JwtUtil {
 
     private final String SECRET = "THIS_IS_A_SUPER_SECRET_JWT_KEY_1234567890"; // 32+ chars
 
-    private final long EXPIRATION = 1000 * 60 * 60; // 1 hour
+    private final long EXPIRATION = 1000 * 60 * 15; // 15 minutes, clients renew via /api/auth/refresh
 
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(SECRET.getBytes());
-    }
+    private static final int VERIFIED_CACHE_SIZE = 10_000;
+
+    // Key and parser are thread-safe, build them once instead of per call
+    private final Key signingKey = Keys.hmacShaKeyFor(SECRET.getBytes());
+
+    private final JwtParser parser = Jwts.parserBuilder()
+            .setSigningKey(signingKey)
+            .build();
 
-    public String generateToken(String email, String role) {
+    private final VerifiedTokenCache verifiedTokens = new VerifiedTokenCache(VERIFIED_CACHE_SIZE);
+
+    public String generateToken(User user) {
         return Jwts.builder()
-                .setSubject(email)
-                .claim("role", role)
+                .setSubject(user.getEmail())
+                .claim("uid", user.getId())
+                .claim("name", user.getName())
+                .claim("role", user.getRole())
+                .claim("ver", user.getTokenVersion())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    public String extractEmail(String token) {
-        return parseClaims(token).getSubject();
-    }
+    /**
+     * Parse and verify a token once.
+     * Repeated tokens (chat polling, WebSocket reconnects) are answered from the
+     * verified-claims cache without touching the HMAC.
+     *
+     * @return the verified claims, or null if the token is malformed, forged or expired
+     */
+    public JwtClaims verify(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        String key = VerifiedTokenCache.digest(token);
 
-    public String extractRole(String token) {
-        return parseClaims(token).get("role", String.class);
+        JwtClaims cached = verifiedTokens.get(key, now);
+        if (cached != null) {
+            return cached;
+        }
+
+        Claims body;
+        try {
+            body = parser.parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+
+        // Tokens issued before uid/ver were added cannot be trusted without a user lookup
+        Number userId = body.get("uid", Number.class);
+        Number version = body.get("ver", Number.class);
+        if (body.getSubject() == null || body.getExpiration() == null || userId == null || version == null) {
+            return null;
+        }
+
+        JwtClaims claims = new JwtClaims(
+                userId.longValue(),
+                body.getSubject(),
+                body.get("name", String.class),
+                body.get("role", String.class),
+                version.intValue(),
+                body.getExpiration().getTime()
+        );
+
+        if (claims.isExpired(now)) {
+            return null;
+        }
+
+        verifiedTokens.put(key, claims, now);
+        return claims;
     }
 
-    public boolean isTokenExpired(String token) {
-        return parseClaims(token).getExpiration().before(new Date());
+    public long getCacheHits() {
+        return verifiedTokens.getHits();
     }
 
-    public boolean validateToken(String token, String email) {
-        return (email.equals(extractEmail(token)) && !isTokenExpired(token));
+    public long getCacheMisses() {
+        return verifiedTokens.getMisses();
     }
 
-    private Claims parseClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public int getCacheSize() {
+        return verifiedTokens.size();
     }
 }
-
@@ -0,0 +1,136 @@
+package com.project.edlink.security;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dedicated, bounded execution lane for BCrypt work.
+ *
+ * Login/signup/reset requests hand their hash or verify call to a small fixed pool instead of
+ * burning CPU on the Tomcat thread. When the pool and its queue are full the call fails fast
+ * with {@link PasswordHashingBusyException} so a login spike cannot starve chat and downloads.
+ */
+@Component
+public class PasswordHasher {
+
+    @Autowired
+    private BCryptPasswordEncoder passwordEncoder;
+
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+
+    public PasswordHasher(
+            @Value("${edlink.auth.hashing.threads:0}") int threads,
+            @Value("${edlink.auth.hashing.queue-capacity:64}") int queueCapacity,
+            @Value("${edlink.auth.hashing.timeout-ms:5000}") long timeoutMillis) {
+
+        // Default: half the cores, so hashing can never take the whole box
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadIds = new AtomicInteger();
+
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-" + threadIds.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public String encode(String rawPassword) {
+        return run(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return run(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    private <T> T run(Callable<T> work) {
+        long enqueuedAt = System.nanoTime();
+
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                queueWaitNanos.add(startedAt - enqueuedAt);
+                try {
+                    return work.call();
+                } finally {
+                    long took = System.nanoTime() - startedAt;
+                    hashNanos.add(took);
+                    maxHashNanos.accumulateAndGet(took, Math::max);
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashingBusyException("Too many sign-in requests right now. Please retry shortly.");
+        }
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new PasswordHashingBusyException("Sign-in is taking too long right now. Please retry shortly.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long done = completed.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("poolSize", executor.getCorePoolSize());
+        stats.put("activeThreads", executor.getActiveCount());
+        stats.put("queueDepth", executor.getQueue().size());
+        stats.put("queueRemainingCapacity", executor.getQueue().remainingCapacity());
+        stats.put("completed", done);
+        stats.put("rejected", rejected.sum());
+        stats.put("avgHashMillis", done == 0 ? 0.0 : hashNanos.sum() / 1_000_000.0 / done);
+        stats.put("maxHashMillis", maxHashNanos.get() / 1_000_000.0);
+        stats.put("avgQueueWaitMillis", done == 0 ? 0.0 : queueWaitNanos.sum() / 1_000_000.0 / done);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
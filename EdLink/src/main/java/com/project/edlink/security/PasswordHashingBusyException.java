@@ -0,0 +1,11 @@
+package com.project.edlink.security;
+
+/**
+ * Thrown when the password hashing lane is saturated. Mapped to 503 + Retry-After.
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+
+    public PasswordHashingBusyException(String message) {
+        super(message);
+    }
+}
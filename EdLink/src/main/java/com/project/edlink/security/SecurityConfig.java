@@ -1,14 +1,18 @@
 package com.project.edlink.security;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
@@ -22,9 +26,20 @@ public class SecurityConfig {
     @Autowired
     private JwtFilter jwtFilter;
 
+    @Autowired
+    private AuthRateLimitFilter authRateLimitFilter;
+
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BCryptPasswordEncoder passwordEncoder(
+            @Value("${edlink.auth.bcrypt.strength:10}") int strength,
+            @Value("${edlink.auth.bcrypt.auto-tune:false}") boolean autoTune,
+            @Value("${edlink.auth.bcrypt.target-ms:250}") long targetMillis) {
+
+        if (autoTune) {
+            strength = BCryptCostTuner.tune(targetMillis);
+            System.out.println("BCrypt cost auto-tuned to " + strength);
+        }
+        return new BCryptPasswordEncoder(strength);
     }
 
     @Bean
@@ -35,6 +50,9 @@ public class SecurityConfig {
             .csrf(csrf -> csrf.disable())
             .authorizeHttpRequests(auth -> auth
 
+                // SSE streams finish on an async dispatch; the original request was already authorized
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
+
                 // ✅ FRONTEND (React static files)
                 .requestMatchers(
                     "/",
@@ -48,7 +66,7 @@ public class SecurityConfig {
                 .requestMatchers("/api/auth/**").permitAll()
 
                 // ✅ WebSocket endpoints
-                .requestMatchers("/ws/**", "/topic/**", "/queue/**", "/user/**").permitAll()
+                .requestMatchers("/ws/**", "/ws-binary", "/topic/**", "/queue/**", "/user/**").permitAll()
 
                 // ✅ ROLE BASED APIs
                 .requestMatchers("/api/admin/**").hasRole("ADMIN")
@@ -64,9 +82,14 @@ public class SecurityConfig {
             )
             .sessionManagement(session ->
                 session.sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+            )
+            // Missing/expired access token -> 401 so clients know to call /api/auth/refresh
+            .exceptionHandling(ex ->
+                ex.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED))
             );
 
         http.addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class);
+        http.addFilterBefore(authRateLimitFilter, JwtFilter.class);
 
         return http.build();
     }
@@ -0,0 +1,75 @@
+package com.project.edlink.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free token buckets keyed by an arbitrary string (client IP, email, ...).
+ *
+ * Each bucket is a single AtomicLong holding its "theoretical arrival time" (GCRA), which is
+ * equivalent to a token bucket of {@code capacity} tokens refilled at one token per
+ * {@code emissionIntervalNanos}. A check is one map lookup plus one CAS, with no locks and no
+ * background refill. Buckets that have fully refilled carry no state worth keeping and are
+ * dropped by {@link #evictIdle(long)}.
+ */
+public class TokenBucketTable {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder limited = new LongAdder();
+
+    public TokenBucketTable(int capacity, int refillPerMinute) {
+        this.emissionIntervalNanos = 60_000_000_000L / Math.max(1, refillPerMinute);
+        this.burstToleranceNanos = emissionIntervalNanos * Math.max(0, capacity - 1);
+    }
+
+    /**
+     * Take one token for the key.
+     *
+     * @return 0 if allowed, otherwise how many nanoseconds until a token is available
+     */
+    public long tryAcquire(String key, long nowNanos) {
+        AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(nowNanos));
+
+        while (true) {
+            long tat = bucket.get();
+            long base = Math.max(tat, nowNanos);
+            long waitNanos = base - nowNanos - burstToleranceNanos;
+
+            if (waitNanos > 0) {
+                limited.increment();
+                return waitNanos;
+            }
+            if (bucket.compareAndSet(tat, base + emissionIntervalNanos)) {
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Drop buckets that are back to full capacity; they behave exactly like a new bucket.
+     */
+    public int evictIdle(long nowNanos) {
+        int before = buckets.size();
+        buckets.values().removeIf(bucket -> bucket.get() <= nowNanos);
+        return before - buckets.size();
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    public long getAllowed() {
+        return allowed.sum();
+    }
+
+    public long getLimited() {
+        return limited.sum();
+    }
+}
@@ -0,0 +1,119 @@
+package com.project.edlink.security;
+
+import com.project.edlink.repository.UserRepository;
+import com.project.edlink.service.ClusterBus;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory table of per-user token versions.
+ *
+ * Every access token carries the version that was current when it was issued. Bumping a
+ * user's version revokes all of their outstanding tokens without any per-request database
+ * read: JwtFilter only compares the claim against this map. Users that were never revoked
+ * sit at version 0 and are not stored, so the table stays small.
+ *
+ * The users table is the shared store. A revocation on one replica stamps tokenRevokedAt, and
+ * every replica polls for rows stamped since its last poll, so a revoked token stops working
+ * everywhere within sync-ms. The poll window overlaps by sync-overlap-ms to absorb clock
+ * differences between replicas; versions only ever move up, so seeing a row twice is harmless.
+ * In relay mode the revoking replica also announces the new version on the {@link ClusterBus},
+ * so the others usually apply it at once and the poll is only the backstop.
+ */
+@Component
+public class TokenVersionRegistry {
+
+    static final String CLUSTER_EVENT = "revoke";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ClusterBus clusterBus;
+
+    private final Duration syncOverlap;
+
+    private final Map<Long, Integer> versions = new ConcurrentHashMap<>();
+
+    private volatile Instant lastSync;
+
+    private final LongAdder syncedRevocations = new LongAdder();
+
+    public TokenVersionRegistry(@Value("${edlink.jwt.revocation.sync-overlap-ms:30000}") long syncOverlapMillis) {
+        this.syncOverlap = Duration.ofMillis(syncOverlapMillis);
+    }
+
+    @PostConstruct
+    public void load() {
+        lastSync = Instant.now();
+        List<Object[]> rows = userRepository.findRevokedTokenVersions();
+        for (Object[] row : rows) {
+            versions.put((Long) row[0], (Integer) row[1]);
+        }
+        System.out.println("Token version table loaded: " + versions.size() + " revoked users");
+        clusterBus.on(CLUSTER_EVENT, Revocation.class, revocation -> apply(revocation.userId(), revocation.version()));
+    }
+
+    /**
+     * Pick up revocations made by other replicas.
+     */
+    @Scheduled(fixedDelayString = "${edlink.jwt.revocation.sync-ms:2000}")
+    public void sync() {
+        Instant now = Instant.now();
+        List<Object[]> rows = userRepository.findTokenVersionsRevokedSince(lastSync.minus(syncOverlap));
+        for (Object[] row : rows) {
+            apply((Long) row[0], (Integer) row[1]);
+        }
+        lastSync = now;
+    }
+
+    // A version from another replica, by event or by poll; whichever comes second is a no-op
+    private void apply(Long userId, int version) {
+        if (version > currentVersion(userId)) {
+            versions.merge(userId, version, Math::max);
+            syncedRevocations.increment();
+        }
+    }
+
+    public int currentVersion(Long userId) {
+        return versions.getOrDefault(userId, 0);
+    }
+
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        return tokenVersion >= currentVersion(userId);
+    }
+
+    /**
+     * Invalidate every token issued to this user so far, here at once and on the other
+     * replicas when the event arrives, or at their next sync at the latest.
+     */
+    public int revoke(Long userId) {
+        userRepository.incrementTokenVersion(userId, Instant.now());
+        // The stored version, not a local +1: this replica may not have seen every earlier bump
+        int stored = userRepository.findTokenVersionById(userId).orElse(currentVersion(userId) + 1);
+        int version = versions.merge(userId, stored, Math::max);
+        clusterBus.publish(CLUSTER_EVENT, new Revocation(userId, version));
+        return version;
+    }
+
+    public int size() {
+        return versions.size();
+    }
+
+    public long getSyncedRevocations() {
+        return syncedRevocations.sum();
+    }
+
+    record Revocation(Long userId, int version) {
+    }
+}
@@ -0,0 +1,89 @@
+package com.project.edlink.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of verified JWT claims keyed by a SHA-256 digest of the raw token.
+ *
+ * Entries never outlive the token they came from, so a hit is always as good as
+ * re-running the HMAC check. When the cache is full, expired entries are swept first
+ * and then arbitrary entries are dropped until there is room again.
+ */
+class VerifiedTokenCache {
+
+    private final int maxEntries;
+    private final Map<String, JwtClaims> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    VerifiedTokenCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    JwtClaims get(String key, long nowMillis) {
+        JwtClaims claims = entries.get(key);
+        if (claims == null) {
+            misses.increment();
+            return null;
+        }
+        if (claims.isExpired(nowMillis)) {
+            entries.remove(key, claims);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return claims;
+    }
+
+    void put(String key, JwtClaims claims, long nowMillis) {
+        if (entries.size() >= maxEntries) {
+            evict(nowMillis);
+        }
+        entries.put(key, claims);
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void evict(long nowMillis) {
+        entries.values().removeIf(claims -> claims.isExpired(nowMillis));
+        if (entries.size() < maxEntries) {
+            return;
+        }
+
+        // Still full: drop roughly a tenth of the table rather than one entry per insert
+        int target = maxEntries - Math.max(1, maxEntries / 10);
+        Iterator<String> it = entries.keySet().iterator();
+        while (entries.size() > target && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha256.digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
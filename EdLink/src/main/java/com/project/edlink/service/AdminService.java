@@ -5,6 +5,7 @@ import com.project.edlink.entities.User;
 import com.project.edlink.repository.StudyMaterialRepository;
 import com.project.edlink.repository.SubjectRepository;
 import com.project.edlink.repository.UserRepository;
+import com.project.edlink.security.ChatAccessGuard;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -23,6 +24,15 @@ public class AdminService {
     @Autowired
     private StudyMaterialRepository materialRepository;
 
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private ChatAccessGuard chatAccessGuard;
+
+    @Autowired
+    private UserDirectory userDirectory;
+
     public List<User> getPendingTeachers() {
         return userRepository.findByStatus("PENDING");
     }
@@ -46,6 +56,7 @@ public class AdminService {
 
         teacher.setStatus("APPROVED");
         userRepository.save(teacher);
+        userDirectory.update(teacher);
 
         return "Teacher approved successfully!";
     }
@@ -63,6 +74,11 @@ public class AdminService {
 
         teacher.setStatus("REJECTED");
         userRepository.save(teacher);
+        userDirectory.update(teacher);
+
+        // Kick out any session the teacher still holds
+        refreshTokenService.revokeAll(teacher.getId());
+        chatAccessGuard.invalidate(teacher.getId());
 
         try{
             emailService.sendTeacherRejectionEmail(teacher.getEmail(), teacher.getName());
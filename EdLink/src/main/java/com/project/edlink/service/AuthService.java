@@ -1,12 +1,15 @@
 package com.project.edlink.service;
 
+import com.project.edlink.dto.AuthTokens;
 import com.project.edlink.dto.LoginRequest;
 import com.project.edlink.dto.SignupRequest;
+import com.project.edlink.entities.RefreshToken;
 import com.project.edlink.entities.User;
 import com.project.edlink.repository.UserRepository;
 import com.project.edlink.security.JwtUtil;
+import com.project.edlink.security.PasswordHashingBusyException;
+import com.project.edlink.security.PasswordHasher;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
@@ -27,7 +30,13 @@ public class AuthService {
     private EmailService emailService;
 
     @Autowired
-    private BCryptPasswordEncoder passwordEncoder;
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private UserDirectory userDirectory;
 
     public String registerTeacher(SignupRequest request) {
 
@@ -39,7 +48,7 @@ public class AuthService {
         User user = new User();
         user.setName(request.getName());
         user.setEmail(request.getEmail());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setPassword(passwordHasher.encode(request.getPassword()));
         user.setRole("TEACHER");
         user.setStandard(null);
         user.setStatus("PENDING");
@@ -62,7 +71,7 @@ public class AuthService {
         User user = new User();
         user.setName(request.getName());
         user.setEmail(request.getEmail());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setPassword(passwordHasher.encode(request.getPassword()));
         user.setRole("STUDENT");
         user.setStandard(request.getStandard());
         user.setStatus("APPROVED");
@@ -76,7 +85,7 @@ public class AuthService {
         return "Student registered successfully!";
     }
 
-    public String login(LoginRequest request) {
+    public AuthTokens login(LoginRequest request) {
         try {
             User user = userRepository.findByEmail(request.getEmail()).orElse(null);
 
@@ -85,7 +94,7 @@ public class AuthService {
                 return null;
             }
 
-            boolean passwordMatches = passwordEncoder.matches(request.getPassword(), user.getPassword());
+            boolean passwordMatches = passwordHasher.matches(request.getPassword(), user.getPassword());
             
             if (!passwordMatches) {
                 System.out.println("Login failed: Password mismatch for email: " + request.getEmail());
@@ -95,12 +104,15 @@ public class AuthService {
 
             if (user.getRole().equals("TEACHER") && !user.getStatus().equals("APPROVED")) {
                 // Return a special indicator for pending teacher
-                return "PENDING_TEACHER";
+                return AuthTokens.pendingTeacher();
             }
 
-            String token = jwtUtil.generateToken(user.getEmail(), user.getRole());
+            String token = jwtUtil.generateToken(user);
+            String refreshToken = refreshTokenService.issue(user.getId());
             System.out.println("Login successful for: " + request.getEmail() + " with role: " + user.getRole());
-            return token;
+            return AuthTokens.of(token, refreshToken);
+        } catch (PasswordHashingBusyException e) {
+            throw e;
         } catch (Exception e) {
             System.err.println("Login error: " + e.getMessage());
             e.printStackTrace();
@@ -108,6 +120,38 @@ public class AuthService {
         }
     }
 
+    /**
+     * Rotate a refresh token into a fresh access/refresh pair.
+     * No password check here, which keeps BCrypt off the path clients hit every 15 minutes.
+     */
+    public AuthTokens refresh(String refreshToken) {
+        RefreshToken consumed = refreshTokenService.consume(refreshToken);
+        if (consumed == null) {
+            return null;
+        }
+
+        User user = userRepository.findById(consumed.getUserId()).orElse(null);
+        if (user == null) {
+            return null;
+        }
+
+        if (user.getRole().equals("TEACHER") && !user.getStatus().equals("APPROVED")) {
+            return AuthTokens.pendingTeacher();
+        }
+
+        return AuthTokens.of(jwtUtil.generateToken(user),
+                refreshTokenService.issue(user.getId(), consumed.getFamilyId()));
+    }
+
+    /**
+     * End the session the refresh token belongs to; other devices stay logged in.
+     *
+     * @return true if a session was found and ended
+     */
+    public boolean logout(String refreshToken) {
+        return refreshTokenService.revokeFamily(refreshToken) != null;
+    }
+
     public String sendOTP(String email) {
         Optional<User> userOpt = userRepository.findByEmail(email);
         if (userOpt.isEmpty()) {
@@ -115,7 +159,9 @@ public class AuthService {
         }
 
         String otp = otpService.generateOTP();
-        otpService.storeOTP(email, otp);
+        if (!otpService.storeOTP(email, otp)) {
+            return "Failed to send OTP. Please try again.";
+        }
         
         try {
             emailService.sendOTPEmail(email, otp);
@@ -133,8 +179,8 @@ public class AuthService {
     }
 
     public String resetPassword(String email, String otp, String newPassword) {
-        // Verify OTP first
-        if (!otpService.verifyOTP(email, otp)) {
+        // Check and burn the OTP in one step so it cannot be replayed on another replica
+        if (!otpService.consumeOTP(email, otp)) {
             return "Invalid or expired OTP!";
         }
 
@@ -144,11 +190,12 @@ public class AuthService {
         }
 
         User user = userOpt.get();
-        user.setPassword(passwordEncoder.encode(newPassword));
+        user.setPassword(passwordHasher.encode(newPassword));
         userRepository.save(user);
+        userDirectory.update(user);
 
-        // Remove OTP after successful password reset
-        otpService.removeOTP(email);
+        // Old sessions must not survive a password reset
+        refreshTokenService.revokeAll(user.getId());
 
         return "Password reset successfully!";
     }
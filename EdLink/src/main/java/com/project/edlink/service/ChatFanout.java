@@ -0,0 +1,231 @@
+package com.project.edlink.service;
+
+import com.project.edlink.dto.ChatMessageDto;
+import com.project.edlink.entities.TimeOrderedIdGenerator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single in-process fan-out for new chat messages: STOMP subscribers on /topic/chat.{id}
+ * and Server-Sent Events streams get the same shared (own=false) DTO. In relay mode the
+ * message also goes out on the {@link ClusterBus}, for SSE streams held by other replicas.
+ *
+ * With edlink.chat.batching.enabled, a busy subject's STOMP frames are coalesced: once the
+ * subject goes over batch-threshold-per-second, messages arriving within window-ms are sent as
+ * one frame whose payload is an array. Quiet subjects keep immediate single-message frames.
+ * Each subject's frames are sent under its lane lock, so ordering is kept in both modes.
+ *
+ * Every STOMP frame carries "seq: {epoch}:{n}", n counting frames per subject from 1 within an
+ * epoch. A client seeing n jump within one epoch knows it missed a frame and catches up from its
+ * last message id. Epochs start with the node id and boot time, so they are never shared between
+ * replicas; in relay mode one subject's frames interleave the epochs of every replica whose
+ * users post there, and clients keep the last n per epoch rather than only the latest. Subject
+ * state is dropped once the subject has been quiet for lane-idle-ms, and the next message starts
+ * a new epoch, so the map only holds subjects with recent traffic.
+ */
+@Component
+public class ChatFanout {
+
+    private final boolean batchingEnabled;
+    private final long windowMillis;
+    private final int thresholdPerSecond;
+    private final long laneIdleMillis;
+
+    @Autowired
+    private TopicPublisher topicPublisher;
+
+    @Autowired
+    private ChatSseHub chatSseHub;
+
+    @Autowired
+    private ClusterBus clusterBus;
+
+    static final String CLUSTER_EVENT = "chat";
+
+    public static final String SEQ_HEADER = "seq";
+
+    // Same shape as the ClusterBus origin: unique per replica and per restart
+    private final String bootEpoch = TimeOrderedIdGenerator.shared().getNodeId() + "-"
+            + Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong laneEpochs = new AtomicLong();
+
+    private final Map<Long, Lane> lanes = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "chat-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongAdder singleFrames = new LongAdder();
+    private final LongAdder batchFrames = new LongAdder();
+    private final LongAdder batchedMessages = new LongAdder();
+    private final LongAdder evictedLanes = new LongAdder();
+
+    public ChatFanout(@Value("${edlink.chat.batching.enabled:false}") boolean batchingEnabled,
+                      @Value("${edlink.chat.batching.window-ms:5}") long windowMillis,
+                      @Value("${edlink.chat.batching.threshold-per-second:20}") int thresholdPerSecond,
+                      @Value("${edlink.chat.lane-idle-ms:60000}") long laneIdleMillis) {
+        this.batchingEnabled = batchingEnabled;
+        this.windowMillis = windowMillis;
+        this.thresholdPerSecond = thresholdPerSecond;
+        this.laneIdleMillis = laneIdleMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        // STOMP subscribers already got the message through the broker; only SSE is per replica
+        clusterBus.on(CLUSTER_EVENT, ChatMessageDto.class, chatSseHub::broadcast);
+        flusher.scheduleWithFixedDelay(() -> evictIdleLanes(System.currentTimeMillis()),
+                laneIdleMillis, laneIdleMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void publish(ChatMessageDto message) {
+        chatSseHub.broadcast(message);
+        clusterBus.publish(CLUSTER_EVENT, message);
+
+        long now = System.currentTimeMillis();
+        while (true) {
+            Lane lane = lanes.computeIfAbsent(message.getSubjectId(), id -> newLane());
+            synchronized (lane) {
+                // Evicted between the lookup and the lock: its successor is already in the map
+                if (lane.retired) {
+                    continue;
+                }
+                lane.lastUsed = now;
+                offer(lane, message, now);
+                return;
+            }
+        }
+    }
+
+    // Caller holds the lane lock
+    private void offer(Lane lane, ChatMessageDto message, long now) {
+        if (!batchingEnabled) {
+            sendSingle(lane, message);
+            return;
+        }
+        int rate = lane.arrival(now);
+        if (rate <= thresholdPerSecond && lane.pending.isEmpty()) {
+            sendSingle(lane, message);
+            return;
+        }
+        lane.pending.add(message);
+        if (!lane.flushScheduled) {
+            lane.flushScheduled = true;
+            flusher.schedule(() -> flush(message.getSubjectId(), lane), windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Forget subjects with nothing pending and no message for lane-idle-ms.
+     */
+    void evictIdleLanes(long now) {
+        for (Long subjectId : lanes.keySet()) {
+            lanes.computeIfPresent(subjectId, (id, lane) -> {
+                synchronized (lane) {
+                    if (now - lane.lastUsed < laneIdleMillis || lane.flushScheduled || !lane.pending.isEmpty()) {
+                        return lane;
+                    }
+                    lane.retired = true;
+                    evictedLanes.increment();
+                    return null;
+                }
+            });
+        }
+    }
+
+    private Lane newLane() {
+        return new Lane(bootEpoch + "." + Long.toString(laneEpochs.incrementAndGet(), 36));
+    }
+
+    private void flush(Long subjectId, Lane lane) {
+        synchronized (lane) {
+            lane.flushScheduled = false;
+            if (lane.pending.isEmpty()) {
+                return;
+            }
+            if (lane.pending.size() == 1) {
+                sendSingle(lane, lane.pending.get(0));
+            } else {
+                sendFrame(subjectId, lane, new ArrayList<>(lane.pending));
+                batchFrames.increment();
+                batchedMessages.add(lane.pending.size());
+            }
+            lane.pending.clear();
+        }
+    }
+
+    private void sendSingle(Lane lane, ChatMessageDto message) {
+        sendFrame(message.getSubjectId(), lane, message);
+        singleFrames.increment();
+    }
+
+    // Caller holds the lane lock, so seq order is send order
+    private void sendFrame(Long subjectId, Lane lane, Object payload) {
+        lane.seq++;
+        topicPublisher.send("/topic/chat." + subjectId, payload, Map.of(SEQ_HEADER, lane.epoch + ":" + lane.seq));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batchingEnabled", batchingEnabled);
+        stats.put("singleFrames", singleFrames.sum());
+        stats.put("batchFrames", batchFrames.sum());
+        stats.put("batchedMessages", batchedMessages.sum());
+        stats.put("lanes", lanes.size());
+        stats.put("evictedLanes", evictedLanes.sum());
+        return stats;
+    }
+
+    /**
+     * Per-subject state. Rate is the larger of the previous and current one-second buckets,
+     * so a burst switches batching on at once and it stays on for about a second after.
+     * Guarded by its own monitor.
+     */
+    private static class Lane {
+        final String epoch;
+        final List<ChatMessageDto> pending = new ArrayList<>();
+        boolean flushScheduled;
+        boolean retired;
+        long lastUsed;
+        long seq;
+
+        Lane(String epoch) {
+            this.epoch = epoch;
+        }
+
+        long bucketStart;
+        int bucketCount;
+        int previousCount;
+
+        int arrival(long now) {
+            if (now - bucketStart >= 1000) {
+                previousCount = now - bucketStart < 2000 ? bucketCount : 0;
+                bucketStart = now;
+                bucketCount = 0;
+            }
+            bucketCount++;
+            return Math.max(previousCount, bucketCount);
+        }
+    }
+}
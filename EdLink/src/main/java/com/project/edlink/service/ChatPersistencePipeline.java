@@ -0,0 +1,355 @@
+package com.project.edlink.service;
+
+import com.project.edlink.entities.ChatMessage;
+import com.project.edlink.entities.TimeOrderedIdGenerator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Group-commit writer for chat messages.
+ *
+ * Senders enqueue a message and get a future back. One writer thread drains the queue, waiting at most flush-interval-ms after the first message or until
+ * batch-size messages are collected, and writes the batch as a single multi-row INSERT
+ * (one statement, one commit). Under load many messages share a commit instead of paying
+ * one round trip and fsync each.
+ *
+ * Ids are assigned here, under the same lock as the non-blocking queue insert, so id order is queue order and
+ * (one writer, FIFO) commit order. A reader paging with after= therefore never sees a newer id
+ * committed while an older one is still queued on this replica.
+ *
+ * A batch that fails because of one bad row (constraint, value too long) is rewritten row by row,
+ * so only that row is lost. Content longer than the column is refused before it is queued.
+ *
+ * Durability modes (edlink.chat.persistence.durability):
+ * commit  - the sender waits for the batch commit before the message is broadcast (default)
+ * enqueue - the message is broadcast as soon as it is queued; a crash can lose the last window
+ */
+@Component
+public class ChatPersistencePipeline {
+
+    public enum Durability { COMMIT, ENQUEUE }
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO chat_messages (id, subject_id, sender_id, content, created_at) VALUES ";
+    private static final String ROW_PLACEHOLDER = "(?, ?, ?, ?, ?)";
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long QUEUE_FULL_WAIT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long QUEUE_FULL_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // chat_messages.content is a MySQL TEXT column
+    public static final int MAX_CONTENT_BYTES = 65_535;
+
+    // Instant columns are stored as UTC, bind them the same way Hibernate does
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Durability durability;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long commitTimeoutMillis;
+    private final BlockingQueue<Pending> queue;
+
+    private final Object enqueueLock = new Object();
+
+    private volatile boolean running = true;
+    private Thread writer;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failedRows = new LongAdder();
+    private final LongAdder rowByRowFallbacks = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final AtomicLong maxBatch = new AtomicLong();
+
+    public ChatPersistencePipeline(
+            @Value("${edlink.chat.persistence.durability:commit}") String durability,
+            @Value("${edlink.chat.persistence.batch-size:200}") int batchSize,
+            @Value("${edlink.chat.persistence.flush-interval-ms:10}") long flushIntervalMillis,
+            @Value("${edlink.chat.persistence.queue-capacity:10000}") int queueCapacity,
+            @Value("${edlink.chat.persistence.commit-timeout-ms:5000}") long commitTimeoutMillis) {
+        this.durability = Durability.valueOf(durability.trim().toUpperCase());
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.commitTimeoutMillis = commitTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        writer = new Thread(this::runWriter, "chat-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        // Writer drains whatever is still queued before it exits
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Queue a message, assigning its id, and in commit mode wait for its batch to commit.
+     *
+     * @return completes once the row is committed (already done in commit mode); callbacks
+     *         chained on it run on the writer thread and must be quick
+     * @throws RuntimeException if the content is too long, the queue stays full or the write fails
+     */
+    public CompletableFuture<Void> persist(ChatMessage message) {
+        CompletableFuture<Void> committed = enqueue(message);
+        if (durability == Durability.COMMIT) {
+            awaitCommit(committed);
+        }
+        return committed;
+    }
+
+    /**
+     * Queue a message and always wait for the commit, whatever the durability mode.
+     * Used by the REST send, whose response promises the message is stored.
+     */
+    public void persistAndWait(ChatMessage message) {
+        awaitCommit(enqueue(message));
+    }
+
+    private CompletableFuture<Void> enqueue(ChatMessage message) {
+        // In enqueue mode the message is broadcast before the INSERT, so it must not fail there
+        if (message.getContent() != null
+                && message.getContent().getBytes(StandardCharsets.UTF_8).length > MAX_CONTENT_BYTES) {
+            throw new RuntimeException("Message is too long");
+        }
+
+        Pending pending = new Pending(message);
+        if (!offer(pending)) {
+            // Queue full: wait for room without holding the lock, then take a fresh id with the insert.
+            // A short wait absorbs bursts; a queue that stays full means MySQL is not keeping up
+            long deadline = System.nanoTime() + QUEUE_FULL_WAIT_NANOS;
+            do {
+                if (System.nanoTime() >= deadline) {
+                    rejected.increment();
+                    throw new RuntimeException("Chat is busy right now, please retry");
+                }
+                LockSupport.parkNanos(QUEUE_FULL_BACKOFF_NANOS);
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new RuntimeException("Interrupted while queueing chat message");
+                }
+            } while (!offer(pending));
+        }
+        enqueued.increment();
+        return pending.committed;
+    }
+
+    // Never blocks under the lock, so a full queue cannot stall the senders that would find room
+    private boolean offer(Pending pending) {
+        synchronized (enqueueLock) {
+            pending.message.setId(TimeOrderedIdGenerator.shared().nextId());
+            return queue.offer(pending);
+        }
+    }
+
+    private void awaitCommit(CompletableFuture<Void> committed) {
+        try {
+            committed.get(commitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Saving the message took too long, please retry");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while saving chat message", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to save chat message", e.getCause());
+        }
+    }
+
+    private void runWriter() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Collect until the window closes or the batch is full
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // stop() interrupts to wake us; keep draining until the queue is empty
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        long start = System.nanoTime();
+        RuntimeException lastError = null;
+
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                insert(batch);
+                lastError = null;
+                break;
+            } catch (RuntimeException e) {
+                lastError = e;
+                System.err.println("Chat batch insert failed (attempt " + attempt + ", "
+                        + batch.size() + " rows): " + e.getMessage());
+                if (isRowProblem(e)) {
+                    break;
+                }
+                sleepQuietly(100L * attempt);
+            }
+        }
+
+        if (lastError == null) {
+            rowsWritten.add(batch.size());
+            batch.forEach(pending -> pending.committed.complete(null));
+        } else if (isRowProblem(lastError) && batch.size() > 1) {
+            rowByRowFallbacks.increment();
+            insertRowByRow(batch);
+        } else {
+            failedRows.add(batch.size());
+            for (Pending pending : batch) {
+                pending.committed.completeExceptionally(lastError);
+            }
+        }
+
+        flushNanos.add(System.nanoTime() - start);
+        batches.increment();
+        maxBatch.accumulateAndGet(batch.size(), Math::max);
+    }
+
+    // Still in id order, so rows keep committing in order; once MySQL itself fails, stop trying
+    private void insertRowByRow(List<Pending> batch) {
+        RuntimeException fatal = null;
+        for (Pending pending : batch) {
+            if (fatal != null) {
+                failedRows.increment();
+                pending.committed.completeExceptionally(fatal);
+                continue;
+            }
+            try {
+                insert(List.of(pending));
+                rowsWritten.increment();
+                pending.committed.complete(null);
+            } catch (RuntimeException e) {
+                System.err.println("Dropping chat message " + pending.message.getId() + ": " + e.getMessage());
+                if (!isRowProblem(e)) {
+                    fatal = e;
+                }
+                failedRows.increment();
+                pending.committed.completeExceptionally(e);
+            }
+        }
+    }
+
+    // A bad row (constraint, value too long) fails the whole statement and every retry of it
+    private static boolean isRowProblem(RuntimeException e) {
+        return e instanceof DataIntegrityViolationException;
+    }
+
+    private void insert(List<Pending> batch) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + batch.size() * (ROW_PLACEHOLDER.length() + 2));
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDER);
+        }
+
+        jdbcTemplate.update(sql.toString(), ps -> {
+            Calendar utc = Calendar.getInstance(UTC);
+            int index = 1;
+            for (Pending pending : batch) {
+                ChatMessage message = pending.message;
+                ps.setLong(index++, message.getId());
+                ps.setLong(index++, message.getSubjectId());
+                ps.setLong(index++, message.getSenderId());
+                ps.setString(index++, message.getContent());
+                ps.setTimestamp(index++, Timestamp.from(message.getCreatedAt()), utc);
+            }
+        });
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long batchCount = batches.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("durability", durability.name().toLowerCase());
+        stats.put("queueDepth", queue.size());
+        stats.put("enqueued", enqueued.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("rowsWritten", rowsWritten.sum());
+        stats.put("failedRows", failedRows.sum());
+        stats.put("rowByRowFallbacks", rowByRowFallbacks.sum());
+        stats.put("batches", batchCount);
+        stats.put("avgBatchSize", batchCount == 0 ? 0.0 : (double) (rowsWritten.sum() + failedRows.sum()) / batchCount);
+        stats.put("maxBatchSize", maxBatch.get());
+        stats.put("avgFlushMillis", batchCount == 0 ? 0.0 : flushNanos.sum() / 1_000_000.0 / batchCount);
+        return stats;
+    }
+
+    private static final class Pending {
+        private final ChatMessage message;
+        private final CompletableFuture<Void> committed = new CompletableFuture<>();
+
+        private Pending(ChatMessage message) {
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.project.edlink.service;
+
+import com.project.edlink.config.StompCodecs;
+import com.project.edlink.dto.ChatMessageDto;
+import com.project.edlink.security.ChatSubscriptionInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gap-free resume for chat subscriptions.
+ *
+ * A client that reconnects sends "last-seen-id" on its SUBSCRIBE to /topic/chat.{id}. Once the
+ * broker has registered the subscription, the messages after that id are sent to that one
+ * subscription as array frames: from the recent-message ring when it covers the cursor,
+ * otherwise in keyset pages from MySQL, at most max-messages in total. A larger gap gets an
+ * empty frame with "resume-gap: true" and the client reloads the newest page instead.
+ *
+ * Replays run on a small "chat-resume" pool with a bounded queue, not on the inbound thread
+ * that handled the SUBSCRIBE: a page from MySQL would otherwise hold that thread, and every
+ * frame queued behind it, for the length of the query. When the queue is full (a reconnect
+ * storm) the client gets the gap frame at once, which costs no query here. Live messages can
+ * therefore arrive before, between or twice with the replayed ones; clients place messages by
+ * id and drop repeats.
+ */
+@Component
+public class ChatResumeReplay implements ExecutorChannelInterceptor {
+
+    public static final String LAST_SEEN_HEADER = "last-seen-id";
+    public static final String GAP_HEADER = "resume-gap";
+
+    private static final String CHAT_TOPIC = "/topic/chat.";
+    private static final int PAGE_SIZE = 200;
+
+    private final int maxMessages;
+
+    @Autowired
+    private ChatService chatService;
+
+    // Lazy: both come from the WebSocket message broker configuration, which registers this interceptor
+    @Lazy
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Lazy
+    @Autowired
+    @Qualifier("clientOutboundChannel")
+    private MessageChannel clientOutboundChannel;
+
+    private final LongAdder replays = new LongAdder();
+    private final LongAdder replayedMessages = new LongAdder();
+    private final LongAdder gapsTooLarge = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private final ThreadPoolExecutor executor;
+
+    public ChatResumeReplay(@Value("${edlink.chat.resume.max-messages:1000}") int maxMessages,
+                            @Value("${edlink.chat.resume.threads:4}") int threads,
+                            @Value("${edlink.chat.resume.queue-capacity:500}") int queueCapacity) {
+        this.maxMessages = maxMessages;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, "chat-resume-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    // Runs on the inbound thread after each handler; only the broker's pass means the subscription exists
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        if (ex != null || !(handler instanceof AbstractBrokerMessageHandler)) {
+            return;
+        }
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            return;
+        }
+        String destination = accessor.getDestination();
+        String lastSeen = accessor.getFirstNativeHeader(LAST_SEEN_HEADER);
+        if (destination == null || !destination.startsWith(CHAT_TOPIC) || lastSeen == null) {
+            return;
+        }
+
+        Long subjectId = ChatSubscriptionInterceptor.subjectIdOf(destination);
+        long afterId;
+        try {
+            afterId = Long.parseLong(lastSeen);
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if (subjectId == null) {
+            return;
+        }
+
+        String sessionId = accessor.getSessionId();
+        String subscriptionId = accessor.getSubscriptionId();
+        try {
+            executor.execute(() -> {
+                try {
+                    replay(sessionId, subscriptionId, destination, subjectId, afterId);
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    System.err.println("Chat resume failed for subject " + subjectId + ": " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Too many replays queued: the client reloads the newest page over REST instead
+            rejected.increment();
+            sendTo(sessionId, subscriptionId, destination, List.of(), true);
+        }
+    }
+
+    private void replay(String sessionId, String subscriptionId, String destination, Long subjectId, long afterId) {
+        replays.increment();
+        long cursor = afterId;
+        int sent = 0;
+        while (sent < maxMessages) {
+            int size = Math.min(PAGE_SIZE, maxMessages - sent);
+            List<ChatMessageDto> page = chatService.getMessagesAfter(subjectId, cursor, size);
+            if (page.isEmpty()) {
+                return;
+            }
+            sendTo(sessionId, subscriptionId, destination, page, false);
+            sent += page.size();
+            replayedMessages.add(page.size());
+            cursor = page.get(page.size() - 1).getId();
+            if (page.size() < size) {
+                return;
+            }
+        }
+
+        // Anything left is more than a replay should cost; the client reloads the newest page
+        if (!chatService.getMessagesAfter(subjectId, cursor, 1).isEmpty()) {
+            gapsTooLarge.increment();
+            sendTo(sessionId, subscriptionId, destination, List.of(), true);
+        }
+    }
+
+    private void sendTo(String sessionId, String subscriptionId, String destination,
+                        List<ChatMessageDto> messages, boolean gap) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(sessionId);
+        headers.setSubscriptionId(subscriptionId);
+        headers.setDestination(destination);
+        if (gap) {
+            headers.setNativeHeader(GAP_HEADER, "true");
+        }
+        headers.setLeaveMutable(true);
+
+        Message<?> frame;
+        if (destination.endsWith(StompCodecs.CBOR_SUFFIX)) {
+            headers.setContentType(StompCodecs.BINARY);
+            frame = MessageBuilder.createMessage(StompCodecs.toCbor(messages), headers.getMessageHeaders());
+        } else {
+            frame = messagingTemplate.getMessageConverter().toMessage(messages, headers.getMessageHeaders());
+        }
+        if (frame != null) {
+            clientOutboundChannel.send(frame);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("replays", replays.sum());
+        stats.put("replayedMessages", replayedMessages.sum());
+        stats.put("gapsTooLarge", gapsTooLarge.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("failed", failed.sum());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("active", executor.getActiveCount());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
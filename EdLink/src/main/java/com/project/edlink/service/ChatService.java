@@ -3,94 +3,150 @@ package com.project.edlink.service;
 import com.project.edlink.dto.ChatMessageDto;
 import com.project.edlink.dto.ChatParticipantDto;
 import com.project.edlink.dto.ChatParticipantsResponse;
-import com.project.edlink.dto.PresenceUpdateDto;
+import com.project.edlink.dto.UserProfile;
 import com.project.edlink.entities.ChatMessage;
-import com.project.edlink.entities.ChatPresence;
 import com.project.edlink.entities.Enrollment;
 import com.project.edlink.entities.Subject;
-import com.project.edlink.entities.User;
 import com.project.edlink.repository.ChatMessageRepository;
-import com.project.edlink.repository.ChatPresenceRepository;
 import com.project.edlink.repository.EnrollmentRepository;
 import com.project.edlink.repository.SubjectRepository;
-import com.project.edlink.repository.UserRepository;
+import com.project.edlink.security.AuthenticatedUser;
+import com.project.edlink.security.ChatAccessGuard;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Service
 public class ChatService {
 
-    private static final long ONLINE_THRESHOLD_SECONDS = 60;
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
 
     @Autowired
     private ChatMessageRepository chatMessageRepository;
 
     @Autowired
-    private ChatPresenceRepository chatPresenceRepository;
+    private PresenceRegistry presenceRegistry;
 
     @Autowired
     private SubjectRepository subjectRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private UserDirectory userDirectory;
 
     @Autowired
     private EnrollmentRepository enrollmentRepository;
 
-    private User getCurrentUser(String email) {
-        return userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-    }
+    @Autowired
+    private ChatAccessGuard chatAccessGuard;
+
+    @Autowired
+    private RecentMessageBuffer recentMessages;
+
+    @Autowired
+    private ChatVersions chatVersions;
+
+    @Autowired
+    private ChatFanout chatFanout;
+
+    @Autowired
+    private ChatSseHub chatSseHub;
+
+    @Autowired
+    private ChatPersistencePipeline chatPersistencePipeline;
 
     private Subject getSubjectOrThrow(Long subjectId) {
         return subjectRepository.findById(subjectId)
                 .orElseThrow(() -> new RuntimeException("Subject not found"));
     }
 
-    private boolean isTeacherOfSubject(User user, Subject subject) {
-        return "TEACHER".equalsIgnoreCase(user.getRole()) &&
-                subject.getTeacherId() != null &&
-                subject.getTeacherId().equals(user.getId());
+    /**
+     * ETag for the user's view of the subject's messages, or null if it is not known yet.
+     * Authorizes first (cached grant), so a 304 never needs a repository call.
+     */
+    public String getMessagesTag(AuthenticatedUser currentUser, Long subjectId) {
+        chatAccessGuard.authorize(currentUser, subjectId, null);
+        return chatVersions.messagesTag(subjectId, currentUser.getId());
+    }
+
+    public String getParticipantsTag(AuthenticatedUser currentUser, Long subjectId) {
+        chatAccessGuard.authorize(currentUser, subjectId, null);
+        return chatVersions.participantsTag(subjectId);
     }
 
-    private boolean isStudentEnrolledInSubject(User user, Long subjectId) {
-        if (!"STUDENT".equalsIgnoreCase(user.getRole())) {
-            return false;
+    /**
+     * One keyset page of a subject's chat, always returned oldest -> newest.
+     *
+     * No cursor: the newest {@code limit} messages.
+     * before: the {@code limit} messages just older than that id (scrolling back).
+     * after: the {@code limit} messages just newer than that id (catching up).
+     * A page shorter than the limit means there is nothing further in that direction.
+     *
+     * Catch-up polls and the newest page are served from the recent-message ring when it
+     * covers the cursor; the access check uses cached grants, so such calls skip MySQL.
+     */
+    public List<ChatMessageDto> getMessagesForSubject(AuthenticatedUser currentUser, Long subjectId,
+                                                      Long before, Long after, Integer limit) {
+        if (before != null && after != null) {
+            throw new RuntimeException("Use either before or after, not both");
         }
-        return enrollmentRepository.existsByStudentIdAndSubjectId(user.getId(), subjectId);
+
+        chatAccessGuard.authorize(currentUser, subjectId, null);
+
+        return forViewer(loadMessages(subjectId, before, after, pageSize(limit)), currentUser);
     }
 
-    private void assertUserCanAccessSubjectChat(User user, Subject subject) {
-        boolean teacher = isTeacherOfSubject(user, subject);
-        boolean student = isStudentEnrolledInSubject(user, subject.getId());
+    /**
+     * Shared (own=false) messages after a cursor, ascending, for callers that have already
+     * authorized the subject (the STOMP resume replay).
+     */
+    public List<ChatMessageDto> getMessagesAfter(Long subjectId, long afterId, int limit) {
+        return loadMessages(subjectId, null, afterId, Math.min(limit, MAX_PAGE_SIZE));
+    }
 
-        if (!teacher && !student) {
-            throw new RuntimeException("You do not have access to this subject chat");
+    private List<ChatMessageDto> loadMessages(Long subjectId, Long before, Long after, int size) {
+        if (before == null) {
+            List<ChatMessageDto> recent = after != null
+                    ? recentMessages.after(subjectId, after, size)
+                    : recentMessages.newest(subjectId, size);
+            if (recent != null) {
+                return recent;
+            }
         }
-    }
 
-    public List<ChatMessageDto> getMessagesForSubject(String email, Long subjectId, Long afterId) {
-        User currentUser = getCurrentUser(email);
-        Subject subject = getSubjectOrThrow(subjectId);
-        assertUserCanAccessSubjectChat(currentUser, subject);
+        PageRequest page = PageRequest.of(0, size);
 
         List<ChatMessage> messages;
-        if (afterId != null) {
-            messages = chatMessageRepository.findBySubjectIdAndIdGreaterThanOrderByIdAsc(subjectId, afterId);
+        if (after != null) {
+            messages = chatMessageRepository.findBySubjectIdAndIdGreaterThanOrderByIdAsc(subjectId, after, page);
         } else {
-            messages = chatMessageRepository.findBySubjectIdOrderByIdAsc(subjectId);
+            if (before != null) {
+                messages = chatMessageRepository.findBySubjectIdAndIdLessThanOrderByIdDesc(subjectId, before, page);
+            } else {
+                messages = chatMessageRepository.findBySubjectIdOrderByIdDesc(subjectId, page);
+            }
+            // Fetched newest-first so the LIMIT picks the right rows; show them in reading order
+            messages = new ArrayList<>(messages);
+            Collections.reverse(messages);
         }
 
         if (messages.isEmpty()) {
+            if (before == null && after == null) {
+                recentMessages.seed(subjectId, List.of(), true);
+                chatVersions.messageAdded(subjectId, 0);
+            }
             return new ArrayList<>();
         }
 
@@ -100,18 +156,16 @@ public class ChatService {
                 .distinct()
                 .toList();
 
-        Map<Long, User> userMap = userRepository.findAllById(senderIds)
-                .stream()
-                .collect(Collectors.toMap(User::getId, u -> u));
+        Map<Long, UserProfile> userMap = userDirectory.getAll(senderIds);
 
         DateTimeFormatter formatter = DateTimeFormatter.ISO_INSTANT.withZone(ZoneOffset.UTC);
 
-        return messages.stream()
+        // Viewer-independent DTOs (own=false), shareable with the recent-message ring
+        List<ChatMessageDto> dtos = messages.stream()
                 .map(msg -> {
-                    User sender = userMap.get(msg.getSenderId());
+                    UserProfile sender = userMap.get(msg.getSenderId());
                     String senderName = sender != null ? sender.getName() : "Unknown";
                     String senderRole = sender != null ? sender.getRole() : "";
-                    boolean own = sender != null && sender.getId().equals(currentUser.getId());
                     String createdAt = msg.getCreatedAt() != null ? formatter.format(msg.getCreatedAt()) : null;
 
                     return new ChatMessageDto(
@@ -122,64 +176,102 @@ public class ChatService {
                             senderRole,
                             msg.getContent(),
                             createdAt,
-                            own
+                            false
                     );
                 })
                 .collect(Collectors.toList());
+
+        if (before == null && after == null) {
+            recentMessages.seed(subjectId, dtos, dtos.size() < size);
+            chatVersions.messageAdded(subjectId, dtos.get(dtos.size() - 1).getId());
+        }
+        return dtos;
     }
 
-    public ChatMessageDto sendMessage(String email, Long subjectId, String content) {
+    // Copies shared DTOs with the 'own' flag set for this viewer
+    private static List<ChatMessageDto> forViewer(List<ChatMessageDto> messages, AuthenticatedUser viewer) {
+        List<ChatMessageDto> result = new ArrayList<>(messages.size());
+        for (ChatMessageDto msg : messages) {
+            boolean own = msg.getSenderId() != null && msg.getSenderId().equals(viewer.getId());
+            result.add(new ChatMessageDto(
+                    msg.getId(),
+                    msg.getSubjectId(),
+                    msg.getSenderId(),
+                    msg.getSenderName(),
+                    msg.getSenderRole(),
+                    msg.getContent(),
+                    msg.getCreatedAt(),
+                    own
+            ));
+        }
+        return result;
+    }
+
+    private static int pageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    public ChatMessageDto sendMessage(AuthenticatedUser currentUser, Long subjectId, String content) {
         if (content == null || content.trim().isEmpty()) {
             throw new RuntimeException("Message content cannot be empty");
         }
 
-        User currentUser = getCurrentUser(email);
-        Subject subject = getSubjectOrThrow(subjectId);
-        assertUserCanAccessSubjectChat(currentUser, subject);
+        chatAccessGuard.authorize(currentUser, subjectId, null);
 
-        ChatMessage message = new ChatMessage();
-        message.setSubjectId(subjectId);
-        message.setSenderId(currentUser.getId());
-        message.setContent(content.trim());
-        message.setCreatedAt(Instant.now());
+        // Fanned out to STOMP and SSE subscribers like a WebSocket send.
+        // REST callers re-fetch right after sending, so always wait for the row to be committed
+        ChatMessage saved = newMessage(currentUser, subjectId, content);
+        chatPersistencePipeline.persistAndWait(saved);
 
-        ChatMessage saved = chatMessageRepository.save(message);
+        ChatMessageDto shared = toSharedDto(saved, currentUser);
+        recentMessages.append(shared);
+        chatVersions.messageAdded(subjectId, saved.getId());
+        chatFanout.publish(shared);
+        return forViewer(List.of(shared), currentUser).get(0);
+    }
 
-        DateTimeFormatter formatter = DateTimeFormatter.ISO_INSTANT.withZone(ZoneOffset.UTC);
-        String createdAt = saved.getCreatedAt() != null ? formatter.format(saved.getCreatedAt()) : null;
+    /**
+     * Open a Server-Sent Events stream of new messages. With lastEventId (sent by EventSource
+     * on reconnect) the messages missed since then are replayed first, ring or DB.
+     */
+    public SseEmitter streamMessages(AuthenticatedUser currentUser, Long subjectId, Long lastEventId) {
+        chatAccessGuard.authorize(currentUser, subjectId, null);
 
-        return new ChatMessageDto(
-                saved.getId(),
-                saved.getSubjectId(),
-                saved.getSenderId(),
-                currentUser.getName(),
-                currentUser.getRole(),
-                saved.getContent(),
-                createdAt,
-                true
-        );
+        // Loaded by the hub after the stream is registered, so nothing falls in between
+        return chatSseHub.subscribe(subjectId, () -> lastEventId != null
+                ? getMessagesForSubject(currentUser, subjectId, null, lastEventId, MAX_PAGE_SIZE)
+                : List.of());
     }
 
-    public void updatePresence(String email, Long subjectId) {
-        User currentUser = getCurrentUser(email);
-        Subject subject = getSubjectOrThrow(subjectId);
-        assertUserCanAccessSubjectChat(currentUser, subject);
+    private ChatMessage newMessage(AuthenticatedUser sender, Long subjectId, String content) {
+        ChatMessage message = new ChatMessage();
+        message.setSubjectId(subjectId);
+        message.setSenderId(sender.getId());
+        message.setContent(content.trim());
+        message.setCreatedAt(Instant.now());
+        return message;
+    }
 
-        Instant now = Instant.now();
-        Optional<ChatPresence> existing = chatPresenceRepository.findBySubjectIdAndUserId(subjectId, currentUser.getId());
+    public void updatePresence(AuthenticatedUser currentUser, Long subjectId) {
+        chatAccessGuard.authorize(currentUser, subjectId, null);
 
-        ChatPresence presence = existing.orElseGet(ChatPresence::new);
-        presence.setSubjectId(subjectId);
-        presence.setUserId(currentUser.getId());
-        presence.setLastSeen(now);
+        recordPresence(currentUser, subjectId);
+    }
 
-        chatPresenceRepository.save(presence);
+    /**
+     * Heartbeat without an access check; the caller has already authorized the subject.
+     * In-memory only, chat_presence is written by the optional snapshot.
+     */
+    public void recordPresence(AuthenticatedUser currentUser, Long subjectId) {
+        presenceRegistry.heartbeat(currentUser, subjectId);
     }
 
-    public ChatParticipantsResponse getParticipants(String email, Long subjectId) {
-        User currentUser = getCurrentUser(email);
+    public ChatParticipantsResponse getParticipants(AuthenticatedUser currentUser, Long subjectId) {
         Subject subject = getSubjectOrThrow(subjectId);
-        assertUserCanAccessSubjectChat(currentUser, subject);
+        chatAccessGuard.check(currentUser, subject);
 
         // All enrolled students
         List<Enrollment> enrollments = enrollmentRepository.findBySubjectId(subjectId);
@@ -195,25 +287,20 @@ public class ChatService {
             allUserIds.add(subject.getTeacherId());
         }
 
-        Map<Long, User> userMap = userRepository.findAllById(allUserIds)
-                .stream()
-                .collect(Collectors.toMap(User::getId, u -> u));
+        Map<Long, UserProfile> userMap = userDirectory.getAll(allUserIds);
 
-        // Online presence
-        Instant activeAfter = Instant.now().minusSeconds(ONLINE_THRESHOLD_SECONDS);
-        List<ChatPresence> activePresence = chatPresenceRepository.findBySubjectIdAndLastSeenAfter(subjectId, activeAfter);
-        Map<Long, ChatPresence> presenceMap = activePresence.stream()
-                .collect(Collectors.toMap(ChatPresence::getUserId, p -> p));
+        // Online presence, straight from the in-memory registry
+        Set<Long> onlineUserIds = presenceRegistry.onlineUserIds(subjectId);
 
         List<ChatParticipantDto> participants = new ArrayList<>();
         int onlineStudents = 0;
 
         for (Long userId : allUserIds) {
-            User user = userMap.get(userId);
+            UserProfile user = userMap.get(userId);
             if (user == null) {
                 continue;
             }
-            boolean online = presenceMap.containsKey(userId);
+            boolean online = onlineUserIds.contains(userId);
 
             if ("STUDENT".equalsIgnoreCase(user.getRole()) && online) {
                 onlineStudents++;
@@ -234,63 +321,40 @@ public class ChatService {
      * Send message via WebSocket (real-time)
      * Similar to sendMessage but optimized for WebSocket broadcasting
      * The 'own' field will be determined by each client
+     * Access is not re-checked here: the STOMP session already holds a grant for this subject
      */
-    public ChatMessageDto sendMessageViaWebSocket(String email, Long subjectId, String content) {
+    public ChatMessageDto sendMessageViaWebSocket(AuthenticatedUser currentUser, Long subjectId, String content) {
         if (content == null || content.trim().isEmpty()) {
             throw new RuntimeException("Message content cannot be empty");
         }
 
-        User currentUser = getCurrentUser(email);
-        Subject subject = getSubjectOrThrow(subjectId);
-        assertUserCanAccessSubjectChat(currentUser, subject);
-
-        ChatMessage message = new ChatMessage();
-        message.setSubjectId(subjectId);
-        message.setSenderId(currentUser.getId());
-        message.setContent(content.trim());
-        message.setCreatedAt(Instant.now());
+        // The pipeline assigns the id as it queues; the INSERT is group-committed behind it
+        ChatMessage saved = newMessage(currentUser, subjectId, content);
+        CompletableFuture<Void> committed = chatPersistencePipeline.persist(saved);
+        Long messageId = saved.getId();
+        // The ETag may only move once MySQL has the row (enqueue mode commits after the broadcast)
+        committed.thenRun(() -> chatVersions.messageAdded(subjectId, messageId));
 
-        ChatMessage saved = chatMessageRepository.save(message);
+        // Return DTO without 'own' flag - each client will determine this
+        ChatMessageDto shared = toSharedDto(saved, currentUser);
+        recentMessages.append(shared);
+        chatFanout.publish(shared);
+        return shared;
+    }
 
+    private static ChatMessageDto toSharedDto(ChatMessage saved, AuthenticatedUser sender) {
         DateTimeFormatter formatter = DateTimeFormatter.ISO_INSTANT.withZone(ZoneOffset.UTC);
         String createdAt = saved.getCreatedAt() != null ? formatter.format(saved.getCreatedAt()) : null;
 
-        // Return DTO without 'own' flag - each client will determine this
         return new ChatMessageDto(
                 saved.getId(),
                 saved.getSubjectId(),
                 saved.getSenderId(),
-                currentUser.getName(),
-                currentUser.getRole(),
+                sender.getDisplayName(),
+                sender.getRole(),
                 saved.getContent(),
                 createdAt,
-                false // Will be set by client based on their userId
-        );
-    }
-
-    /**
-     * Get presence update DTO for broadcasting via WebSocket
-     * Used when user's online/offline status changes
-     */
-    public PresenceUpdateDto getPresenceUpdate(String email, Long subjectId) {
-        User currentUser = getCurrentUser(email);
-        Subject subject = getSubjectOrThrow(subjectId);
-        assertUserCanAccessSubjectChat(currentUser, subject);
-
-        // Check if user is currently online (within threshold)
-        Instant activeAfter = Instant.now().minusSeconds(ONLINE_THRESHOLD_SECONDS);
-        Optional<ChatPresence> presence = chatPresenceRepository.findBySubjectIdAndUserId(subjectId, currentUser.getId());
-        
-        boolean isOnline = presence.isPresent() && 
-                          presence.get().getLastSeen() != null && 
-                          presence.get().getLastSeen().isAfter(activeAfter);
-
-        return new PresenceUpdateDto(
-                currentUser.getId(),
-                subjectId,
-                currentUser.getName(),
-                currentUser.getRole(),
-                isOnline
+                false // Will be set per viewer (REST) or by the client (WebSocket)
         );
     }
 }
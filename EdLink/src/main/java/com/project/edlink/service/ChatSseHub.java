@@ -0,0 +1,335 @@
+package com.project.edlink.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.edlink.dto.ChatMessageDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Server-Sent Events subscribers per subject, for clients whose proxies break SockJS.
+ *
+ * Emitters run on servlet async, so an idle subscriber holds a socket but no Tomcat thread.
+ * Each message is serialized once and queued per subscriber; a bounded "chat-sse" pool drains
+ * the queues, one task per subscriber at a time, so a subscriber's events stay in order and a
+ * stalled client ties up at most one pool thread. A subscriber whose current write exceeds
+ * send-timeout-ms, or whose queue exceeds max-pending, is dropped; its EventSource reconnects
+ * and resumes from its last event id. The dropped write itself only returns when Tomcat's
+ * write timeout fires, which is why the pool has more than one thread.
+ *
+ * A comment line every heartbeat interval keeps proxies from closing idle streams and flushes
+ * out dead connections; the heartbeat and the stall watchdog run on their own timer thread.
+ */
+@Component
+public class ChatSseHub {
+
+    // Events per task before a subscriber yields its pool thread to the others
+    private static final int DRAIN_BATCH = 64;
+
+    private final long timeoutMillis;
+    private final long sendTimeoutNanos;
+    private final int maxPending;
+    private final long heartbeatMillis;
+    private final int senderThreads;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private final ExecutorService sender;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "chat-sse-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder droppedSlow = new LongAdder();
+    private final LongAdder duplicatesSkipped = new LongAdder();
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public ChatSseHub(@Value("${edlink.chat.sse.timeout-ms:300000}") long timeoutMillis,
+                      @Value("${edlink.chat.sse.sender-threads:0}") int senderThreads,
+                      @Value("${edlink.chat.sse.send-timeout-ms:5000}") long sendTimeoutMillis,
+                      @Value("${edlink.chat.sse.max-pending:256}") int maxPending,
+                      @Value("${edlink.chat.sse.heartbeat-ms:25000}") long heartbeatMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        this.maxPending = maxPending;
+        this.heartbeatMillis = heartbeatMillis;
+        this.senderThreads = senderThreads > 0 ? senderThreads : Runtime.getRuntime().availableProcessors() * 2;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.sender = Executors.newFixedThreadPool(this.senderThreads, r -> {
+            Thread thread = new Thread(r, "chat-sse-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        timer.scheduleAtFixedRate(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        long checkMillis = Math.max(100, TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos) / 5);
+        timer.scheduleWithFixedDelay(this::dropStalled, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Register a stream for the subject, then send the backlog (e.g. missed since Last-Event-ID).
+     *
+     * The stream is registered before the backlog is loaded, so a message broadcast while the
+     * backlog query runs is queued rather than lost; live events are held until the backlog has
+     * gone out, and any that the backlog already contained are skipped by id.
+     */
+    public SseEmitter subscribe(Long subjectId, Supplier<List<ChatMessageDto>> backlog) {
+        SseEmitter emitter = newEmitter(timeoutMillis);
+        Set<Subscriber> set = subscribers.computeIfAbsent(subjectId, id -> ConcurrentHashMap.newKeySet());
+        Subscriber subscriber = new Subscriber(emitter, set);
+        set.add(subscriber);
+        subscriberCount.incrementAndGet();
+
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+
+        List<ChatMessageDto> missed;
+        try {
+            missed = backlog.get();
+        } catch (RuntimeException e) {
+            drop(subscriber);
+            throw e;
+        }
+        subscriber.start(missed.stream().map(m -> new Event(m.getId(), toJson(m))).toList());
+        return emitter;
+    }
+
+    // Tests substitute an emitter that records or stalls its writes
+    SseEmitter newEmitter(long timeout) {
+        return new SseEmitter(timeout);
+    }
+
+    public void broadcast(ChatMessageDto message) {
+        Set<Subscriber> set = subscribers.get(message.getSubjectId());
+        if (set == null || set.isEmpty()) {
+            return;
+        }
+        Event event = new Event(message.getId(), toJson(message));
+        for (Subscriber subscriber : set) {
+            subscriber.offer(event);
+        }
+    }
+
+    void heartbeat() {
+        if (subscriberCount.get() == 0) {
+            return;
+        }
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.offer(Event.PING)));
+    }
+
+    void dropStalled() {
+        long now = System.nanoTime();
+        subscribers.values().forEach(set -> set.forEach(subscriber -> {
+            if (subscriber.isStalled(now)) {
+                droppedSlow.increment();
+                drop(subscriber);
+            }
+        }));
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (subscriber.set.remove(subscriber)) {
+            subscriberCount.decrementAndGet();
+        }
+        subscriber.close();
+    }
+
+    private void drop(Subscriber subscriber) {
+        remove(subscriber);
+        try {
+            subscriber.emitter.completeWithError(new IOException("SSE client gone or too slow"));
+        } catch (RuntimeException e) {
+            // Already completed, or the container is tearing the request down
+        }
+    }
+
+    private String toJson(ChatMessageDto message) {
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize chat message " + message.getId(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        sender.shutdownNow();
+        subscribers.values().forEach(set -> set.forEach(subscriber -> {
+            try {
+                subscriber.emitter.complete();
+            } catch (RuntimeException e) {
+                // shutting down anyway
+            }
+        }));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("subscribers", subscriberCount.get());
+        stats.put("subjects", subscribers.size());
+        stats.put("senderThreads", senderThreads);
+        stats.put("delivered", delivered.sum());
+        stats.put("failedSends", failed.sum());
+        stats.put("droppedSlow", droppedSlow.sum());
+        stats.put("duplicatesSkipped", duplicatesSkipped.sum());
+        return stats;
+    }
+
+    private record Event(Long id, String json) {
+        static final Event PING = new Event(null, null);
+    }
+
+    /**
+     * One stream's outbound queue. Guarded by its own monitor; the write itself happens outside it.
+     */
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Set<Subscriber> set;
+        private final ArrayDeque<Event> queue = new ArrayDeque<>();
+
+        // Backlog ids, to skip live copies of messages the backlog already delivered
+        private Set<Long> replayedIds = Set.of();
+        private boolean started;
+        private boolean draining;
+        private boolean closed;
+        private volatile long sendStartedAt;
+
+        Subscriber(SseEmitter emitter, Set<Subscriber> set) {
+            this.emitter = emitter;
+            this.set = set;
+        }
+
+        void start(List<Event> backlog) {
+            synchronized (this) {
+                Set<Long> ids = new HashSet<>();
+                backlog.forEach(event -> ids.add(event.id()));
+                replayedIds = ids;
+                queue.removeIf(event -> event.id() != null && ids.contains(event.id()));
+                for (int i = backlog.size() - 1; i >= 0; i--) {
+                    queue.addFirst(backlog.get(i));
+                }
+                started = true;
+            }
+            scheduleDrain();
+        }
+
+        void offer(Event event) {
+            boolean overflow;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (event.id() != null && replayedIds.contains(event.id())) {
+                    duplicatesSkipped.increment();
+                    return;
+                }
+                overflow = queue.size() >= maxPending;
+                if (!overflow) {
+                    queue.addLast(event);
+                }
+            }
+            if (overflow) {
+                droppedSlow.increment();
+                drop(this);
+                return;
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            synchronized (this) {
+                if (!started || draining || closed || queue.isEmpty()) {
+                    return;
+                }
+                draining = true;
+            }
+            sender.execute(this::drain);
+        }
+
+        private void drain() {
+            for (int sent = 0; sent < DRAIN_BATCH; sent++) {
+                Event event;
+                synchronized (this) {
+                    event = closed ? null : queue.pollFirst();
+                    if (event == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                if (!write(event)) {
+                    return;
+                }
+            }
+            synchronized (this) {
+                draining = false;
+            }
+            scheduleDrain();
+        }
+
+        private boolean write(Event event) {
+            sendStartedAt = System.nanoTime();
+            try {
+                if (event == Event.PING) {
+                    emitter.send(SseEmitter.event().comment("ping"));
+                } else {
+                    emitter.send(SseEmitter.event()
+                            .id(String.valueOf(event.id()))
+                            .name("message")
+                            .data(event.json(), MediaType.APPLICATION_JSON));
+                    delivered.increment();
+                }
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                failed.increment();
+                drop(this);
+                return false;
+            } finally {
+                sendStartedAt = 0;
+            }
+        }
+
+        boolean isStalled(long now) {
+            long started = sendStartedAt;
+            return started != 0 && now - started > sendTimeoutNanos;
+        }
+
+        synchronized void close() {
+            closed = true;
+            queue.clear();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.project.edlink.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cheap per-subject version stamps used as ETags for chat polling.
+ *
+ * messages: the highest message id seen in the subject (sends on this replica, or the newest
+ *           page read from MySQL); unknown until one of those happens.
+ * roster:   bumped on enrollment and on every presence transition in the subject, plus a
+ *           global epoch bumped whenever a cached user profile changes.
+ *
+ * Stamps include a per-boot id, so a restart never matches an old ETag. They only see this
+ * replica's writes, so they are switched off in broker relay mode (several replicas).
+ */
+@Component
+public class ChatVersions {
+
+    private final boolean enabled;
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Map<Long, AtomicLong> lastMessageIds = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicLong> rosterEpochs = new ConcurrentHashMap<>();
+    private final AtomicLong profileEpoch = new AtomicLong();
+
+    private final LongAdder notModified = new LongAdder();
+
+    public ChatVersions(@Value("${edlink.chat.etag.enabled:true}") boolean enabled,
+                        @Value("${edlink.ws.broker:simple}") String brokerMode) {
+        // With the broker relay other replicas write to the same subjects; local stamps would lie
+        this.enabled = enabled && !"relay".equalsIgnoreCase(brokerMode);
+        if (enabled && !this.enabled) {
+            System.out.println("Chat ETags disabled: broker relay mode implies multiple replicas");
+        }
+    }
+
+    public void messageAdded(Long subjectId, long messageId) {
+        lastMessageIds.computeIfAbsent(subjectId, id -> new AtomicLong()).accumulateAndGet(messageId, Math::max);
+    }
+
+    public void rosterChanged(Long subjectId) {
+        rosterEpochs.computeIfAbsent(subjectId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    public void profilesChanged() {
+        profileEpoch.incrementAndGet();
+    }
+
+    /**
+     * ETag for one user's view of a subject's messages ('own' flags differ per user),
+     * or null while the latest message id is not known.
+     */
+    public String messagesTag(Long subjectId, Long userId) {
+        AtomicLong lastId = enabled ? lastMessageIds.get(subjectId) : null;
+        if (lastId == null) {
+            return null;
+        }
+        return "\"m" + bootId + "." + subjectId + "." + lastId.get() + "." + userId + "\"";
+    }
+
+    public String participantsTag(Long subjectId) {
+        if (!enabled) {
+            return null;
+        }
+        AtomicLong roster = rosterEpochs.computeIfAbsent(subjectId, id -> new AtomicLong());
+        return "\"p" + bootId + "." + subjectId + "." + roster.get() + "." + profileEpoch.get() + "\"";
+    }
+
+    public void recordNotModified() {
+        notModified.increment();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("subjectsWithMessageStamp", lastMessageIds.size());
+        stats.put("notModifiedResponses", notModified.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,167 @@
+package com.project.edlink.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.project.edlink.entities.TimeOrderedIdGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Replica-to-replica events over the STOMP broker relay.
+ *
+ * Browser-facing topics already reach every replica's subscribers through the broker, but some
+ * state lives in each replica's memory: SSE streams, presence, token versions, pinned chat
+ * grants. Components that own such state publish a typed event here, and every other replica
+ * applies it through the listener registered for that type.
+ *
+ * Events are JSON envelopes {origin, type, body} on {@link #DESTINATION}. They go out through
+ * the broker channel like any broadcast and come back in on the relay's system connection
+ * (WebSocketConfig subscribes it); a replica skips the events it sent itself. Clients can
+ * neither subscribe nor send to it, see ChatSubscriptionInterceptor.
+ *
+ * Delivery is at most once, with no ordering between replicas: every listener must tolerate a
+ * lost or repeated event. Token versions and presence also have a periodic sync that repairs a
+ * lost one; a lost chat event is a message that an SSE stream on another replica only sees
+ * after its next reconnect. Listeners run on the relay's I/O thread and must not block.
+ *
+ * With the simple broker there is only one replica and publish() does nothing.
+ */
+@Component
+public class ClusterBus {
+
+    public static final String DESTINATION = "/topic/edlink.cluster";
+
+    private final boolean enabled;
+
+    // Node id plus boot time: a restarted replica is a new origin
+    private final String origin = TimeOrderedIdGenerator.shared().getNodeId() + "-"
+            + Long.toString(System.currentTimeMillis(), 36);
+
+    // Lazy: the broker template is built from WebSocketConfig, whose interceptors lead back here
+    @Lazy
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, Listener<?>> listeners = new ConcurrentHashMap<>();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public ClusterBus(@Value("${edlink.ws.broker:simple}") String brokerMode) {
+        this.enabled = "relay".equalsIgnoreCase(brokerMode);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * This replica's id on the bus; also sent to browsers where they merge per-replica state.
+     */
+    public String getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Apply events of this type sent by other replicas. One listener per type.
+     */
+    public <T> void on(String type, Class<T> bodyType, Consumer<T> handler) {
+        onPerOrigin(type, bodyType, (sender, body) -> handler.accept(body));
+    }
+
+    /**
+     * Same, for listeners that keep state per sending replica; they get its origin too.
+     */
+    public <T> void onPerOrigin(String type, Class<T> bodyType, BiConsumer<String, T> handler) {
+        if (listeners.putIfAbsent(type, new Listener<>(bodyType, handler)) != null) {
+            throw new IllegalStateException("Cluster event type already has a listener: " + type);
+        }
+    }
+
+    /**
+     * Send an event to the other replicas. Never throws: a failed publish is only counted, the
+     * same as an event the broker lost.
+     */
+    public void publish(String type, Object body) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            ObjectNode envelope = objectMapper.createObjectNode();
+            envelope.put("origin", origin);
+            envelope.put("type", type);
+            envelope.set("body", objectMapper.valueToTree(body));
+
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            accessor.setLeaveMutable(true);
+            messagingTemplate.send(DESTINATION, MessageBuilder.createMessage(
+                    objectMapper.writeValueAsBytes(envelope), accessor.getMessageHeaders()));
+            published.increment();
+        } catch (Exception e) {
+            failed.increment();
+            System.err.println("Cluster event " + type + " not published: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handler for the relay's system subscription to {@link #DESTINATION}.
+     */
+    public void receive(Message<?> message) {
+        if (!(message.getPayload() instanceof byte[] payload)) {
+            return;
+        }
+        try {
+            JsonNode envelope = objectMapper.readTree(payload);
+            String sender = envelope.path("origin").asText();
+            if (origin.equals(sender)) {
+                return;
+            }
+            Listener<?> listener = listeners.get(envelope.path("type").asText());
+            if (listener == null) {
+                return;
+            }
+            received.increment();
+            listener.accept(objectMapper, sender, envelope.path("body"));
+        } catch (Exception e) {
+            failed.increment();
+            System.err.println("Cluster event dropped: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("origin", origin);
+        stats.put("published", published.sum());
+        stats.put("received", received.sum());
+        stats.put("failed", failed.sum());
+        return stats;
+    }
+
+    private record Listener<T>(Class<T> bodyType, BiConsumer<String, T> handler) {
+        void accept(ObjectMapper objectMapper, String sender, JsonNode body) throws Exception {
+            handler.accept(sender, objectMapper.treeToValue(body, bodyType));
+        }
+    }
+}
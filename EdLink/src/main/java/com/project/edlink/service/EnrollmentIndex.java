@@ -0,0 +1,173 @@
+package com.project.edlink.service;
+
+import com.project.edlink.repository.EnrollmentRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process enrollment index, subject -> students and student -> subjects, each side a
+ * sorted long[] so a membership check is one hash lookup plus a binary search.
+ *
+ * Arrays are copy-on-write: an enrollment replaces the array for its key inside
+ * ConcurrentHashMap.compute, and readers only ever see fully built arrays, so lookups take
+ * no lock. The table is loaded once at startup and kept current by SubjectService.enrollStudent.
+ *
+ * Enrollments are never deleted, so a positive answer is always valid. A negative answer is
+ * confirmed against the repository (and cached on success) to pick up enrollments made
+ * through another replica; that path is only hit by users who are actually being refused.
+ */
+@Component
+public class EnrollmentIndex {
+
+    private static final long[] EMPTY = new long[0];
+
+    // Rough HotSpot sizes with compressed oops: array header, boxed Long key, map node + table slot
+    private static final long ARRAY_HEADER_BYTES = 16;
+    private static final long MAP_ENTRY_BYTES = 16 + 32 + 8;
+
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+
+    private final Map<Long, long[]> studentsBySubject = new ConcurrentHashMap<>();
+    private final Map<Long, long[]> subjectsByStudent = new ConcurrentHashMap<>();
+
+    private final LongAdder indexHits = new LongAdder();
+    private final LongAdder repositoryFallbacks = new LongAdder();
+
+    @PostConstruct
+    public void load() {
+        long start = System.nanoTime();
+        List<Object[]> rows = enrollmentRepository.findAllStudentSubjectPairs();
+
+        Map<Long, LongList> bySubject = new HashMap<>();
+        Map<Long, LongList> byStudent = new HashMap<>();
+        for (Object[] row : rows) {
+            long studentId = (Long) row[0];
+            long subjectId = (Long) row[1];
+            bySubject.computeIfAbsent(subjectId, id -> new LongList()).add(studentId);
+            byStudent.computeIfAbsent(studentId, id -> new LongList()).add(subjectId);
+        }
+
+        studentsBySubject.clear();
+        subjectsByStudent.clear();
+        bySubject.forEach((subjectId, students) -> studentsBySubject.put(subjectId, students.toSortedArray()));
+        byStudent.forEach((studentId, subjects) -> subjectsByStudent.put(studentId, subjects.toSortedArray()));
+
+        System.out.println("Enrollment index loaded: " + rows.size() + " enrollments in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * @return true if the student is enrolled in the subject
+     */
+    public boolean isEnrolled(Long studentId, Long subjectId) {
+        if (studentId == null || subjectId == null) {
+            return false;
+        }
+        if (contains(studentsBySubject.get(subjectId), studentId)) {
+            indexHits.increment();
+            return true;
+        }
+
+        repositoryFallbacks.increment();
+        if (enrollmentRepository.existsByStudentIdAndSubjectId(studentId, subjectId)) {
+            add(studentId, subjectId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Record a new enrollment. Idempotent.
+     */
+    public void add(Long studentId, Long subjectId) {
+        studentsBySubject.compute(subjectId, (id, students) -> insertSorted(students, studentId));
+        subjectsByStudent.compute(studentId, (id, subjects) -> insertSorted(subjects, subjectId));
+    }
+
+    public long[] studentsOf(Long subjectId) {
+        return studentsBySubject.getOrDefault(subjectId, EMPTY).clone();
+    }
+
+    public long[] subjectsOf(Long studentId) {
+        return subjectsByStudent.getOrDefault(studentId, EMPTY).clone();
+    }
+
+    public Map<String, Object> getStats() {
+        long enrollments = 0;
+        long bytes = 0;
+        for (long[] students : studentsBySubject.values()) {
+            enrollments += students.length;
+            bytes += MAP_ENTRY_BYTES + ARRAY_HEADER_BYTES + 8L * students.length;
+        }
+        for (long[] subjects : subjectsByStudent.values()) {
+            bytes += MAP_ENTRY_BYTES + ARRAY_HEADER_BYTES + 8L * subjects.length;
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("subjects", studentsBySubject.size());
+        stats.put("students", subjectsByStudent.size());
+        stats.put("enrollments", enrollments);
+        stats.put("estimatedBytes", bytes);
+        stats.put("bytesPer100kEnrollments", enrollments == 0 ? 0 : bytes * 100_000 / enrollments);
+        stats.put("indexHits", indexHits.sum());
+        stats.put("repositoryFallbacks", repositoryFallbacks.sum());
+        return stats;
+    }
+
+    private static boolean contains(long[] sorted, long value) {
+        return sorted != null && Arrays.binarySearch(sorted, value) >= 0;
+    }
+
+    static long[] insertSorted(long[] sorted, long value) {
+        if (sorted == null) {
+            return new long[]{value};
+        }
+        int pos = Arrays.binarySearch(sorted, value);
+        if (pos >= 0) {
+            return sorted;
+        }
+        int insertAt = -pos - 1;
+        long[] next = new long[sorted.length + 1];
+        System.arraycopy(sorted, 0, next, 0, insertAt);
+        next[insertAt] = value;
+        System.arraycopy(sorted, insertAt, next, insertAt + 1, sorted.length - insertAt);
+        return next;
+    }
+
+    // Growable primitive buffer, only used while bulk loading
+    private static final class LongList {
+        private long[] values = new long[4];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toSortedArray() {
+            long[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+
+            // Drop duplicate rows, if the table has any
+            int unique = 0;
+            for (int i = 0; i < result.length; i++) {
+                if (i == 0 || result[i] != result[i - 1]) {
+                    result[unique++] = result[i];
+                }
+            }
+            return unique == result.length ? result : Arrays.copyOf(result, unique);
+        }
+    }
+}
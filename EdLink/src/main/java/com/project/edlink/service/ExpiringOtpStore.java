@@ -0,0 +1,167 @@
+package com.project.edlink.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-memory OTP store with deadline-queue eviction.
+ *
+ * Every OTP gets the same TTL, so deadlines are appended in non-decreasing order and a plain
+ * FIFO queue is already sorted: the sweeper only ever looks at the head. Entries replaced by a
+ * newer OTP leave a stale deadline behind, which is skipped when it reaches the head.
+ * The store refuses new entries once the hard cap is hit, and an OTP is burned after too many
+ * wrong guesses.
+ */
+@Component
+@ConditionalOnProperty(name = "edlink.otp.store", havingValue = "memory", matchIfMissing = true)
+public class ExpiringOtpStore implements OtpStore {
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final int maxAttempts;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Deadline> deadlines = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder rejectedFull = new LongAdder();
+    private final LongAdder lockedOut = new LongAdder();
+    private final LongAdder verifications = new LongAdder();
+    private final LongAdder verifyNanos = new LongAdder();
+
+    public ExpiringOtpStore(
+            @Value("${edlink.otp.ttl-minutes:10}") long ttlMinutes,
+            @Value("${edlink.otp.max-entries:100000}") int maxEntries,
+            @Value("${edlink.otp.max-attempts:5}") int maxAttempts) {
+        this.ttlMillis = ttlMinutes * 60 * 1000;
+        this.maxEntries = maxEntries;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * @return false if the store is at its hard cap even after evicting expired entries
+     */
+    @Override
+    public boolean put(String email, String otp) {
+        long now = System.currentTimeMillis();
+
+        if (entries.size() >= maxEntries && !entries.containsKey(email)) {
+            evictExpired(now);
+            if (entries.size() >= maxEntries) {
+                rejectedFull.increment();
+                return false;
+            }
+        }
+
+        Entry entry = new Entry(otp, now + ttlMillis);
+        entries.put(email, entry);
+        deadlines.add(new Deadline(email, entry));
+        return true;
+    }
+
+    @Override
+    public boolean verify(String email, String otp) {
+        return check(email, otp, false);
+    }
+
+    @Override
+    public boolean consume(String email, String otp) {
+        return check(email, otp, true);
+    }
+
+    private boolean check(String email, String otp, boolean consume) {
+        long start = System.nanoTime();
+        try {
+            Entry entry = entries.get(email);
+            if (entry == null || otp == null) {
+                return false;
+            }
+
+            if (entry.expiresAt <= System.currentTimeMillis()) {
+                entries.remove(email, entry);
+                return false;
+            }
+
+            boolean match = MessageDigest.isEqual(
+                    entry.otp.getBytes(StandardCharsets.US_ASCII),
+                    otp.getBytes(StandardCharsets.US_ASCII));
+
+            if (!match && entry.failedAttempts.incrementAndGet() >= maxAttempts) {
+                // Too many guesses: burn this OTP, the user has to request a new one
+                if (entries.remove(email, entry)) {
+                    lockedOut.increment();
+                }
+            }
+
+            // remove(key, value) succeeds for exactly one concurrent caller
+            if (match && consume) {
+                return entries.remove(email, entry);
+            }
+            return match;
+        } finally {
+            verifications.increment();
+            verifyNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void remove(String email) {
+        entries.remove(email);
+    }
+
+    @Scheduled(fixedDelay = 5_000)
+    public void sweep() {
+        evictExpired(System.currentTimeMillis());
+    }
+
+    private void evictExpired(long now) {
+        Deadline head;
+        while ((head = deadlines.peek()) != null && head.entry.expiresAt <= now) {
+            if (deadlines.remove(head) && entries.remove(head.email, head.entry)) {
+                expired.increment();
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long count = verifications.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "memory");
+        stats.put("size", entries.size());
+        stats.put("pendingDeadlines", deadlines.size());
+        stats.put("expiredEvictions", expired.sum());
+        stats.put("rejectedFull", rejectedFull.sum());
+        stats.put("lockedOut", lockedOut.sum());
+        stats.put("verifications", count);
+        stats.put("avgVerifyMicros", count == 0 ? 0.0 : verifyNanos.sum() / 1_000.0 / count);
+        return stats;
+    }
+
+    private static final class Entry {
+        private final String otp;
+        private final long expiresAt;
+        private final AtomicInteger failedAttempts = new AtomicInteger();
+
+        private Entry(String otp, long expiresAt) {
+            this.otp = otp;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private record Deadline(String email, Entry entry) {
+    }
+}
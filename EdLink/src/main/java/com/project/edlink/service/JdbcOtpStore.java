@@ -0,0 +1,141 @@
+package com.project.edlink.service;
+
+import com.project.edlink.entities.OtpCode;
+import com.project.edlink.repository.OtpCodeRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * OTP store backed by the shared otp_codes table, for running more than one replica
+ * without sticky sessions.
+ *
+ * Validity (hash match, not expired, attempts left) is checked inside the WHERE clause, so
+ * consume is a single conditional DELETE and two pods can never both accept the same OTP.
+ * Expired rows are purged in small batches through the expires_at index.
+ *
+ * The table holds an HMAC-SHA256 of each OTP keyed with edlink.otp.hmac-secret. A plain hash
+ * would not protect a six-digit code, since all million candidates hash in well under a second;
+ * with the key kept out of the database, a leaked table does not give the codes away.
+ */
+@Component
+@ConditionalOnProperty(name = "edlink.otp.store", havingValue = "jdbc")
+public class JdbcOtpStore implements OtpStore {
+
+    private static final int PURGE_BATCH_SIZE = 500;
+
+    @Autowired
+    private OtpCodeRepository otpCodeRepository;
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final Duration ttl;
+    private final int maxAttempts;
+    private final SecretKeySpec hmacKey;
+
+    private final LongAdder purged = new LongAdder();
+    private final LongAdder verifications = new LongAdder();
+    private final LongAdder verifyNanos = new LongAdder();
+
+    public JdbcOtpStore(
+            @Value("${edlink.otp.ttl-minutes:10}") long ttlMinutes,
+            @Value("${edlink.otp.max-attempts:5}") int maxAttempts,
+            @Value("${edlink.otp.hmac-secret}") String hmacSecret) {
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.maxAttempts = maxAttempts;
+        this.hmacKey = new SecretKeySpec(hmacSecret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+    }
+
+    @Override
+    public boolean put(String email, String otp) {
+        otpCodeRepository.save(new OtpCode(email, hash(otp), Instant.now().plus(ttl), 0));
+        return true;
+    }
+
+    @Override
+    public boolean verify(String email, String otp) {
+        long start = System.nanoTime();
+        try {
+            if (otp == null) {
+                return false;
+            }
+            boolean valid = otpCodeRepository.existsValid(email, hash(otp), Instant.now(), maxAttempts);
+            if (!valid) {
+                otpCodeRepository.recordFailedAttempt(email);
+            }
+            return valid;
+        } finally {
+            verifications.increment();
+            verifyNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean consume(String email, String otp) {
+        long start = System.nanoTime();
+        try {
+            if (otp == null) {
+                return false;
+            }
+            boolean consumed = otpCodeRepository.consumeValid(email, hash(otp), Instant.now(), maxAttempts) == 1;
+            if (!consumed) {
+                otpCodeRepository.recordFailedAttempt(email);
+            }
+            return consumed;
+        } finally {
+            verifications.increment();
+            verifyNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void remove(String email) {
+        otpCodeRepository.deleteById(email);
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        int removed;
+        do {
+            removed = otpCodeRepository.purgeExpired(now, PURGE_BATCH_SIZE);
+            purged.add(removed);
+        } while (removed == PURGE_BATCH_SIZE);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long count = verifications.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "jdbc");
+        stats.put("purgedRows", purged.sum());
+        stats.put("verifications", count);
+        stats.put("avgVerifyMicros", count == 0 ? 0.0 : verifyNanos.sum() / 1_000.0 / count);
+        return stats;
+    }
+
+    private String hash(String otp) {
+        try {
+            // Mac is not thread-safe, so one per call like MessageDigest elsewhere
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(hmacKey);
+            return HexFormat.of().formatHex(mac.doFinal(otp.getBytes(StandardCharsets.US_ASCII)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " not available", e);
+        }
+    }
+}
@@ -1,73 +1,48 @@
 package com.project.edlink.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.security.SecureRandom;
 import java.util.Map;
-import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class OTPService {
 
-    // Store OTPs temporarily (email -> OTP, expiry time)
-    private final Map<String, OTPData> otpStore = new ConcurrentHashMap<>();
-    private static final int OTP_EXPIRY_MINUTES = 10;
     private static final int OTP_LENGTH = 6;
+    private static final int OTP_BOUND = (int) Math.pow(10, OTP_LENGTH);
+
+    // SecureRandom is thread-safe; one instance instead of a new Random per OTP
+    private final SecureRandom random = new SecureRandom();
+
+    // In-memory or shared-table store, chosen by edlink.otp.store
+    @Autowired
+    private OtpStore otpStore;
 
     public String generateOTP() {
-        Random random = new Random();
-        StringBuilder otp = new StringBuilder();
-        for (int i = 0; i < OTP_LENGTH; i++) {
-            otp.append(random.nextInt(10));
-        }
-        return otp.toString();
+        return String.format("%0" + OTP_LENGTH + "d", random.nextInt(OTP_BOUND));
     }
 
-    public void storeOTP(String email, String otp) {
-        long expiryTime = System.currentTimeMillis() + (OTP_EXPIRY_MINUTES * 60 * 1000);
-        otpStore.put(email, new OTPData(otp, expiryTime));
+    /**
+     * @return false if the store is full and the OTP could not be kept
+     */
+    public boolean storeOTP(String email, String otp) {
+        return otpStore.put(email, otp);
     }
 
     public boolean verifyOTP(String email, String otp) {
-        OTPData otpData = otpStore.get(email);
-        if (otpData == null) {
-            return false;
-        }
-        
-        // Check if OTP expired
-        if (System.currentTimeMillis() > otpData.getExpiryTime()) {
-            otpStore.remove(email);
-            return false;
-        }
-        
-        // Verify OTP
-        if (otpData.getOtp().equals(otp)) {
-            return true;
-        }
-        
-        return false;
+        return otpStore.verify(email, otp);
+    }
+
+    public boolean consumeOTP(String email, String otp) {
+        return otpStore.consume(email, otp);
     }
 
     public void removeOTP(String email) {
         otpStore.remove(email);
     }
 
-    private static class OTPData {
-        private final String otp;
-        private final long expiryTime;
-
-        public OTPData(String otp, long expiryTime) {
-            this.otp = otp;
-            this.expiryTime = expiryTime;
-        }
-
-        public String getOtp() {
-            return otp;
-        }
-
-        public long getExpiryTime() {
-            return expiryTime;
-        }
+    public Map<String, Object> getStats() {
+        return otpStore.getStats();
     }
 }
-
@@ -0,0 +1,34 @@
+package com.project.edlink.service;
+
+import java.util.Map;
+
+/**
+ * Storage for pending password-reset OTPs.
+ *
+ * memory (default): {@link ExpiringOtpStore}, fine for a single replica.
+ * jdbc: {@link JdbcOtpStore}, shared table so /verify-otp and /reset-password work on any pod.
+ * Selected with edlink.otp.store.
+ */
+public interface OtpStore {
+
+    /**
+     * Store (or replace) the OTP for an email.
+     *
+     * @return false if the OTP could not be stored
+     */
+    boolean put(String email, String otp);
+
+    /**
+     * Check an OTP without consuming it. Wrong guesses count towards the attempt limit.
+     */
+    boolean verify(String email, String otp);
+
+    /**
+     * Atomically check and remove an OTP, so it can be used for exactly one password reset.
+     */
+    boolean consume(String email, String otp);
+
+    void remove(String email);
+
+    Map<String, Object> getStats();
+}
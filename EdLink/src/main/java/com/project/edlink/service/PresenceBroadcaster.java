@@ -0,0 +1,114 @@
+package com.project.edlink.service;
+
+import com.project.edlink.dto.PresenceUpdateDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces presence transitions and sends them to /topic/presence.{subjectId}.
+ *
+ * Transitions are collected per subject and flushed once per tick as a single frame holding a
+ * JSON array of PresenceUpdateDto, so outbound presence traffic per room follows churn rather
+ * than ping rate. Only a user's latest state in the tick is sent, and a user who flipped and
+ * flipped back within one tick is not sent at all.
+ *
+ * The tick runs on the shared scheduling pool (spring.task.scheduling.pool.size), which is
+ * sized so MySQL-bound housekeeping tasks cannot delay it.
+ */
+@Component
+public class PresenceBroadcaster {
+
+    @Autowired
+    private TopicPublisher topicPublisher;
+
+    @Autowired
+    private ChatVersions chatVersions;
+
+    // subjectId -> userId -> pending change; inner maps are only touched inside compute()/remove()
+    private final Map<Long, Map<Long, Pending>> pending = new ConcurrentHashMap<>();
+
+    private final LongAdder transitions = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder updatesSent = new LongAdder();
+    private final LongAdder framesSent = new LongAdder();
+
+    /**
+     * Queue a transition for the next flush. Also moves the subject's participants ETag.
+     */
+    public void publish(PresenceUpdateDto update) {
+        transitions.increment();
+        chatVersions.rosterChanged(update.getSubjectId());
+        pending.compute(update.getSubjectId(), (subjectId, users) -> {
+            if (users == null) {
+                users = new HashMap<>();
+            }
+            Pending existing = users.get(update.getUserId());
+            if (existing == null) {
+                // State clients last saw is the opposite of the first transition in this tick
+                users.put(update.getUserId(), new Pending(!update.isOnline(), update));
+            } else {
+                existing.latest = update;
+            }
+            return users;
+        });
+    }
+
+    @Scheduled(fixedRateString = "${edlink.presence.broadcast-interval-ms:500}")
+    public void flush() {
+        for (Long subjectId : pending.keySet()) {
+            Map<Long, Pending> users = pending.remove(subjectId);
+            if (users == null) {
+                continue;
+            }
+
+            List<PresenceUpdateDto> batch = new ArrayList<>(users.size());
+            for (Pending change : users.values()) {
+                if (change.latest.isOnline() == change.initialOnline) {
+                    cancelled.increment();
+                } else {
+                    batch.add(change.latest);
+                }
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+
+            try {
+                topicPublisher.send("/topic/presence." + subjectId, batch);
+                framesSent.increment();
+                updatesSent.add(batch.size());
+            } catch (RuntimeException e) {
+                System.err.println("Presence broadcast failed for subject " + subjectId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("transitions", transitions.sum());
+        stats.put("cancelledFlips", cancelled.sum());
+        stats.put("updatesSent", updatesSent.sum());
+        stats.put("framesSent", framesSent.sum());
+        stats.put("pendingSubjects", pending.size());
+        return stats;
+    }
+
+    private static final class Pending {
+        private final boolean initialOnline;
+        private PresenceUpdateDto latest;
+
+        private Pending(boolean initialOnline, PresenceUpdateDto latest) {
+            this.initialOnline = initialOnline;
+            this.latest = latest;
+        }
+    }
+}
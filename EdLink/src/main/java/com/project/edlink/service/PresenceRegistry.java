@@ -0,0 +1,475 @@
+package com.project.edlink.service;
+
+import com.project.edlink.dto.PresenceUpdateDto;
+import com.project.edlink.entities.TimeOrderedIdGenerator;
+import com.project.edlink.security.AuthenticatedUser;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Who is online in which subject chat, kept in memory.
+ *
+ * A user is online in a subject while at least one of their STOMP sessions is subscribed to
+ * that subject's chat or presence topic, or while their last heartbeat (/app/presence.update or
+ * the REST ping) is younger than the online window. Subscriptions are fed by the session
+ * lifecycle events in PresenceSessionListener; heartbeats never touch the database.
+ *
+ * A subject's user map is only created, emptied and removed inside subjects.compute for that
+ * subject, so a sweep can never drop a map that update() is writing to.
+ *
+ * Online/offline transitions are handed to {@link PresenceBroadcaster}. Names and roles come
+ * from the authenticated principal, so a transition needs no user lookup either.
+ *
+ * In relay mode every replica only sees its own sessions. Transitions also go out on the
+ * {@link ClusterBus}, and each replica keeps a table of users online on the others; every
+ * cluster-digest-ms each replica sends its complete online set, which replaces what the others
+ * hold for it, and entries not refreshed within three digests (a replica that died) expire.
+ * isOnline() and onlineUserIds() answer for the whole cluster. Going offline here while still
+ * online on another replica is not broadcast, so browsers keep showing the user online.
+ *
+ * With edlink.presence.snapshot.enabled=true, last-seen times are upserted into chat_presence
+ * in one JDBC batch per interval, to keep "last seen" history across restarts.
+ */
+@Component
+public class PresenceRegistry {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private static final String SNAPSHOT_SQL =
+            "INSERT INTO chat_presence (id, subject_id, user_id, last_seen) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE last_seen = GREATEST(last_seen, VALUES(last_seen))";
+
+    @Autowired
+    private PresenceBroadcaster presenceBroadcaster;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ClusterBus clusterBus;
+
+    static final String TRANSITION_EVENT = "presence";
+    static final String DIGEST_EVENT = "presence-digest";
+
+    private final long onlineWindowMillis;
+    private final boolean snapshotEnabled;
+    private final long remoteTtlMillis;
+
+    // subjectId -> userId -> presence
+    private final Map<Long, Map<Long, Presence>> subjects = new ConcurrentHashMap<>();
+
+    // STOMP sessionId -> its subject subscriptions
+    private final Map<String, SessionSubscriptions> sessions = new ConcurrentHashMap<>();
+
+    // Recently disconnected sessions -> disconnect time. Session events can reach us out of order,
+    // and a SUBSCRIBE handled after the DISCONNECT must not register a session nobody will close.
+    private final Map<String, Long> closedSessions = new ConcurrentHashMap<>();
+
+    // subjectId -> userId -> origin replica -> expiry; users online through other replicas.
+    // Changed only inside remote.compute for the subject, like subjects.
+    private final Map<Long, Map<Long, Map<String, Long>>> remote = new ConcurrentHashMap<>();
+
+    private final LongAdder transitions = new LongAdder();
+    private final LongAdder snapshotRows = new LongAdder();
+    private final LongAdder suppressedOffline = new LongAdder();
+
+    public PresenceRegistry(
+            @Value("${edlink.presence.online-window-seconds:60}") long onlineWindowSeconds,
+            @Value("${edlink.presence.snapshot.enabled:false}") boolean snapshotEnabled,
+            @Value("${edlink.presence.cluster-digest-ms:15000}") long clusterDigestMillis) {
+        this.onlineWindowMillis = onlineWindowSeconds * 1000;
+        this.snapshotEnabled = snapshotEnabled;
+        this.remoteTtlMillis = clusterDigestMillis * 3;
+    }
+
+    @PostConstruct
+    public void listen() {
+        clusterBus.onPerOrigin(TRANSITION_EVENT, PresenceUpdateDto.class, this::remoteTransition);
+        clusterBus.onPerOrigin(DIGEST_EVENT, Digest.class, this::remoteDigest);
+    }
+
+    /**
+     * A STOMP session subscribed to /topic/chat.{subjectId} or /topic/presence.{subjectId}.
+     */
+    public void subscribed(String sessionId, String subscriptionId, AuthenticatedUser user, Long subjectId) {
+        if (closedSessions.containsKey(sessionId)) {
+            return;
+        }
+        SessionSubscriptions session = sessions.computeIfAbsent(sessionId, id -> new SessionSubscriptions(user));
+
+        // Chat and presence topics of one subject count as one connection
+        boolean first;
+        synchronized (session) {
+            // disconnected() marks the tombstone before it removes the session, so re-checking
+            // here under the session lock catches a DISCONNECT that raced with us
+            if (session.closed || closedSessions.containsKey(sessionId)) {
+                session.closed = true;
+                sessions.remove(sessionId, session);
+                return;
+            }
+            session.subjectsBySubscription.put(subscriptionId, subjectId);
+            first = session.subjectCounts.merge(subjectId, 1, Integer::sum) == 1;
+        }
+        if (first) {
+            update(subjectId, user, presence -> presence.connections++);
+        }
+    }
+
+    public void unsubscribed(String sessionId, String subscriptionId) {
+        SessionSubscriptions session = sessions.get(sessionId);
+        if (session == null) {
+            return;
+        }
+
+        Long subjectId;
+        boolean last;
+        synchronized (session) {
+            subjectId = session.subjectsBySubscription.remove(subscriptionId);
+            if (subjectId == null) {
+                return;
+            }
+            last = session.subjectCounts.merge(subjectId, -1, Integer::sum) == 0;
+            if (last) {
+                session.subjectCounts.remove(subjectId);
+            }
+        }
+        if (last) {
+            dropConnection(subjectId, session.user);
+        }
+    }
+
+    public void disconnected(String sessionId) {
+        closedSessions.put(sessionId, System.currentTimeMillis());
+        SessionSubscriptions session = sessions.remove(sessionId);
+        if (session == null) {
+            return;
+        }
+
+        Set<Long> subjectIds;
+        synchronized (session) {
+            session.closed = true;
+            subjectIds = new HashSet<>(session.subjectCounts.keySet());
+            session.subjectCounts.clear();
+            session.subjectsBySubscription.clear();
+        }
+        for (Long subjectId : subjectIds) {
+            dropConnection(subjectId, session.user);
+        }
+    }
+
+    /**
+     * Presence ping from a user who has already been authorized for the subject.
+     */
+    public void heartbeat(AuthenticatedUser user, Long subjectId) {
+        update(subjectId, user, presence -> presence.heartbeatAt = System.currentTimeMillis());
+    }
+
+    public boolean isOnline(Long subjectId, Long userId) {
+        Map<Long, Presence> users = subjects.get(subjectId);
+        Presence presence = users != null ? users.get(userId) : null;
+        return (presence != null && presence.online) || isOnlineElsewhere(subjectId, userId, System.currentTimeMillis());
+    }
+
+    public Set<Long> onlineUserIds(Long subjectId) {
+        Set<Long> online = new HashSet<>();
+        Map<Long, Presence> users = subjects.get(subjectId);
+        if (users != null) {
+            users.forEach((userId, presence) -> {
+                if (presence.online) {
+                    online.add(userId);
+                }
+            });
+        }
+        Map<Long, Map<String, Long>> elsewhere = remote.get(subjectId);
+        if (elsewhere != null) {
+            long now = System.currentTimeMillis();
+            elsewhere.forEach((userId, origins) -> {
+                if (origins.values().stream().anyMatch(until -> until > now)) {
+                    online.add(userId);
+                }
+            });
+        }
+        return online;
+    }
+
+    /**
+     * A transition on another replica. Its browsers were already told through the broker.
+     */
+    void remoteTransition(String origin, PresenceUpdateDto update) {
+        long until = System.currentTimeMillis() + remoteTtlMillis;
+        remote.compute(update.getSubjectId(), (id, users) -> {
+            if (users == null) {
+                users = new ConcurrentHashMap<>();
+            }
+            if (update.isOnline()) {
+                users.computeIfAbsent(update.getUserId(), userId -> new ConcurrentHashMap<>()).put(origin, until);
+            } else {
+                users.computeIfPresent(update.getUserId(), (userId, origins) -> {
+                    origins.remove(origin);
+                    return origins.isEmpty() ? null : origins;
+                });
+            }
+            return users.isEmpty() ? null : users;
+        });
+    }
+
+    /**
+     * Another replica's complete online set: replaces everything held for that replica.
+     */
+    void remoteDigest(String origin, Digest digest) {
+        long until = System.currentTimeMillis() + remoteTtlMillis;
+        Map<Long, Set<Long>> online = digest.online() != null ? digest.online() : Map.of();
+        Set<Long> subjectIds = new HashSet<>(remote.keySet());
+        subjectIds.addAll(online.keySet());
+        for (Long subjectId : subjectIds) {
+            Set<Long> userIds = online.getOrDefault(subjectId, Set.of());
+            remote.compute(subjectId, (id, users) -> {
+                if (users == null) {
+                    users = new ConcurrentHashMap<>();
+                }
+                users.entrySet().removeIf(entry -> {
+                    if (!userIds.contains(entry.getKey())) {
+                        entry.getValue().remove(origin);
+                    }
+                    return entry.getValue().isEmpty();
+                });
+                for (Long userId : userIds) {
+                    users.computeIfAbsent(userId, u -> new ConcurrentHashMap<>()).put(origin, until);
+                }
+                return users.isEmpty() ? null : users;
+            });
+        }
+    }
+
+    /**
+     * Tell the other replicas who is online here (relay mode only).
+     */
+    @Scheduled(fixedDelayString = "${edlink.presence.cluster-digest-ms:15000}")
+    public void publishDigest() {
+        if (!clusterBus.isEnabled()) {
+            return;
+        }
+        Map<Long, Set<Long>> online = new HashMap<>();
+        subjects.forEach((subjectId, users) -> users.forEach((userId, presence) -> {
+            if (presence.online) {
+                online.computeIfAbsent(subjectId, id -> new HashSet<>()).add(userId);
+            }
+        }));
+        clusterBus.publish(DIGEST_EVENT, new Digest(online));
+    }
+
+    private boolean isOnlineElsewhere(Long subjectId, Long userId, long now) {
+        Map<Long, Map<String, Long>> users = remote.get(subjectId);
+        Map<String, Long> origins = users != null ? users.get(userId) : null;
+        return origins != null && origins.values().stream().anyMatch(until -> until > now);
+    }
+
+    /**
+     * Expire heartbeats that went quiet, and forget users who are offline and already snapshotted.
+     */
+    @Scheduled(fixedDelay = 5_000)
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        List<PresenceUpdateDto> changes = new ArrayList<>();
+        for (Long subjectId : subjects.keySet()) {
+            subjects.computeIfPresent(subjectId, (id, users) -> {
+                users.values().removeIf(presence -> {
+                    PresenceUpdateDto change = applyState(subjectId, presence, now);
+                    if (change != null) {
+                        changes.add(change);
+                    }
+                    return !presence.online && (!snapshotEnabled || !presence.dirty);
+                });
+                return users.isEmpty() ? null : users;
+            });
+        }
+        changes.forEach(this::publish);
+
+        // Replicas that stopped sending digests
+        for (Long subjectId : remote.keySet()) {
+            remote.computeIfPresent(subjectId, (id, users) -> {
+                users.entrySet().removeIf(entry -> {
+                    entry.getValue().values().removeIf(until -> until <= now);
+                    return entry.getValue().isEmpty();
+                });
+                return users.isEmpty() ? null : users;
+            });
+        }
+
+        // A late SUBSCRIBE arrives within moments of its DISCONNECT; a minute is plenty
+        closedSessions.values().removeIf(closedAt -> now - closedAt > 60_000);
+    }
+
+    @Scheduled(fixedDelayString = "${edlink.presence.snapshot.interval-ms:60000}")
+    public void snapshot() {
+        if (!snapshotEnabled) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<Object[]> rows = new ArrayList<>();
+        subjects.forEach((subjectId, users) -> users.forEach((userId, presence) -> {
+            // Someone still connected was seen just now
+            long lastSeen = presence.online ? now : presence.lastSeen;
+            if (presence.dirty || presence.online) {
+                presence.dirty = false;
+                rows.add(new Object[]{subjectId, userId, lastSeen});
+            }
+        }));
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(SNAPSHOT_SQL, rows, 500, (ps, row) -> {
+                ps.setLong(1, TimeOrderedIdGenerator.shared().nextId());
+                ps.setLong(2, (Long) row[0]);
+                ps.setLong(3, (Long) row[1]);
+                ps.setTimestamp(4, Timestamp.from(Instant.ofEpochMilli((Long) row[2])), Calendar.getInstance(UTC));
+            });
+            snapshotRows.add(rows.size());
+        } catch (RuntimeException e) {
+            System.err.println("Presence snapshot failed (" + rows.size() + " rows): " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long tracked = 0;
+        long online = 0;
+        for (Map<Long, Presence> users : subjects.values()) {
+            tracked += users.size();
+            for (Presence presence : users.values()) {
+                if (presence.online) {
+                    online++;
+                }
+            }
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("subjects", subjects.size());
+        stats.put("trackedUsers", tracked);
+        stats.put("onlineUsers", online);
+        stats.put("sessions", sessions.size());
+        stats.put("transitions", transitions.sum());
+        stats.put("remoteSubjects", remote.size());
+        stats.put("offlineSuppressed", suppressedOffline.sum());
+        stats.put("snapshotEnabled", snapshotEnabled);
+        stats.put("snapshotRows", snapshotRows.sum());
+        return stats;
+    }
+
+    private void dropConnection(Long subjectId, AuthenticatedUser user) {
+        update(subjectId, user, presence -> {
+            presence.connections--;
+            if (presence.connections == 0) {
+                // Closing the tab should not leave the user online for a whole heartbeat window
+                presence.heartbeatAt = 0;
+            }
+        });
+    }
+
+    private void update(Long subjectId, AuthenticatedUser user, PresenceChange change) {
+        long now = System.currentTimeMillis();
+        PresenceUpdateDto[] transition = new PresenceUpdateDto[1];
+
+        subjects.compute(subjectId, (id, users) -> {
+            if (users == null) {
+                users = new ConcurrentHashMap<>();
+            }
+            Presence presence = users.computeIfAbsent(user.getId(),
+                    userId -> new Presence(user.getId(), user.getDisplayName(), user.getRole()));
+            change.apply(presence);
+            transition[0] = applyState(subjectId, presence, now);
+            return users;
+        });
+
+        // Published outside compute() so no map bin stays locked while sending
+        if (transition[0] != null) {
+            publish(transition[0]);
+        }
+    }
+
+    private void publish(PresenceUpdateDto change) {
+        clusterBus.publish(TRANSITION_EVENT, change);
+        if (!change.isOnline() && isOnlineElsewhere(change.getSubjectId(), change.getUserId(), System.currentTimeMillis())) {
+            suppressedOffline.increment();
+            return;
+        }
+        presenceBroadcaster.publish(change);
+    }
+
+    /**
+     * Recompute the online flag. Runs inside subjects.compute(), so each transition is decided
+     * exactly once.
+     *
+     * @return the transition to broadcast, or null if the user's state did not change
+     */
+    private PresenceUpdateDto applyState(Long subjectId, Presence presence, long now) {
+        boolean online = presence.connections > 0
+                || (presence.heartbeatAt != 0 && now - presence.heartbeatAt < onlineWindowMillis);
+        if (online) {
+            presence.lastSeen = now;
+            presence.dirty = true;
+        }
+        if (online == presence.online) {
+            return null;
+        }
+        presence.online = online;
+        transitions.increment();
+        return new PresenceUpdateDto(presence.userId, subjectId, presence.name, presence.role, online);
+    }
+
+    record Digest(Map<Long, Set<Long>> online) {
+    }
+
+    private interface PresenceChange {
+        void apply(Presence presence);
+    }
+
+    // Mutated only inside subjects.compute for its subject
+    private static final class Presence {
+        private final Long userId;
+        private final String name;
+        private final String role;
+        private int connections;
+        private long heartbeatAt;
+        private volatile long lastSeen;
+        private volatile boolean online;
+        private volatile boolean dirty;
+
+        private Presence(Long userId, String name, String role) {
+            this.userId = userId;
+            this.name = name;
+            this.role = role;
+        }
+    }
+
+    private static final class SessionSubscriptions {
+        private final AuthenticatedUser user;
+        private final Map<String, Long> subjectsBySubscription = new LinkedHashMap<>();
+        private final Map<Long, Integer> subjectCounts = new LinkedHashMap<>();
+        private boolean closed;
+
+        private SessionSubscriptions(AuthenticatedUser user) {
+            this.user = user;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.project.edlink.service;
+
+import com.project.edlink.security.AuthenticatedUser;
+import com.project.edlink.security.ChatSubscriptionInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+/**
+ * Feeds STOMP session lifecycle events into {@link PresenceRegistry}.
+ * Subscribe events are only published after ChatSubscriptionInterceptor let the frame through.
+ */
+@Component
+public class PresenceSessionListener {
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Long subjectId = ChatSubscriptionInterceptor.subjectIdOf(accessor.getDestination());
+        if (subjectId == null || event.getUser() == null) {
+            return;
+        }
+        presenceRegistry.subscribed(accessor.getSessionId(), accessor.getSubscriptionId(),
+                AuthenticatedUser.from(event.getUser()), subjectId);
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        presenceRegistry.unsubscribed(accessor.getSessionId(), accessor.getSubscriptionId());
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        presenceRegistry.disconnected(event.getSessionId());
+    }
+}
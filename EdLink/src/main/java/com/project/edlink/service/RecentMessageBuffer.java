@@ -0,0 +1,294 @@
+package com.project.edlink.service;
+
+import com.project.edlink.dto.ChatMessageDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Last N fully built chat messages per active subject, so catch-up polls (after=) and the
+ * initial newest page can be answered without MySQL.
+ *
+ * Each ring knows a floor id: it holds every message of the subject with an id above the
+ * floor. A cursor at or above the floor is answered from the ring; anything older returns
+ * null and the caller falls back to the keyset query. Rings are filled by this replica's
+ * sends and seeded from the newest-page query, so the buffer is off in broker relay mode
+ * (several replicas) or with edlink.chat.recent-buffer.enabled=false.
+ *
+ * DTOs in the ring are shared and never modified; they all have own=false and callers copy
+ * them per viewer. Rings idle for longer than idle-minutes are dropped, and when the estimated
+ * size of all rings goes over the memory budget the least recently used ones go first.
+ */
+@Component
+public class RecentMessageBuffer {
+
+    // Object headers, boxed ids and the createdAt string of one ChatMessageDto, roughly
+    private static final long DTO_OVERHEAD_BYTES = 200;
+
+    private final boolean enabled;
+    private final int capacity;
+    private final long idleMillis;
+    private final long budgetBytes;
+
+    private final Map<Long, Ring> rings = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public RecentMessageBuffer(
+            @Value("${edlink.chat.recent-buffer.enabled:true}") boolean enabled,
+            @Value("${edlink.chat.recent-buffer.messages-per-subject:200}") int capacity,
+            @Value("${edlink.chat.recent-buffer.idle-minutes:30}") long idleMinutes,
+            @Value("${edlink.chat.recent-buffer.max-memory-mb:64}") long maxMemoryMb,
+            @Value("${edlink.ws.broker:simple}") String brokerMode) {
+        // A ring only sees this replica's sends; with the broker relay there are several replicas
+        this.enabled = enabled && !"relay".equalsIgnoreCase(brokerMode);
+        if (enabled && !this.enabled) {
+            System.out.println("Recent message buffer disabled: broker relay mode implies multiple replicas");
+        }
+        this.capacity = capacity;
+        this.idleMillis = idleMinutes * 60_000;
+        this.budgetBytes = maxMemoryMb * 1024 * 1024;
+    }
+
+    /**
+     * @return up to limit messages with id > afterId in ascending order, or null if the ring
+     *         does not cover that cursor
+     */
+    public List<ChatMessageDto> after(Long subjectId, long afterId, int limit) {
+        Ring ring = enabled ? rings.get(subjectId) : null;
+        List<ChatMessageDto> result = ring != null ? ring.after(afterId, limit) : null;
+        count(result);
+        return result;
+    }
+
+    /**
+     * @return the newest limit messages in ascending order, or null if the ring cannot tell
+     */
+    public List<ChatMessageDto> newest(Long subjectId, int limit) {
+        Ring ring = enabled ? rings.get(subjectId) : null;
+        List<ChatMessageDto> result = ring != null ? ring.newest(limit) : null;
+        count(result);
+        return result;
+    }
+
+    /**
+     * Add a message that was just sent. Duplicates and messages below the floor are ignored.
+     */
+    public void append(ChatMessageDto message) {
+        if (!enabled) {
+            return;
+        }
+        // A ring started by a send only vouches for messages from this one onwards
+        Ring ring = rings.computeIfAbsent(message.getSubjectId(), id -> new Ring(capacity, message.getId() - 1));
+        totalBytes.addAndGet(ring.insert(message));
+    }
+
+    /**
+     * Start a ring from the newest-page query, if the subject has none yet.
+     *
+     * @param newestPage     the newest messages, ascending
+     * @param wholeHistory   true if the page is shorter than requested, i.e. there is nothing older
+     */
+    public void seed(Long subjectId, List<ChatMessageDto> newestPage, boolean wholeHistory) {
+        if (!enabled || rings.containsKey(subjectId)) {
+            return;
+        }
+        long floor = wholeHistory || newestPage.isEmpty() ? 0 : newestPage.get(0).getId() - 1;
+
+        Ring ring = new Ring(capacity, floor);
+        long bytes = 0;
+        for (ChatMessageDto message : newestPage) {
+            bytes += ring.insert(message);
+        }
+        if (rings.putIfAbsent(subjectId, ring) == null) {
+            totalBytes.addAndGet(bytes);
+        }
+    }
+
+    @Scheduled(fixedDelay = 10_000)
+    public void evict() {
+        long now = System.currentTimeMillis();
+        rings.forEach((subjectId, ring) -> {
+            if (now - ring.lastAccess > idleMillis) {
+                drop(subjectId, ring);
+            }
+        });
+
+        if (totalBytes.get() <= budgetBytes) {
+            return;
+        }
+        // Over budget: least recently used first, down to 90% so we do not thrash at the limit
+        List<Map.Entry<Long, Ring>> byAge = new ArrayList<>(rings.entrySet());
+        byAge.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+        for (Map.Entry<Long, Ring> entry : byAge) {
+            if (totalBytes.get() <= budgetBytes * 9 / 10) {
+                break;
+            }
+            drop(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("subjects", rings.size());
+        stats.put("estimatedBytes", totalBytes.get());
+        stats.put("budgetBytes", budgetBytes);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.sum());
+        return stats;
+    }
+
+    private void drop(Long subjectId, Ring ring) {
+        if (rings.remove(subjectId, ring)) {
+            totalBytes.addAndGet(-ring.close());
+            evictions.increment();
+        }
+    }
+
+    private void count(List<ChatMessageDto> result) {
+        if (result != null) {
+            hits.increment();
+        } else if (enabled) {
+            misses.increment();
+        }
+    }
+
+    static long sizeOf(ChatMessageDto message) {
+        long chars = (message.getContent() != null ? message.getContent().length() : 0)
+                + (message.getSenderName() != null ? message.getSenderName().length() : 0);
+        return DTO_OVERHEAD_BYTES + 2 * chars;
+    }
+
+    // Sorted by id; slots[(start + i) % length] is the i-th oldest message
+    private static final class Ring {
+        private final ChatMessageDto[] slots;
+        private int start;
+        private int size;
+        private long floorId;
+        private long bytes;
+        private boolean closed;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private Ring(int capacity, long floorId) {
+            this.slots = new ChatMessageDto[capacity];
+            this.floorId = floorId;
+        }
+
+        private ChatMessageDto at(int index) {
+            return slots[(start + index) % slots.length];
+        }
+
+        private void set(int index, ChatMessageDto message) {
+            slots[(start + index) % slots.length] = message;
+        }
+
+        /**
+         * @return change in estimated bytes
+         */
+        synchronized long insert(ChatMessageDto message) {
+            long id = message.getId();
+            if (closed || id <= floorId) {
+                return 0;
+            }
+
+            // Messages arrive almost in order, so search from the newest end
+            int pos = size;
+            while (pos > 0 && at(pos - 1).getId() >= id) {
+                if (at(pos - 1).getId() == id) {
+                    return 0;
+                }
+                pos--;
+            }
+
+            long delta = 0;
+            if (size == slots.length) {
+                if (pos == 0) {
+                    // Older than everything in a full ring: it would be evicted immediately
+                    floorId = Math.max(floorId, id);
+                    return 0;
+                }
+                ChatMessageDto oldest = at(0);
+                floorId = oldest.getId();
+                delta -= sizeOf(oldest);
+                slots[start] = null;
+                start = (start + 1) % slots.length;
+                size--;
+                pos--;
+            }
+
+            for (int i = size; i > pos; i--) {
+                set(i, at(i - 1));
+            }
+            set(pos, message);
+            size++;
+
+            delta += sizeOf(message);
+            bytes += delta;
+            lastAccess = System.currentTimeMillis();
+            return delta;
+        }
+
+        synchronized List<ChatMessageDto> after(long afterId, int limit) {
+            if (afterId < floorId) {
+                return null;
+            }
+            lastAccess = System.currentTimeMillis();
+
+            // First index with id > afterId
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (at(mid).getId() <= afterId) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            int end = Math.min(size, low + limit);
+            List<ChatMessageDto> result = new ArrayList<>(end - low);
+            for (int i = low; i < end; i++) {
+                result.add(at(i));
+            }
+            return result;
+        }
+
+        synchronized List<ChatMessageDto> newest(int limit) {
+            if (size < limit && floorId != 0) {
+                return null;
+            }
+            lastAccess = System.currentTimeMillis();
+
+            int from = Math.max(0, size - limit);
+            List<ChatMessageDto> result = new ArrayList<>(size - from);
+            for (int i = from; i < size; i++) {
+                result.add(at(i));
+            }
+            return result;
+        }
+
+        synchronized long close() {
+            closed = true;
+            return bytes;
+        }
+    }
+}
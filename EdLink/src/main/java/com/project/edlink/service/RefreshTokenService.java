@@ -0,0 +1,170 @@
+package com.project.edlink.service;
+
+import com.project.edlink.entities.RefreshToken;
+import com.project.edlink.repository.RefreshTokenRepository;
+import com.project.edlink.security.TokenVersionRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Issues and rotates opaque refresh tokens.
+ *
+ * Each refresh token is single use: rotating marks it used and issues a new one in the same
+ * family (one family per login). A used token that shows up again is treated as stolen, and the
+ * whole user is revoked (refresh tokens deleted, token version bumped so outstanding access
+ * tokens stop working on the next request).
+ *
+ * Two tabs of one browser share the cookie and may refresh at the same moment; the loser of
+ * that race presents a token used a few milliseconds earlier. Within reuse-grace-ms of the first
+ * use this is accepted as a concurrent rotation and gets its own successor in the family.
+ */
+@Service
+public class RefreshTokenService {
+
+    public static final Duration REFRESH_TOKEN_TTL = Duration.ofDays(14);
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @Value("${edlink.auth.refresh.reuse-grace-ms:10000}")
+    private long reuseGraceMillis;
+
+    private final LongAdder concurrentRotations = new LongAdder();
+
+    /**
+     * Start a new token family, i.e. a new login session.
+     */
+    public String issue(Long userId) {
+        return issue(userId, UUID.randomUUID().toString());
+    }
+
+    public String issue(Long userId, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String raw = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        RefreshToken token = new RefreshToken();
+        token.setUserId(userId);
+        token.setFamilyId(familyId != null ? familyId : UUID.randomUUID().toString());
+        token.setTokenHash(hash(raw));
+        token.setExpiresAt(Instant.now().plus(REFRESH_TOKEN_TTL));
+        token.setUsed(false);
+        refreshTokenRepository.save(token);
+
+        return raw;
+    }
+
+    /**
+     * Consume a refresh token.
+     *
+     * @return the consumed token (its user and family carry over to the successor), or null if
+     *         the token is unknown, expired or was already used outside the grace window
+     */
+    public RefreshToken consume(String raw) {
+        if (raw == null || raw.isEmpty()) {
+            return null;
+        }
+
+        Optional<RefreshToken> tokenOpt = refreshTokenRepository.findByTokenHash(hash(raw));
+        if (tokenOpt.isEmpty()) {
+            return null;
+        }
+
+        RefreshToken token = tokenOpt.get();
+        if (token.getExpiresAt().isBefore(Instant.now())) {
+            return null;
+        }
+
+        Instant now = Instant.now();
+        if (!token.isUsed() && refreshTokenRepository.markUsed(token.getId(), now) == 1) {
+            return token;
+        }
+
+        // Lost the markUsed race just now, or the token was rotated earlier
+        Instant usedAt = token.isUsed() ? token.getUsedAt() : now;
+        if (usedAt != null && usedAt.plusMillis(reuseGraceMillis).isAfter(now)) {
+            concurrentRotations.increment();
+            return token;
+        }
+
+        System.err.println("Refresh token reuse detected for user " + token.getUserId() + ", revoking all sessions");
+        revokeAll(token.getUserId());
+        return null;
+    }
+
+    /**
+     * Log out one session: drop every refresh token of the presented token's family. Other
+     * logins of the same user keep working. The session's access token is not revoked; it
+     * runs out within the access-token TTL and the client has already discarded it.
+     *
+     * @return the owning user id, or null if the token is unknown (already logged out)
+     */
+    public Long revokeFamily(String raw) {
+        if (raw == null || raw.isEmpty()) {
+            return null;
+        }
+
+        Optional<RefreshToken> tokenOpt = refreshTokenRepository.findByTokenHash(hash(raw));
+        if (tokenOpt.isEmpty()) {
+            return null;
+        }
+
+        RefreshToken token = tokenOpt.get();
+        if (token.getFamilyId() != null) {
+            refreshTokenRepository.deleteByFamilyId(token.getFamilyId());
+        } else {
+            refreshTokenRepository.deleteById(token.getId());
+        }
+        return token.getUserId();
+    }
+
+    /**
+     * Log the user out everywhere: drop refresh tokens and invalidate every issued access token.
+     */
+    public void revokeAll(Long userId) {
+        refreshTokenRepository.deleteByUserId(userId);
+        tokenVersionRegistry.revoke(userId);
+    }
+
+    @Scheduled(fixedDelay = 60 * 60 * 1000)
+    public void purgeExpired() {
+        int removed = refreshTokenRepository.deleteExpired(Instant.now());
+        if (removed > 0) {
+            System.out.println("Purged " + removed + " expired refresh tokens");
+        }
+    }
+
+    public long getConcurrentRotations() {
+        return concurrentRotations.sum();
+    }
+
+    private static String hash(String raw) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(raw.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
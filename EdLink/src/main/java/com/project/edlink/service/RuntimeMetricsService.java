@@ -0,0 +1,146 @@
+package com.project.edlink.service;
+
+import com.project.edlink.config.SlowConsumerGuard;
+import com.project.edlink.config.StompChannelMetrics;
+import com.project.edlink.config.StompCodecs;
+import com.project.edlink.entities.TimeOrderedIdGenerator;
+import com.project.edlink.security.AuthRateLimitFilter;
+import com.project.edlink.security.ChatAccessGuard;
+import com.project.edlink.security.JwtUtil;
+import com.project.edlink.security.PasswordHasher;
+import com.project.edlink.security.TokenVersionRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects in-process counters (caches, queues, pools) for the admin runtime view.
+ * Every section is a flat name -> number map so it can be scraped or graphed as-is.
+ */
+@Service
+public class RuntimeMetricsService {
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private AuthRateLimitFilter authRateLimitFilter;
+
+    @Autowired
+    private OTPService otpService;
+
+    @Autowired
+    private ChatAccessGuard chatAccessGuard;
+
+    @Autowired
+    private EnrollmentIndex enrollmentIndex;
+
+    @Autowired
+    private ChatPersistencePipeline chatPersistencePipeline;
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    @Autowired
+    private PresenceBroadcaster presenceBroadcaster;
+
+    @Autowired
+    private RecentMessageBuffer recentMessageBuffer;
+
+    @Autowired
+    private UserDirectory userDirectory;
+
+    @Autowired
+    private ChatVersions chatVersions;
+
+    @Autowired
+    private ChatSseHub chatSseHub;
+
+    @Autowired
+    private ChatFanout chatFanout;
+
+    @Autowired
+    private ChatResumeReplay chatResumeReplay;
+
+    @Autowired
+    private TypingIndicators typingIndicators;
+
+    @Autowired
+    private StompChannelMetrics stompChannelMetrics;
+
+    @Autowired
+    private SlowConsumerGuard slowConsumerGuard;
+
+    @Autowired
+    private StompCodecs stompCodecs;
+
+    @Autowired
+    private ClusterBus clusterBus;
+
+    public Map<String, Object> getRuntimeMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("jwt", jwtMetrics());
+        metrics.put("passwordHashing", passwordHasher.getStats());
+        metrics.put("authRateLimit", authRateLimitFilter.getStats());
+        metrics.put("otp", otpService.getStats());
+        metrics.put("chatAccess", chatAccessGuard.getStats());
+        metrics.put("enrollmentIndex", enrollmentIndex.getStats());
+        metrics.put("chatPersistence", chatPersistencePipeline.getStats());
+        metrics.put("presence", presenceRegistry.getStats());
+        metrics.put("presenceBroadcast", presenceBroadcaster.getStats());
+        metrics.put("recentMessages", recentMessageBuffer.getStats());
+        metrics.put("userDirectory", userDirectory.getStats());
+        metrics.put("chatEtags", chatVersions.getStats());
+        metrics.put("chatSse", chatSseHub.getStats());
+        metrics.put("chatBatching", chatFanout.getStats());
+        metrics.put("chatResume", chatResumeReplay.getStats());
+        metrics.put("typing", typingIndicators.getStats());
+        metrics.put("stompChannels", stompChannelMetrics.getStats());
+        metrics.put("slowConsumers", slowConsumerGuard.getStats());
+        metrics.put("cborCodec", stompCodecs.getStats());
+        metrics.put("clusterBus", clusterBus.getStats());
+        metrics.put("idGenerator", idGeneratorMetrics());
+        return metrics;
+    }
+
+    private Map<String, Object> jwtMetrics() {
+        long hits = jwtUtil.getCacheHits();
+        long misses = jwtUtil.getCacheMisses();
+
+        Map<String, Object> jwt = new LinkedHashMap<>();
+        jwt.put("verifiedCacheSize", jwtUtil.getCacheSize());
+        jwt.put("verifiedCacheHits", hits);
+        jwt.put("verifiedCacheMisses", misses);
+        jwt.put("verifiedCacheHitRatio", ratio(hits, misses));
+        jwt.put("revokedUsers", tokenVersionRegistry.size());
+        jwt.put("revocationsSyncedFromOtherReplicas", tokenVersionRegistry.getSyncedRevocations());
+        jwt.put("refreshConcurrentRotations", refreshTokenService.getConcurrentRotations());
+        return jwt;
+    }
+
+    private Map<String, Object> idGeneratorMetrics() {
+        TimeOrderedIdGenerator generator = TimeOrderedIdGenerator.shared();
+
+        Map<String, Object> ids = new LinkedHashMap<>();
+        ids.put("nodeId", generator.getNodeId());
+        ids.put("issuedAheadOfClock", generator.getAheadOfClock());
+        ids.put("clockRegressions", generator.getClockRegressions());
+        return ids;
+    }
+
+    private static double ratio(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
@@ -2,11 +2,9 @@ package com.project.edlink.service;
 
 import com.project.edlink.entities.StudyMaterial;
 import com.project.edlink.entities.Subject;
-import com.project.edlink.entities.User;
-import com.project.edlink.repository.EnrollmentRepository;
 import com.project.edlink.repository.StudyMaterialRepository;
 import com.project.edlink.repository.SubjectRepository;
-import com.project.edlink.repository.UserRepository;
+import com.project.edlink.security.AuthenticatedUser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
@@ -29,17 +27,11 @@ public class StudyMaterialService {
     private SubjectRepository subjectRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private EnrollmentIndex enrollmentIndex;
 
-    @Autowired
-    private EnrollmentRepository enrollmentRepository;
-
-    public String uploadMaterial(String email, Long subjectId, MultipartFile file, String title) {
-
-        // 1. Teacher verify
-        User teacher = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Teacher not found"));
+    public String uploadMaterial(AuthenticatedUser teacher, Long subjectId, MultipartFile file, String title) {
 
+        // 1. Teacher comes from the authenticated principal
         Subject subject = subjectRepository.findById(subjectId)
                 .orElseThrow(() -> new RuntimeException("Subject not found"));
 
@@ -92,16 +84,13 @@ public class StudyMaterialService {
     }
 
 
-    public List<StudyMaterial> getStudentMaterials(String email, Long subjectId) {
-
-        // 1. Student fetch
-        User student = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Student not found"));
+    public List<StudyMaterial> getStudentMaterials(AuthenticatedUser student, Long subjectId) {
 
+        // 1. Student comes from the authenticated principal
         Long studentId = student.getId();
 
         // 2. Check enrollment
-        boolean enrolled = enrollmentRepository.existsByStudentIdAndSubjectId(studentId, subjectId);
+        boolean enrolled = enrollmentIndex.isEnrolled(studentId, subjectId);
 
         if (!enrolled) {
             throw new RuntimeException("You are not enrolled in this subject!");
@@ -112,18 +101,16 @@ public class StudyMaterialService {
     }
 
 
-    public Resource downloadMaterial(Long materialId, String email) {
+    public Resource downloadMaterial(Long materialId, AuthenticatedUser student) {
 
-        // 1. Student check
-        User student = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Student not found"));
+        // 1. Student comes from the authenticated principal
 
         // 2. Material fetch
         StudyMaterial material = materialRepository.findById(materialId)
                 .orElseThrow(() -> new RuntimeException("Material not found"));
 
         // 3. Enrollment check
-        boolean enrolled = enrollmentRepository.existsByStudentIdAndSubjectId(
+        boolean enrolled = enrollmentIndex.isEnrolled(
                 student.getId(),
                 material.getSubjectId()
         );
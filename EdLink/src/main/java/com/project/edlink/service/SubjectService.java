@@ -2,10 +2,10 @@ package com.project.edlink.service;
 
 import com.project.edlink.entities.Enrollment;
 import com.project.edlink.entities.Subject;
-import com.project.edlink.entities.User;
 import com.project.edlink.repository.EnrollmentRepository;
 import com.project.edlink.repository.SubjectRepository;
-import com.project.edlink.repository.UserRepository;
+import com.project.edlink.security.AuthenticatedUser;
+import com.project.edlink.security.ChatAccessGuard;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -22,18 +22,22 @@ public class SubjectService {
     private EnrollmentRepository enrollmentRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private EnrollmentIndex enrollmentIndex;
 
-    public Subject createSubject(String email, Subject subject) {
-        // teacherId find karke subject assign
-        User teacher = userRepository.findByEmail(email).orElseThrow();
+    @Autowired
+    private ChatAccessGuard chatAccessGuard;
+
+    @Autowired
+    private ChatVersions chatVersions;
+
+    public Subject createSubject(AuthenticatedUser teacher, Subject subject) {
+        // teacherId token se aata hai, subject assign
         subject.setTeacherId(teacher.getId());
         return subjectRepository.save(subject);
     }
 
-    public List<Subject> getTeacherSubjects(String email) {
+    public List<Subject> getTeacherSubjects(AuthenticatedUser teacher) {
         // teacherId se subjects fetch
-        User teacher = userRepository.findByEmail(email).orElseThrow();
         List<Subject> subjects = subjectRepository.findByTeacherId(teacher.getId());
         return subjects;
     }
@@ -42,11 +46,9 @@ public class SubjectService {
         return subjectRepository.findByStandard(standard);
     }
 
-    public String enrollStudent(String email, Long subjectId, String key) {
+    public String enrollStudent(AuthenticatedUser student, Long subjectId, String key) {
 
-        // 1. Student find
-        User student = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Student not found!"));
+        // 1. Student comes from the authenticated principal
 
         // 2. Subject find
         Subject subject = subjectRepository.findById(subjectId)
@@ -58,7 +60,7 @@ public class SubjectService {
         }
 
         // 4. Already enrolled?
-        boolean exists = enrollmentRepository.existsByStudentIdAndSubjectId(student.getId(), subjectId);
+        boolean exists = enrollmentIndex.isEnrolled(student.getId(), subjectId);
 
         if (exists) {
             return "You are already enrolled in this subject!";
@@ -70,16 +72,19 @@ public class SubjectService {
         e.setSubjectId(subjectId);
 
         enrollmentRepository.save(e);
+        enrollmentIndex.add(student.getId(), subjectId);
+        chatVersions.rosterChanged(subjectId);
+
+        // Open chat sessions re-check their pinned grants
+        chatAccessGuard.invalidate(student.getId());
 
         return "Enrollment successful!";
     }
 
 
-    public List<Subject> getEnrolledSubjects(String email) {
+    public List<Subject> getEnrolledSubjects(AuthenticatedUser student) {
 
-        // 1. Student fetch
-        User student = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Student not found!"));
+        // 1. Student comes from the authenticated principal
 
         // 2. Get enrollment list
         List<Enrollment> enrolled = enrollmentRepository.findByStudentId(student.getId());
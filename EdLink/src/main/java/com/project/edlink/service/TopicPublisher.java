@@ -0,0 +1,59 @@
+package com.project.edlink.service;
+
+import com.project.edlink.config.StompCodecs;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.util.Map;
+
+/**
+ * Sends a broadcast to a subject topic in every encoding someone subscribes to: JSON on the
+ * destination itself, CBOR on its ".cbor" twin. The JSON payload is serialized once by the
+ * broker template; the CBOR one here, and only while the twin has subscribers.
+ */
+@Component
+public class TopicPublisher {
+
+    // Lazy: the broker template is built from WebSocketConfig, whose interceptors lead back here
+    @Lazy
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private StompCodecs stompCodecs;
+
+    public void send(String destination, Object payload) {
+        send(destination, payload, Map.of());
+    }
+
+    /**
+     * @param nativeHeaders extra STOMP headers for the frame, in both encodings
+     */
+    public void send(String destination, Object payload, Map<String, String> nativeHeaders) {
+        messagingTemplate.convertAndSend(destination, payload, headers(nativeHeaders, null));
+        String cborDestination = destination + StompCodecs.CBOR_SUFFIX;
+        byte[] cbor = stompCodecs.encodeFor(cborDestination, payload);
+        if (cbor != null) {
+            messagingTemplate.send(cborDestination,
+                    MessageBuilder.createMessage(cbor, headers(nativeHeaders, StompCodecs.BINARY)));
+        }
+    }
+
+    // A plain header map would be turned into native headers wholesale, content-type included
+    private static MessageHeaders headers(Map<String, String> nativeHeaders, MimeType contentType) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        nativeHeaders.forEach(accessor::setNativeHeader);
+        if (contentType != null) {
+            accessor.setContentType(contentType);
+        }
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
+    }
+}
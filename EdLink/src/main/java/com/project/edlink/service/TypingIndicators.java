@@ -0,0 +1,161 @@
+package com.project.edlink.service;
+
+import com.project.edlink.dto.TypingUpdateDto;
+import com.project.edlink.security.AuthenticatedUser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * "Who's typing" per subject, in memory only: no repository, no JPA.
+ *
+ * A signal puts the user in the subject's set with a deadline of ttl-ms; further signals from
+ * the same user within throttle-ms are ignored. Expired entries are dropped on each
+ * tick, and a subject whose set changed gets one frame with the whole set on
+ * /topic/typing.{subjectId}, so outbound traffic is at most one frame per subject per tick no
+ * matter how many people type. Names are the display names from the token principal; its
+ * getName() is the email, which other students must not see.
+ *
+ * Sets are per replica. In relay mode each replica broadcasts the typists whose sessions it
+ * holds, tagged with its {@link ClusterBus} origin, and the browser merges the sets.
+ */
+@Component
+public class TypingIndicators {
+
+    private final long ttlMillis;
+    private final long throttleMillis;
+
+    @Autowired
+    private TopicPublisher topicPublisher;
+
+    @Autowired
+    private ClusterBus clusterBus;
+
+    private final Map<Long, SubjectTyping> subjects = new ConcurrentHashMap<>();
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder framesSent = new LongAdder();
+
+    public TypingIndicators(@Value("${edlink.chat.typing.ttl-ms:5000}") long ttlMillis,
+                            @Value("${edlink.chat.typing.throttle-ms:1000}") long throttleMillis) {
+        this.ttlMillis = ttlMillis;
+        this.throttleMillis = throttleMillis;
+    }
+
+    /**
+     * Record a typing signal; the caller has already authorized the subject.
+     */
+    public void typing(AuthenticatedUser user, Long subjectId, boolean typing) {
+        long now = System.currentTimeMillis();
+        boolean[] wasThrottled = {false};
+
+        // Per-subject work runs inside compute() so flush() cannot drop a subject mid-update
+        subjects.compute(subjectId, (id, subject) -> {
+            if (subject == null) {
+                if (!typing) {
+                    return null;
+                }
+                subject = new SubjectTyping();
+            }
+
+            Typist existing = subject.typists.get(user.getId());
+            if (!typing) {
+                if (existing != null) {
+                    subject.typists.remove(user.getId());
+                    subject.dirty = true;
+                }
+            } else if (existing != null && now - existing.acceptedAt < throttleMillis) {
+                wasThrottled[0] = true;
+            } else {
+                subject.typists.put(user.getId(), new Typist(user.getDisplayName(), now, now + ttlMillis));
+                // A refresh only moves the deadline, the broadcast set is unchanged
+                subject.dirty |= existing == null;
+            }
+            return subject;
+        });
+
+        if (wasThrottled[0]) {
+            throttled.increment();
+        } else if (typing) {
+            accepted.increment();
+        }
+    }
+
+    @Scheduled(fixedRateString = "${edlink.chat.typing.broadcast-interval-ms:1000}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        for (Long subjectId : subjects.keySet()) {
+            List<TypingUpdateDto.Typist> snapshot = new ArrayList<>();
+            boolean[] changed = {false};
+
+            subjects.computeIfPresent(subjectId, (id, subject) -> {
+                if (subject.typists.values().removeIf(typist -> typist.deadline <= now)) {
+                    subject.dirty = true;
+                }
+                changed[0] = subject.dirty;
+                subject.dirty = false;
+                if (changed[0]) {
+                    subject.typists.forEach((userId, typist) -> snapshot.add(new TypingUpdateDto.Typist(userId, typist.name)));
+                }
+                // Nobody typing and nothing left to tell: forget the subject
+                return subject.typists.isEmpty() && !changed[0] ? null : subject;
+            });
+
+            if (!changed[0]) {
+                continue;
+            }
+            try {
+                topicPublisher.send("/topic/typing." + subjectId, new TypingUpdateDto(subjectId, clusterBus.getOrigin(), snapshot));
+                framesSent.increment();
+            } catch (RuntimeException e) {
+                System.err.println("Typing broadcast failed for subject " + subjectId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public List<Long> typingUserIds(Long subjectId) {
+        List<Long> userIds = new ArrayList<>();
+        subjects.computeIfPresent(subjectId, (id, subject) -> {
+            userIds.addAll(subject.typists.keySet());
+            return subject;
+        });
+        return userIds;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("subjects", subjects.size());
+        stats.put("acceptedSignals", accepted.sum());
+        stats.put("throttledSignals", throttled.sum());
+        stats.put("framesSent", framesSent.sum());
+        return stats;
+    }
+
+    // Only touched inside compute()/computeIfPresent() on the subjects map
+    private static class SubjectTyping {
+        final Map<Long, Typist> typists = new HashMap<>();
+        boolean dirty;
+    }
+
+    private static final class Typist {
+        final String name;
+        final long acceptedAt;
+        final long deadline;
+
+        Typist(String name, long acceptedAt, long deadline) {
+            this.name = name;
+            this.acceptedAt = acceptedAt;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.project.edlink.service;
+
+import com.project.edlink.dto.UserProfile;
+import com.project.edlink.entities.User;
+import com.project.edlink.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded cache of user profiles (id -> name, role, status) for chat assembly.
+ *
+ * Misses are loaded in one projection query that never touches the password hash.
+ * AuthService and AdminService write through {@link #update(User)} whenever they save a user,
+ * so cached names and statuses do not go stale on this replica. In relay mode the change is
+ * also announced on the {@link ClusterBus}, and the other replicas drop their copy and reload
+ * it on the next miss; dropping rather than applying the event keeps them right whatever order
+ * events arrive in. Entries also expire after ttl-ms, which repairs a lost event.
+ */
+@Component
+public class UserDirectory {
+
+    // Object headers, boxed id and the two short role/status strings, roughly
+    private static final long ENTRY_OVERHEAD_BYTES = 150;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ChatVersions chatVersions;
+
+    @Autowired
+    private ClusterBus clusterBus;
+
+    static final String CLUSTER_EVENT = "profile";
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Map<Long, Entry> profiles = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder remoteInvalidations = new LongAdder();
+
+    public UserDirectory(@Value("${edlink.users.directory.max-entries:50000}") int maxEntries,
+                         @Value("${edlink.users.directory.ttl-ms:300000}") long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+    }
+
+    @PostConstruct
+    public void listen() {
+        clusterBus.on(CLUSTER_EVENT, ProfileChanged.class, changed -> {
+            remoteInvalidations.increment();
+            invalidate(changed.userId());
+        });
+    }
+
+    /**
+     * @return profiles for the ids that exist; unknown ids are simply absent from the map
+     */
+    public Map<Long, UserProfile> getAll(Collection<Long> userIds) {
+        long now = System.currentTimeMillis();
+        Map<Long, UserProfile> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long userId : userIds) {
+            Entry entry = profiles.get(userId);
+            if (entry != null && entry.expiresAtMillis() <= now) {
+                profiles.remove(userId, entry);
+                expired.increment();
+                entry = null;
+            }
+            if (entry != null) {
+                result.put(userId, entry.profile());
+            } else if (!result.containsKey(userId)) {
+                missing.add(userId);
+            }
+        }
+        hits.add(result.size());
+        misses.add(missing.size());
+
+        if (!missing.isEmpty()) {
+            for (UserProfile profile : userRepository.findProfilesByIdIn(missing)) {
+                result.put(profile.getId(), profile);
+                put(profile, now);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Write-through after a user has been saved, here and, by invalidation, on the other replicas.
+     */
+    public void update(User user) {
+        if (user.getId() == null) {
+            return;
+        }
+        if (profiles.containsKey(user.getId())) {
+            UserProfile profile = new UserProfile(user.getId(), user.getName(), user.getRole(), user.getStatus());
+            profiles.put(user.getId(), new Entry(profile, System.currentTimeMillis() + ttlMillis));
+        }
+        chatVersions.profilesChanged();
+        clusterBus.publish(CLUSTER_EVENT, new ProfileChanged(user.getId()));
+    }
+
+    private void invalidate(Long userId) {
+        profiles.remove(userId);
+        chatVersions.profilesChanged();
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+
+        long bytes = 0;
+        for (Entry entry : profiles.values()) {
+            String name = entry.profile().getName();
+            bytes += ENTRY_OVERHEAD_BYTES + 2L * (name != null ? name.length() : 0);
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", profiles.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("estimatedBytes", bytes);
+        stats.put("expired", expired.sum());
+        stats.put("remoteInvalidations", remoteInvalidations.sum());
+        return stats;
+    }
+
+    private void put(UserProfile profile, long now) {
+        if (profiles.size() >= maxEntries) {
+            // Full: drop roughly a tenth rather than one entry per insert
+            Iterator<Long> it = profiles.keySet().iterator();
+            for (int i = 0; i < Math.max(1, maxEntries / 10) && it.hasNext(); i++) {
+                it.next();
+                it.remove();
+            }
+        }
+        profiles.put(profile.getId(), new Entry(profile, now + ttlMillis));
+    }
+
+    private record Entry(UserProfile profile, long expiresAtMillis) {
+    }
+
+    record ProfileChanged(Long userId) {
+    }
+}
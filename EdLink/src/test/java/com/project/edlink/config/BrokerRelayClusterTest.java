@@ -0,0 +1,150 @@
+package com.project.edlink.config;
+
+import com.project.edlink.dto.ChatMessageDto;
+import com.project.edlink.service.ChatFanout;
+import com.project.edlink.service.ChatSseHub;
+import com.project.edlink.service.TopicPublisher;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Two replicas' broker relays against one embedded Artemis broker speaking STOMP, the way
+ * edlink.ws.broker=relay runs with RabbitMQ; see {@link RelayNode}. Cross-node latency is
+ * measured by BrokerRelayLatencyBenchmark.
+ */
+class BrokerRelayClusterTest {
+
+    private static final String PROBE = "probe";
+
+    @TempDir
+    Path dataDir;
+
+    private EmbeddedActiveMQ broker;
+    private RelayNode nodeA;
+    private RelayNode nodeB;
+    private final Queue<String> probesOnB = new ConcurrentLinkedQueue<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        int port = RelayNode.freePort();
+        broker = RelayNode.startBroker(dataDir, port);
+
+        nodeA = new RelayNode("0-a", port);
+        nodeB = new RelayNode("1-b", port);
+        RelayNode.awaitTrue(nodeA.relay::isBrokerAvailable);
+        RelayNode.awaitTrue(nodeB.relay::isBrokerAvailable);
+
+        // The system SUBSCRIBE has no receipt: publish until B's subscription is live
+        nodeB.clusterBus.on(PROBE, String.class, probesOnB::add);
+        RelayNode.awaitTrue(() -> {
+            nodeA.clusterBus.publish(PROBE, "ping");
+            return !probesOnB.isEmpty();
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (nodeA != null) {
+            nodeA.relay.stop();
+        }
+        if (nodeB != null) {
+            nodeB.relay.stop();
+        }
+        broker.stop();
+    }
+
+    @Test
+    void browserOnOneReplicaGetsTopicBroadcastFromTheOther() {
+        nodeB.connectAndSubscribe("browser-1", "/topic/chat.5");
+
+        new SimpMessagingTemplate(nodeA.brokerChannel).send("/topic/chat.5",
+                MessageBuilder.withPayload("hello".getBytes(StandardCharsets.UTF_8)).build());
+
+        Message<?> frame = nodeB.awaitFrame(StompCommand.MESSAGE);
+        StompHeaderAccessor headers = StompHeaderAccessor.wrap(frame);
+        assertEquals("browser-1", headers.getSessionId());
+        assertEquals("sub-0", headers.getSubscriptionId());
+        assertEquals("hello", new String((byte[]) frame.getPayload(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void clusterEventsReachTheOtherReplicaButNotTheSender() {
+        Queue<String> probesOnA = new ConcurrentLinkedQueue<>();
+        nodeA.clusterBus.on(PROBE, String.class, probesOnA::add);
+        probesOnB.clear();
+
+        nodeA.clusterBus.publish(PROBE, "from-a");
+        nodeB.clusterBus.publish(PROBE, "from-b");
+
+        RelayNode.awaitTrue(() -> probesOnA.contains("from-b") && probesOnB.contains("from-a"));
+        assertTrue(probesOnA.stream().noneMatch(probe -> probe.equals("from-a") || probe.equals("ping")));
+        assertTrue(probesOnB.stream().noneMatch("from-b"::equals));
+    }
+
+    @Test
+    void sseStreamOnOneReplicaGetsChatSentOnTheOther() {
+        ChatSseHub sseOnB = mock(ChatSseHub.class);
+        ChatFanout fanoutB = fanout(nodeB, sseOnB);
+        fanoutB.start();
+        ChatFanout fanoutA = fanout(nodeA, mock(ChatSseHub.class));
+
+        fanoutA.publish(new ChatMessageDto(42L, 5L, 7L, "Teacher", "TEACHER", "hello", null, false));
+
+        verify(sseOnB, timeout(5_000)).broadcast(argThat(message ->
+                message.getId() == 42L && message.getSubjectId() == 5L && "hello".equals(message.getContent())));
+    }
+
+    @Test
+    void cborSubscriberOnOneReplicaMakesTheOtherEncode() {
+        StompCodecs codecsA = codecs(nodeA);
+        StompCodecs codecsB = codecs(nodeB);
+        Map<String, Object> session = new ConcurrentHashMap<>(Map.of(StompCodecs.SESSION_ATTRIBUTE, "cbor"));
+
+        // A to B: setUp only waited for B's system subscription
+        codecsA.subscribed(session, "sub-0", "/topic/chat.5.cbor");
+        RelayNode.awaitTrue(() -> codecsB.hasSubscribers("/topic/chat.5.cbor"));
+        assertFalse(codecsB.hasSubscribers("/topic/chat.6.cbor"));
+
+        codecsA.disconnected(session);
+        RelayNode.awaitTrue(() -> !codecsB.hasSubscribers("/topic/chat.5.cbor"));
+    }
+
+    private static StompCodecs codecs(RelayNode node) {
+        StompCodecs codecs = new StompCodecs(true, 15_000);
+        ReflectionTestUtils.setField(codecs, "clusterBus", node.clusterBus);
+        codecs.listen();
+        return codecs;
+    }
+
+    private static ChatFanout fanout(RelayNode node, ChatSseHub chatSseHub) {
+        ChatFanout fanout = new ChatFanout(false, 5, 20, 60_000);
+        ReflectionTestUtils.setField(fanout, "topicPublisher", mock(TopicPublisher.class));
+        ReflectionTestUtils.setField(fanout, "chatSseHub", chatSseHub);
+        ReflectionTestUtils.setField(fanout, "clusterBus", node.clusterBus);
+        return fanout;
+    }
+}
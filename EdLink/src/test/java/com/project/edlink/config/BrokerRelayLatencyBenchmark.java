@@ -0,0 +1,161 @@
+package com.project.edlink.config;
+
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cross-replica latency over the STOMP broker relay: a topic broadcast sent on replica A until
+ * the frame for a browser subscribed on replica B leaves B's relay, and a ClusterBus event from
+ * A until B's listener runs. 500 measured messages each, paced at one every 2 ms, after 200
+ * warm-up messages. Run with: mvn -Pbenchmark test
+ *
+ * The broker is the embedded Artemis from BrokerRelayClusterTest on loopback, so this is the
+ * relay and broker cost without a network hop; the socket write to the browser is not part of
+ * it. Both replicas share one JVM, so send and receive times come from the same clock. The
+ * numbers are only comparable on the same machine.
+ */
+class BrokerRelayLatencyBenchmark {
+
+    private static final int WARMUP_MESSAGES = 200;
+    private static final int MEASURED_MESSAGES = 500;
+    private static final long PACE_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final String LATENCY_EVENT = "latency";
+
+    // Loopback with one hop through the broker; anything near this is a stall, not latency
+    private static final long P99_LIMIT_MICROS = 50_000;
+
+    @TempDir
+    Path dataDir;
+
+    private EmbeddedActiveMQ broker;
+    private RelayNode nodeA;
+    private RelayNode nodeB;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        int port = RelayNode.freePort();
+        broker = RelayNode.startBroker(dataDir, port);
+        nodeA = new RelayNode("0-a", port);
+        nodeB = new RelayNode("1-b", port);
+        RelayNode.awaitTrue(nodeA.relay::isBrokerAvailable);
+        RelayNode.awaitTrue(nodeB.relay::isBrokerAvailable);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        nodeA.relay.stop();
+        nodeB.relay.stop();
+        broker.stop();
+    }
+
+    @Test
+    void sendToReceiveAcrossTheRelay() {
+        nodeB.connectAndSubscribe("browser-1", "/topic/chat.5");
+        Recorder topic = new Recorder();
+        nodeB.onClientFrame = message -> {
+            if (StompCommand.MESSAGE.equals(StompHeaderAccessor.wrap(message).getCommand())) {
+                topic.received(Long.parseLong(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8)));
+            }
+        };
+        SimpMessagingTemplate templateA = new SimpMessagingTemplate(nodeA.brokerChannel);
+        long[] topicMicros = run(topic, sentNanos -> templateA.send("/topic/chat.5",
+                MessageBuilder.withPayload(Long.toString(sentNanos).getBytes(StandardCharsets.UTF_8)).build()));
+
+        Recorder event = new Recorder();
+        nodeB.clusterBus.on(LATENCY_EVENT, Long.class, event::received);
+        // The system SUBSCRIBE has no receipt: publish until B's subscription is live
+        RelayNode.awaitTrue(() -> {
+            nodeA.clusterBus.publish(LATENCY_EVENT, System.nanoTime());
+            return event.count() > 0;
+        });
+        long[] eventMicros = run(event, sentNanos -> nodeA.clusterBus.publish(LATENCY_EVENT, sentNanos));
+
+        StringBuilder table = new StringBuilder(String.format("%n%-28s %10s %10s %10s %10s%n",
+                "A -> broker -> B", "messages", "p50 us", "p99 us", "max us"));
+        table.append(row("topic broadcast", topicMicros));
+        table.append(row("cluster event", eventMicros));
+        System.out.println(table);
+
+        assertTrue(percentile(topicMicros, 99) < P99_LIMIT_MICROS, "topic p99 " + percentile(topicMicros, 99) + " us");
+        assertTrue(percentile(eventMicros, 99) < P99_LIMIT_MICROS, "event p99 " + percentile(eventMicros, 99) + " us");
+    }
+
+    /**
+     * Warm-up, then the measured messages; waits for every one of them to arrive.
+     */
+    private static long[] run(Recorder recorder, LongConsumer send) {
+        int warmupTarget = recorder.count() + WARMUP_MESSAGES;
+        pacedSend(WARMUP_MESSAGES, send);
+        RelayNode.awaitTrue(() -> recorder.count() >= warmupTarget);
+
+        recorder.start(MEASURED_MESSAGES);
+        pacedSend(MEASURED_MESSAGES, send);
+        RelayNode.awaitTrue(() -> recorder.count() >= MEASURED_MESSAGES);
+        long[] micros = recorder.samples();
+        Arrays.sort(micros);
+        return micros;
+    }
+
+    private static void pacedSend(int messages, LongConsumer send) {
+        long next = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            send.accept(System.nanoTime());
+            next += PACE_NANOS;
+            LockSupport.parkNanos(next - System.nanoTime());
+        }
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)];
+    }
+
+    private static String row(String path, long[] sorted) {
+        return String.format("%-28s %10d %10d %10d %10d%n", path, sorted.length,
+                percentile(sorted, 50), percentile(sorted, 99), sorted[sorted.length - 1]);
+    }
+
+    /**
+     * Latencies of the messages that arrive after start(); arrivals are on the relay's I/O thread.
+     */
+    private static final class Recorder {
+        private long[] micros = new long[0];
+        private int count;
+
+        synchronized void start(int capacity) {
+            micros = new long[capacity];
+            count = 0;
+        }
+
+        synchronized void received(long sentNanos) {
+            long elapsed = System.nanoTime() - sentNanos;
+            if (count < micros.length) {
+                micros[count] = elapsed / 1_000;
+            }
+            count++;
+        }
+
+        synchronized int count() {
+            return count;
+        }
+
+        synchronized long[] samples() {
+            return Arrays.copyOf(micros, Math.min(count, micros.length));
+        }
+    }
+}
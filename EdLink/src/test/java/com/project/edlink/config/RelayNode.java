@@ -0,0 +1,128 @@
+package com.project.edlink.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.edlink.service.ClusterBus;
+import org.apache.activemq.artemis.core.config.Configuration;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * One replica for the relay tests: its relay handler, the channels around it, and its cluster
+ * bus. Not a whole application context; what reaches the replica's browsers is whatever the
+ * relay writes to its client outbound channel.
+ */
+final class RelayNode {
+
+    final ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+    final ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+    final Queue<Message<?>> toClients = new ConcurrentLinkedQueue<>();
+    final StompBrokerRelayMessageHandler relay;
+    final ClusterBus clusterBus = new ClusterBus("relay");
+
+    // Called on the relay's I/O thread for every frame sent to this replica's browsers
+    volatile Consumer<Message<?>> onClientFrame = message -> { };
+
+    RelayNode(String origin, int port) {
+        ReflectionTestUtils.setField(clusterBus, "origin", origin);
+        ReflectionTestUtils.setField(clusterBus, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(clusterBus, "messagingTemplate", new SimpMessagingTemplate(brokerChannel));
+
+        relay = new StompBrokerRelayMessageHandler(clientInbound, (message, timeout) -> {
+            onClientFrame.accept(message);
+            return toClients.add(message);
+        }, brokerChannel, List.of("/topic", "/queue"));
+        relay.setRelayHost("127.0.0.1");
+        relay.setRelayPort(port);
+        relay.setSystemLogin("guest");
+        relay.setSystemPasscode("guest");
+        relay.setClientLogin("guest");
+        relay.setClientPasscode("guest");
+        // What WebSocketConfig's post-processor adds in relay mode
+        relay.setSystemSubscriptions(Map.of(ClusterBus.DESTINATION, clusterBus::receive));
+        relay.start();
+    }
+
+    /**
+     * Connect a browser session and subscribe it to a destination, waiting for the receipt.
+     */
+    void connectAndSubscribe(String sessionId, String destination) {
+        StompHeaderAccessor connect = StompHeaderAccessor.create(StompCommand.CONNECT);
+        connect.setSessionId(sessionId);
+        connect.setAcceptVersion("1.2");
+        connect.setHeartbeat(0, 0);
+        relay.handleMessage(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+        awaitFrame(StompCommand.CONNECTED);
+
+        StompHeaderAccessor subscribe = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        subscribe.setSessionId(sessionId);
+        subscribe.setSubscriptionId("sub-0");
+        subscribe.setDestination(destination);
+        subscribe.setReceipt("r-1");
+        relay.handleMessage(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+        awaitFrame(StompCommand.RECEIPT);
+    }
+
+    Message<?> awaitFrame(StompCommand command) {
+        Predicate<Message<?>> matches = message -> command.equals(StompHeaderAccessor.wrap(message).getCommand());
+        awaitTrue(() -> toClients.stream().anyMatch(matches));
+        return toClients.stream().filter(matches).findFirst().orElseThrow();
+    }
+
+    static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Embedded Artemis speaking STOMP, the way edlink.ws.broker=relay runs with RabbitMQ.
+     */
+    static EmbeddedActiveMQ startBroker(Path dataDir, int port) throws Exception {
+        Configuration config = new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .setJournalDirectory(dataDir.resolve("journal").toString())
+                .setBindingsDirectory(dataDir.resolve("bindings").toString())
+                .setPagingDirectory(dataDir.resolve("paging").toString())
+                .setLargeMessagesDirectory(dataDir.resolve("large").toString())
+                .addAcceptorConfiguration("stomp", "tcp://127.0.0.1:" + port
+                        + "?protocols=STOMP;anycastPrefix=/queue/;multicastPrefix=/topic/");
+        EmbeddedActiveMQ broker = new EmbeddedActiveMQ().setConfiguration(config);
+        broker.start();
+        return broker;
+    }
+}
@@ -0,0 +1,195 @@
+package com.project.edlink.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Fan-out latency of healthy sessions while more clients stall than the outbound pool has
+ * threads. The outbound side is built the way Spring builds it: an executor channel with the
+ * guard's interceptor, and each session behind the guard's decorator and Spring's concurrent
+ * session decorator. Only the sockets are fakes. Without the stall budget every outbound thread
+ * would sit in a stalled write until evict-ms, and healthy sessions would wait just as long.
+ */
+class SlowConsumerGuardTest {
+
+    private static final int OUTBOUND_THREADS = 4;
+    private static final int MAX_STALLED = 2;
+    private static final int HEALTHY = 20;
+    private static final int STALLED = 8;
+    private static final int MESSAGES = 200;
+    private static final long EVICT_MILLIS = 5_000;
+
+    private final Map<String, WebSocketSession> connected = new ConcurrentHashMap<>();
+    private final List<CountDownLatch> stalls = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> healthyLatencies = Collections.synchronizedList(new ArrayList<>());
+    private final LongAdder healthyFrames = new LongAdder();
+
+    private SlowConsumerGuard guard;
+    private ThreadPoolTaskExecutor outboundPool;
+    private ExecutorSubscribableChannel outbound;
+    private ScheduledExecutorService checker;
+
+    private void start(long evictMillis, int maxStalled) {
+        guard = new SlowConsumerGuard(20, evictMillis, maxStalled);
+
+        outboundPool = new ThreadPoolTaskExecutor();
+        outboundPool.setCorePoolSize(OUTBOUND_THREADS);
+        outboundPool.setMaxPoolSize(OUTBOUND_THREADS);
+        outboundPool.initialize();
+
+        outbound = new ExecutorSubscribableChannel(outboundPool);
+        outbound.addInterceptor(guard.outboundInterceptor());
+        outbound.subscribe(message -> {
+            String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+            try {
+                connected.get(sessionId).sendMessage(new TextMessage(String.valueOf(message.getPayload())));
+            } catch (IOException e) {
+                // closed by the guard
+            }
+        });
+
+        // The @Scheduled check, at a test-sized interval
+        checker = Executors.newSingleThreadScheduledExecutor();
+        checker.scheduleAtFixedRate(guard::evictStalled, 5, 5, TimeUnit.MILLISECONDS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        checker.shutdownNow();
+        stalls.forEach(CountDownLatch::countDown);
+        outboundPool.shutdown();
+        guard.shutdown();
+    }
+
+    @Test
+    void healthySessionsKeepTheirLatencyWhileMoreClientsStallThanThereAreThreads() throws Exception {
+        start(EVICT_MILLIS, MAX_STALLED);
+        for (int i = 0; i < STALLED; i++) {
+            connect("stalled-" + i, true);
+        }
+        for (int i = 0; i < HEALTHY; i++) {
+            connect("healthy-" + i, false);
+        }
+
+        for (int m = 0; m < MESSAGES; m++) {
+            long publishedAt = System.nanoTime();
+            for (String sessionId : connected.keySet()) {
+                SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+                accessor.setSessionId(sessionId);
+                accessor.setDestination("/topic/chat.1");
+                outbound.send(MessageBuilder.createMessage(publishedAt, accessor.getMessageHeaders()));
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(2));
+        }
+
+        awaitTrue(() -> healthyFrames.sum() == (long) HEALTHY * MESSAGES);
+
+        List<Long> sorted;
+        synchronized (healthyLatencies) {
+            sorted = new ArrayList<>(healthyLatencies);
+        }
+        Collections.sort(sorted);
+        long p99Millis = TimeUnit.NANOSECONDS.toMillis(sorted.get(sorted.size() * 99 / 100));
+        long maxMillis = TimeUnit.NANOSECONDS.toMillis(sorted.get(sorted.size() - 1));
+
+        assertTrue(maxMillis < EVICT_MILLIS / 2, "a healthy frame waited " + maxMillis + " ms");
+        assertTrue(p99Millis < 1_000, "healthy p99 was " + p99Millis + " ms");
+        // All but the budget were closed early, off the scheduler thread
+        awaitTrue(() -> ((Number) guard.getStats().get("evictedOverStallBudget")).longValue() == STALLED - MAX_STALLED);
+        assertEquals(0L, guard.getStats().get("failedCloses"));
+    }
+
+    @Test
+    void closeThatThrowsIsCountedAndDoesNotStopTheCheck() throws Exception {
+        // Budget large enough that only evict-ms closes anything here
+        start(100, 10);
+        WebSocketSession first = connect("stalled-0", true);
+        doAnswer(inv -> {
+            throw new IllegalStateException("container already tore the socket down");
+        }).when(first).close(any(CloseStatus.class));
+        connect("stalled-1", true);
+        connect("stalled-2", true);
+
+        for (String sessionId : List.of("stalled-0", "stalled-1", "stalled-2")) {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setSessionId(sessionId);
+            outbound.send(MessageBuilder.createMessage(System.nanoTime(), accessor.getMessageHeaders()));
+        }
+
+        awaitTrue(() -> ((Number) guard.getStats().get("evictedSessions")).longValue() == 3);
+        awaitTrue(() -> ((Number) guard.getStats().get("failedCloses")).longValue() == 1);
+    }
+
+    private WebSocketSession connect(String id, boolean stalls) throws Exception {
+        WebSocketSession socket = mock(WebSocketSession.class);
+        CountDownLatch closed = new CountDownLatch(1);
+        this.stalls.add(closed);
+        when(socket.getId()).thenReturn(id);
+        when(socket.isOpen()).thenAnswer(inv -> closed.getCount() > 0);
+        doAnswer(inv -> {
+            closed.countDown();
+            return null;
+        }).when(socket).close(any(CloseStatus.class));
+        doAnswer(inv -> {
+            if (stalls) {
+                // A client that stopped reading: the write returns once the socket is closed
+                closed.await();
+            }
+            if (closed.getCount() == 0) {
+                throw new IOException("socket closed");
+            }
+            TextMessage frame = inv.getArgument(0);
+            healthyLatencies.add(System.nanoTime() - Long.parseLong(frame.getPayload()));
+            healthyFrames.increment();
+            return null;
+        }).when(socket).sendMessage(any());
+
+        WebSocketHandler stompHandler = mock(WebSocketHandler.class);
+        doAnswer(inv -> {
+            WebSocketSession tracked = inv.getArgument(0);
+            connected.put(id, new ConcurrentWebSocketSessionDecorator(tracked, 10_000, 512 * 1024));
+            return null;
+        }).when(stompHandler).afterConnectionEstablished(any());
+        guard.decoratorFactory().decorate(stompHandler).afterConnectionEstablished(socket);
+        return socket;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+        }
+    }
+}
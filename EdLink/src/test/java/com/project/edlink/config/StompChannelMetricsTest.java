@@ -0,0 +1,47 @@
+package com.project.edlink.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StompChannelMetricsTest {
+
+    @Test
+    void subjectIdsFoldIntoOneKey() {
+        assertEquals("/topic/chat.{id}", StompChannelMetrics.destinationOf(message("/topic/chat.42")));
+        assertEquals("/topic/typing.{id}.cbor", StompChannelMetrics.destinationOf(message("/topic/typing.7.cbor")));
+        assertEquals("/app/chat.send", StompChannelMetrics.destinationOf(message("/app/chat.send")));
+    }
+
+    @Test
+    void madeUpDestinationsShareTheOtherKey() {
+        StompChannelMetrics metrics = new StompChannelMetrics();
+        ExecutorChannelInterceptor interceptor = metrics.latencyInterceptor("inbound");
+
+        for (int i = 0; i < 10_000; i++) {
+            Message<?> message = message("/app/" + UUID.randomUUID());
+            interceptor.beforeHandle(message, null, null);
+            interceptor.afterMessageHandled(message, null, null, null);
+        }
+        Message<?> chat = message("/app/chat.send");
+        interceptor.beforeHandle(chat, null, null);
+        interceptor.afterMessageHandled(chat, null, null, null);
+
+        // count, mean and max for "other" and for chat.send, nothing else
+        assertEquals(6, metrics.getStats().size());
+        assertEquals(10_000L, metrics.getStats().get("inbound other.count"));
+    }
+
+    private static Message<byte[]> message(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,135 @@
+package com.project.edlink.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.edlink.dto.ChatMessageDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bytes on the wire and serialization CPU per 1k chat messages: JSON over /ws (SockJS), JSON
+ * over /ws-binary, CBOR over /ws-binary, for single-message frames and for the 20-message
+ * arrays that batching sends. Run with: mvn -Pbenchmark test
+ *
+ * Wire bytes are the STOMP MESSAGE frame as Spring encodes it (headers included), inside the
+ * SockJS "a[...]" text frame where that applies, plus the WebSocket frame header. CPU is
+ * thread CPU time for serializing the payloads only, the part that differs between the
+ * encodings; each is the median of the measured rounds after a warm-up.
+ */
+class StompCodecsBenchmark {
+
+    private static final int MESSAGES = 1_000;
+    private static final int[] FRAME_SIZES = {1, 20};
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURED_ROUNDS = 50;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final ObjectMapper cbor = StompCodecs.cborMapper();
+    private final StompEncoder stompEncoder = new StompEncoder();
+
+    @Test
+    void bytesAndCpuPerThousandMessages() throws Exception {
+        List<ChatMessageDto> messages = new ArrayList<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            messages.add(message(i));
+        }
+
+        StringBuilder table = new StringBuilder(String.format("%n%-24s %-6s %14s %14s %14s%n",
+                "encoding", "msgs", "payload B/1k", "wire B/1k", "cpu us/1k"));
+        for (int frameSize : FRAME_SIZES) {
+            List<Object> frames = frames(messages, frameSize);
+
+            long sockJs = wireBytes(frames, json, true);
+            long jsonRaw = wireBytes(frames, json, false);
+            long cborRaw = wireBytes(frames, cbor, false);
+            table.append(row("json /ws (SockJS)", frameSize, payloadBytes(frames, json), sockJs, cpuMicros(frames, json)));
+            table.append(row("json /ws-binary", frameSize, payloadBytes(frames, json), jsonRaw, cpuMicros(frames, json)));
+            table.append(row("cbor /ws-binary", frameSize, payloadBytes(frames, cbor), cborRaw, cpuMicros(frames, cbor)));
+
+            // Sanity: the binary encoding is the smaller one on the wire
+            assertTrue(cborRaw < jsonRaw && cborRaw < sockJs);
+        }
+        System.out.println(table);
+    }
+
+    private long payloadBytes(List<Object> frames, ObjectMapper mapper) throws Exception {
+        long bytes = 0;
+        for (Object frame : frames) {
+            bytes += mapper.writeValueAsBytes(frame).length;
+        }
+        return bytes;
+    }
+
+    private long wireBytes(List<Object> frames, ObjectMapper mapper, boolean sockJs) throws Exception {
+        long bytes = 0;
+        for (int i = 0; i < frames.size(); i++) {
+            byte[] payload = mapper.writeValueAsBytes(frames.get(i));
+            StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.MESSAGE);
+            headers.setDestination(mapper == cbor ? "/topic/chat.12.cbor" : "/topic/chat.12");
+            headers.setSubscriptionId("sub-0");
+            headers.setMessageId("3f2a9c1e-5d6b-7a48-9e0f-1b2c3d4e5f60-42");
+            headers.setContentType(mapper == cbor ? StompCodecs.BINARY : MimeTypeUtils.APPLICATION_JSON);
+            headers.setContentLength(payload.length);
+            headers.setNativeHeader("seq", "m3x9k2.1a:" + (i + 1));
+            byte[] stomp = stompEncoder.encode(MessageBuilder.createMessage(payload, headers.getMessageHeaders()));
+            int length = stomp.length;
+            if (sockJs) {
+                // SockJS sends text frames as a JSON array of escaped strings
+                String text = new String(stomp, StandardCharsets.UTF_8);
+                length = ("a" + json.writeValueAsString(new String[]{text})).getBytes(StandardCharsets.UTF_8).length;
+            }
+            // Unmasked server frame: 2-byte header, 4 past 125 bytes, 10 past 64 KB
+            bytes += length + (length < 126 ? 2 : length < 65_536 ? 4 : 10);
+        }
+        return bytes;
+    }
+
+    private long cpuMicros(List<Object> frames, ObjectMapper mapper) throws Exception {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            payloadBytes(frames, mapper);
+        }
+        long[] rounds = new long[MEASURED_ROUNDS];
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            long start = THREADS.getCurrentThreadCpuTime();
+            payloadBytes(frames, mapper);
+            rounds[round] = THREADS.getCurrentThreadCpuTime() - start;
+        }
+        Arrays.sort(rounds);
+        return rounds[MEASURED_ROUNDS / 2] / 1000;
+    }
+
+    private static List<Object> frames(List<ChatMessageDto> messages, int frameSize) {
+        if (frameSize == 1) {
+            return new ArrayList<>(messages);
+        }
+        List<Object> frames = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i += frameSize) {
+            frames.add(messages.subList(i, Math.min(i + frameSize, messages.size())));
+        }
+        return frames;
+    }
+
+    private static String row(String encoding, int frameSize, long payload, long wire, long cpu) {
+        return String.format("%-24s %-6d %14d %14d %14d%n", encoding, frameSize, payload, wire, cpu);
+    }
+
+    private static ChatMessageDto message(long id) {
+        return new ChatMessageDto(7_000_000_000L + id, 12L, 300L + id % 40, "Student " + id % 40, "STUDENT",
+                "Is question " + id + " part of the midterm?", Instant.ofEpochSecond(1_760_000_000L + id).toString(), false);
+    }
+}
@@ -0,0 +1,249 @@
+package com.project.edlink.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.edlink.dto.ChatMessageDto;
+import com.project.edlink.security.AuthenticatedUser;
+import com.project.edlink.security.ChatAccessGuard;
+import com.project.edlink.security.ChatSubscriptionInterceptor;
+import com.project.edlink.service.ClusterBus;
+import com.project.edlink.service.TopicPublisher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * CBOR negotiation, the ".cbor" subscription counts, and what TopicPublisher sends for them.
+ * Bytes and CPU per 1k messages are in StompCodecsBenchmark.
+ */
+class StompCodecsTest {
+
+    private static final String CHAT = "/topic/chat.12";
+    private static final String CHAT_CBOR = CHAT + StompCodecs.CBOR_SUFFIX;
+
+    private StompCodecs codecs;
+    private ChatSubscriptionInterceptor subscriptions;
+    private ChannelInterceptor tracker;
+    private SimpMessagingTemplate messagingTemplate;
+    private TopicPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        codecs = new StompCodecs(true, 15_000);
+        ReflectionTestUtils.setField(codecs, "clusterBus", new ClusterBus("simple"));
+        codecs.listen();
+        tracker = codecs.subscriptionTracker();
+
+        subscriptions = new ChatSubscriptionInterceptor();
+        ReflectionTestUtils.setField(subscriptions, "chatAccessGuard", mock(ChatAccessGuard.class));
+
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        publisher = new TopicPublisher();
+        ReflectionTestUtils.setField(publisher, "messagingTemplate", messagingTemplate);
+        ReflectionTestUtils.setField(publisher, "stompCodecs", codecs);
+    }
+
+    @Test
+    void cborArraysRoundTrip() throws Exception {
+        ChatMessageDto message = message(42);
+
+        ChatMessageDto decoded = StompCodecs.cborMapper().readValue(StompCodecs.toCbor(message), ChatMessageDto.class);
+
+        assertEquals(message.getId(), decoded.getId());
+        assertEquals(message.getSenderName(), decoded.getSenderName());
+        assertEquals(message.getContent(), decoded.getContent());
+        assertEquals(message.getCreatedAt(), decoded.getCreatedAt());
+    }
+
+    @Test
+    void cborFramesAreSmallerThanJson() throws Exception {
+        ObjectMapper json = new ObjectMapper();
+        long jsonBytes = 0;
+        long cborBytes = 0;
+        for (int i = 0; i < 1_000; i++) {
+            jsonBytes += json.writeValueAsBytes(message(i)).length;
+            cborBytes += StompCodecs.toCbor(message(i)).length;
+        }
+        assertTrue(cborBytes < jsonBytes * 0.7, "cbor " + cborBytes + " vs json " + jsonBytes);
+    }
+
+    @Test
+    void onlyRawWebSocketSessionsNegotiateCbor() {
+        Map<String, Object> sockJs = new ConcurrentHashMap<>();
+        codecs.negotiate(connect(sockJs, "cbor"));
+        assertFalse(StompCodecs.wantsCbor(sockJs));
+
+        Map<String, Object> raw = rawSession();
+        codecs.negotiate(connect(raw, null));
+        assertFalse(StompCodecs.wantsCbor(raw));
+
+        codecs.negotiate(connect(raw, "cbor"));
+        assertTrue(StompCodecs.wantsCbor(raw));
+
+        Map<String, Object> disabled = rawSession();
+        new StompCodecs(false, 15_000).negotiate(connect(disabled, "cbor"));
+        assertFalse(StompCodecs.wantsCbor(disabled));
+    }
+
+    @Test
+    void cborSessionIsMovedToTheTwinAndOnlyThenIsCborEncoded() {
+        ChatMessageDto message = message(1);
+
+        // Nobody on the twin yet: JSON only
+        publisher.send(CHAT, message);
+        verify(messagingTemplate).convertAndSend(eq(CHAT), eq(message), any(Map.class));
+        verify(messagingTemplate, never()).send(anyString(), any(Message.class));
+
+        Map<String, Object> session = rawSession();
+        codecs.negotiate(connect(session, "cbor"));
+        Message<?> subscribe = inbound(subscribe(session, "sub-0", CHAT));
+        assertEquals(CHAT_CBOR, SimpMessageHeaderAccessor.getDestination(subscribe.getHeaders()));
+
+        publisher.send(CHAT, message, Map.of("seq", "e:1"));
+        @SuppressWarnings("rawtypes")
+        ArgumentCaptor<Message> sent = ArgumentCaptor.forClass(Message.class);
+        verify(messagingTemplate).send(eq(CHAT_CBOR), sent.capture());
+        assertArrayEquals(StompCodecs.toCbor(message), (byte[]) sent.getValue().getPayload());
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(sent.getValue());
+        assertEquals(StompCodecs.BINARY, headers.getContentType());
+        assertEquals("e:1", headers.getFirstNativeHeader("seq"));
+
+        assertEquals(1L, codecs.getStats().get("skippedFrames"));
+        assertEquals(1L, codecs.getStats().get("cborFrames"));
+    }
+
+    @Test
+    void jsonSessionCannotSubscribeToABinaryTopic() {
+        Map<String, Object> session = new ConcurrentHashMap<>();
+        assertThrows(AccessDeniedException.class, () -> inbound(subscribe(session, "sub-0", CHAT_CBOR)));
+        assertFalse(codecs.hasSubscribers(CHAT_CBOR));
+    }
+
+    @Test
+    void unsubscribeAndRepeatedDisconnectReleaseEachSubscriptionOnce() {
+        Map<String, Object> first = cborSession();
+        Map<String, Object> second = cborSession();
+        inbound(subscribe(first, "sub-0", CHAT));
+        inbound(subscribe(first, "sub-1", "/topic/presence.12"));
+        inbound(subscribe(second, "sub-0", CHAT));
+        assertEquals(3, codecs.getStats().get("localSubscriptions"));
+
+        inbound(frame(StompCommand.UNSUBSCRIBE, first, "sub-1", null));
+        assertFalse(codecs.hasSubscribers("/topic/presence.12.cbor"));
+
+        // The client's DISCONNECT, then the one Spring sends when the socket closes
+        inbound(frame(StompCommand.DISCONNECT, first, null, null));
+        inbound(frame(StompCommand.DISCONNECT, first, null, null));
+        assertTrue(codecs.hasSubscribers(CHAT_CBOR));
+
+        inbound(frame(StompCommand.DISCONNECT, second, null, null));
+        assertFalse(codecs.hasSubscribers(CHAT_CBOR));
+        assertEquals(0, codecs.getStats().get("localDestinations"));
+    }
+
+    @Test
+    void subscribeHandledAfterDisconnectIsNotCounted() {
+        Map<String, Object> session = cborSession();
+        inbound(frame(StompCommand.DISCONNECT, session, null, null));
+        inbound(subscribe(session, "sub-0", CHAT));
+        assertFalse(codecs.hasSubscribers(CHAT_CBOR));
+    }
+
+    @Test
+    void otherReplicasInterestExpiresWithoutADigest() {
+        codecs.remoteInterest("1-b", new StompCodecs.Interest(Set.of(CHAT_CBOR)));
+        assertTrue(codecs.hasSubscribers(CHAT_CBOR));
+
+        // Each event is the sender's whole set
+        codecs.remoteInterest("1-b", new StompCodecs.Interest(Set.of()));
+        assertFalse(codecs.hasSubscribers(CHAT_CBOR));
+
+        // A digest interval of 0: the entry is stale as soon as it lands
+        StompCodecs noDigest = new StompCodecs(true, 0);
+        noDigest.remoteInterest("1-b", new StompCodecs.Interest(Set.of(CHAT_CBOR)));
+        assertFalse(noDigest.hasSubscribers(CHAT_CBOR));
+    }
+
+    @Test
+    void nothingIsEncodedWhileCborIsDisabled() {
+        StompCodecs disabled = new StompCodecs(false, 15_000);
+        assertNull(disabled.encodeFor(CHAT_CBOR, message(1)));
+    }
+
+    // The inbound interceptors in WebSocketConfig's order
+    private Message<?> inbound(Message<?> message) {
+        Message<?> checked = subscriptions.preSend(message, null);
+        return tracker.preSend(checked, null);
+    }
+
+    private Map<String, Object> cborSession() {
+        Map<String, Object> session = rawSession();
+        codecs.negotiate(connect(session, "cbor"));
+        return session;
+    }
+
+    private static Map<String, Object> rawSession() {
+        Map<String, Object> session = new ConcurrentHashMap<>();
+        session.put(StompCodecs.RAW_TRANSPORT_ATTRIBUTE, Boolean.TRUE);
+        return session;
+    }
+
+    private static StompHeaderAccessor connect(Map<String, Object> session, String codec) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionAttributes(session);
+        if (codec != null) {
+            accessor.setNativeHeader(StompCodecs.CONNECT_HEADER, codec);
+        }
+        return accessor;
+    }
+
+    private static Message<byte[]> subscribe(Map<String, Object> session, String subscriptionId, String destination) {
+        return frame(StompCommand.SUBSCRIBE, session, subscriptionId, destination);
+    }
+
+    private static Message<byte[]> frame(StompCommand command, Map<String, Object> session,
+                                         String subscriptionId, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId("session-" + System.identityHashCode(session));
+        accessor.setSessionAttributes(session);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        accessor.setUser(new UsernamePasswordAuthenticationToken(
+                new AuthenticatedUser(300L, "asha@example.com", "Asha", "STUDENT"), null, List.of()));
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static ChatMessageDto message(long id) {
+        return new ChatMessageDto(7_000_000_000L + id, 12L, 300L + id % 40, "Student " + id % 40, "STUDENT",
+                "Is question " + id + " part of the midterm?", Instant.ofEpochSecond(1_760_000_000L + id).toString(), false);
+    }
+}
@@ -0,0 +1,99 @@
+package com.project.edlink.entities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeOrderedIdGeneratorTest {
+
+    @Test
+    void idsAreUniqueAndIncreasingAcrossThreads() throws Exception {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(3, System::currentTimeMillis);
+        int threads = 8;
+        int perThread = 100_000;
+
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    long previous = Long.MIN_VALUE;
+                    boolean increasing = true;
+                    for (int i = 0; i < perThread; i++) {
+                        long id = generator.nextId();
+                        increasing &= id > previous;
+                        previous = id;
+                        seen.add(id);
+                    }
+                    return increasing;
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get(), "ids must increase within a thread");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(threads * perThread, seen.size());
+        for (long id : seen) {
+            assertEquals(3, TimeOrderedIdGenerator.nodeOf(id));
+            assertTrue(id < (1L << 53), "ids must stay exact as JavaScript numbers");
+        }
+    }
+
+    @Test
+    void clockGoingBackwardsDoesNotRepeatIds() {
+        AtomicLong clock = new AtomicLong(TimeOrderedIdGenerator.EPOCH_MILLIS + 10_000_000);
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(0, clock::get);
+
+        long before = generator.nextId();
+        clock.addAndGet(-5_000);
+        long after = generator.nextId();
+
+        assertTrue(after > before);
+        assertEquals(1, generator.getClockRegressions());
+    }
+
+    @Test
+    void burstBeyondSequenceBorrowsNextMillisecond() {
+        AtomicLong clock = new AtomicLong(TimeOrderedIdGenerator.EPOCH_MILLIS + 1_000);
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(1, clock::get);
+
+        long previous = generator.nextId();
+        for (int i = 0; i < 1_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+        assertTrue(TimeOrderedIdGenerator.timestampOf(previous) > clock.get());
+    }
+
+    @Test
+    void idsFromDifferentNodesSortByTime() {
+        AtomicLong clock = new AtomicLong(TimeOrderedIdGenerator.EPOCH_MILLIS + 50_000);
+        TimeOrderedIdGenerator nodeA = new TimeOrderedIdGenerator(31, clock::get);
+        TimeOrderedIdGenerator nodeB = new TimeOrderedIdGenerator(0, clock::get);
+
+        long earlier = nodeA.nextId();
+        clock.incrementAndGet();
+        long later = nodeB.nextId();
+
+        assertTrue(later > earlier);
+    }
+}
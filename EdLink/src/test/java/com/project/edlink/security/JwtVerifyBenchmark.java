@@ -0,0 +1,120 @@
+package com.project.edlink.security;
+
+import com.project.edlink.entities.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.Key;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Per-request cost of authenticating a bearer token: verify() on a token it has not seen,
+ * verify() on a cached token, and the sequence the filter ran before the cache, extractEmail()
+ * then validateToken(), which built a parser and checked the HMAC three times.
+ * Run with: mvn -Pbenchmark test
+ *
+ * Single-threaded, token verification only; the filter chain and the token-version check are
+ * not part of it. Each case has a warm-up pass before the measured pass, and the numbers are
+ * only comparable on the same machine.
+ */
+class JwtVerifyBenchmark {
+
+    private static final int TOKENS = 5_000;
+    private static final int WARMUP_ROUNDS = 4;
+    private static final int MEASURED_ROUNDS = 10;
+
+    private Key signingKey;
+
+    @Test
+    void coldCachedAndOldSequence() {
+        JwtUtil issuer = new JwtUtil();
+        signingKey = (Key) ReflectionTestUtils.getField(issuer, "signingKey");
+        String[] tokens = new String[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            tokens[i] = issuer.generateToken(user(i));
+        }
+
+        StringBuilder table = new StringBuilder(String.format("%n%-28s %12s %12s%n", "path", "ns/op p50", "ops/s"));
+        long cold = measure(tokens, () -> {
+            // A fresh cache per round so every call misses
+            JwtUtil jwtUtil = new JwtUtil();
+            return token -> assertNotNull(jwtUtil.verify(token));
+        });
+        JwtUtil warm = new JwtUtil();
+        for (String token : tokens) {
+            warm.verify(token);
+        }
+        long cached = measure(tokens, () -> token -> assertNotNull(warm.verify(token)));
+        long old = measure(tokens, () -> token -> {
+            String email = extractEmail(token);
+            assertTrue(validateToken(token, email));
+        });
+
+        table.append(row("verify() cold", cold));
+        table.append(row("verify() cached", cached));
+        table.append(row("extractEmail+validateToken", old));
+        System.out.println(table);
+
+        // Sanity: a hit skips the HMAC, and one parse beats three
+        assertTrue(cached < cold, "cached " + cached + " cold " + cold);
+        assertTrue(cold < old, "cold " + cold + " old " + old);
+    }
+
+    private static long measure(String[] tokens, Supplier<Consumer<String>> round) {
+        for (int r = 0; r < WARMUP_ROUNDS; r++) {
+            run(tokens, round.get());
+        }
+        long[] rounds = new long[MEASURED_ROUNDS];
+        for (int r = 0; r < MEASURED_ROUNDS; r++) {
+            rounds[r] = run(tokens, round.get()) / tokens.length;
+        }
+        Arrays.sort(rounds);
+        return rounds[MEASURED_ROUNDS / 2];
+    }
+
+    private static long run(String[] tokens, Consumer<String> op) {
+        long start = System.nanoTime();
+        for (String token : tokens) {
+            op.accept(token);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static String row(String path, long nanos) {
+        return String.format("%-28s %12d %12.0f%n", path, nanos, 1e9 / Math.max(1, nanos));
+    }
+
+    // The pre-cache JwtUtil, kept here as the baseline
+
+    private String extractEmail(String token) {
+        return parseClaims(token).getSubject();
+    }
+
+    private boolean isTokenExpired(String token) {
+        return parseClaims(token).getExpiration().before(new Date());
+    }
+
+    private boolean validateToken(String token, String email) {
+        return (email.equals(extractEmail(token)) && !isTokenExpired(token));
+    }
+
+    private Claims parseClaims(String token) {
+        return Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    private static User user(long id) {
+        return new User(id, "Student " + id, "s" + id + "@edlink.test", "hash", "STUDENT", "10", "ACTIVE");
+    }
+}
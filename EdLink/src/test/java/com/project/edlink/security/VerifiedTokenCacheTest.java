@@ -0,0 +1,126 @@
+package com.project.edlink.security;
+
+import com.project.edlink.entities.User;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.Key;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VerifiedTokenCacheTest {
+
+    private static final long NOW = 1_760_000_000_000L;
+
+    @Test
+    void entryIsDroppedOnceItsTokenExpires() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        JwtClaims claims = claims(1L, NOW + 1_000);
+        cache.put("a", claims, NOW);
+
+        assertSame(claims, cache.get("a", NOW + 999));
+        assertNull(cache.get("a", NOW + 1_000));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void fullTableSweepsExpiredEntriesBeforeLiveOnes() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        for (int i = 0; i < 5; i++) {
+            cache.put("expired-" + i, claims(i, NOW + 10), NOW);
+        }
+        for (int i = 0; i < 5; i++) {
+            cache.put("live-" + i, claims(i, NOW + 60_000), NOW);
+        }
+
+        cache.put("new", claims(99L, NOW + 60_000), NOW + 100);
+
+        assertEquals(6, cache.size());
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(cache.get("live-" + i, NOW + 100));
+        }
+        assertNotNull(cache.get("new", NOW + 100));
+    }
+
+    @Test
+    void fullTableOfLiveEntriesDropsATenthAndStaysBounded() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        for (int i = 0; i < 1_000; i++) {
+            cache.put("token-" + i, claims(i, NOW + 60_000), NOW);
+            assertTrue(cache.size() <= 100, "size " + cache.size());
+        }
+
+        // The last insert always survives the eviction it triggered
+        assertNotNull(cache.get("token-999", NOW));
+    }
+
+    @Test
+    void cachedHitMatchesAFreshSignatureCheck() {
+        JwtUtil jwtUtil = new JwtUtil();
+        String token = jwtUtil.generateToken(user());
+
+        JwtClaims first = jwtUtil.verify(token);
+        JwtClaims cached = jwtUtil.verify(token);
+        JwtClaims fresh = new JwtUtil().verify(token);
+
+        assertSame(first, cached);
+        assertEquals(1, jwtUtil.getCacheHits());
+        assertEquals(fresh.getUserId(), cached.getUserId());
+        assertEquals(fresh.getEmail(), cached.getEmail());
+        assertEquals(fresh.getRole(), cached.getRole());
+        assertEquals(fresh.getTokenVersion(), cached.getTokenVersion());
+        assertEquals(fresh.getExpiresAtMillis(), cached.getExpiresAtMillis());
+    }
+
+    @Test
+    void cachedTokenDoesNotVouchForATamperedCopy() {
+        JwtUtil jwtUtil = new JwtUtil();
+        String token = jwtUtil.generateToken(user());
+        assertNotNull(jwtUtil.verify(token));
+
+        // Same header and claims, different signature: a different digest, so the HMAC runs
+        String signature = token.substring(token.lastIndexOf('.') + 1);
+        char flipped = signature.charAt(0) == 'A' ? 'B' : 'A';
+        String forged = token.substring(0, token.lastIndexOf('.') + 1) + flipped + signature.substring(1);
+
+        assertNull(jwtUtil.verify(forged));
+        assertEquals(1, jwtUtil.getCacheSize());
+    }
+
+    @Test
+    void expiredTokenIsNeitherVerifiedNorCached() {
+        JwtUtil jwtUtil = new JwtUtil();
+        Key signingKey = (Key) ReflectionTestUtils.getField(jwtUtil, "signingKey");
+        String expired = Jwts.builder()
+                .setSubject("asha@edlink.test")
+                .claim("uid", 7L)
+                .claim("role", "STUDENT")
+                .claim("ver", 0)
+                .setIssuedAt(new Date(System.currentTimeMillis() - 120_000))
+                .setExpiration(new Date(System.currentTimeMillis() - 60_000))
+                .signWith(signingKey, SignatureAlgorithm.HS256)
+                .compact();
+
+        assertNull(jwtUtil.verify(expired));
+        assertEquals(0, jwtUtil.getCacheSize());
+    }
+
+    private static JwtClaims claims(long userId, long expiresAtMillis) {
+        return new JwtClaims(userId, "u" + userId + "@edlink.test", "User " + userId, "STUDENT", 0, expiresAtMillis);
+    }
+
+    private static User user() {
+        User user = new User(7L, "Asha", "asha@edlink.test", "hash", "STUDENT", "10", "ACTIVE");
+        user.setTokenVersion(3);
+        return user;
+    }
+}
@@ -0,0 +1,127 @@
+package com.project.edlink.service;
+
+import com.project.edlink.dto.ChatMessageDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Frames per second and p99 publish-to-send latency for one busy /topic/chat.{id}, with
+ * batching off and on, at several message rates. Run with: mvn -Pbenchmark test
+ *
+ * Covers ChatFanout up to the hand-off to the broker, which is where batching changes the
+ * frame count; every frame then costs one serialization and one socket write per subscriber.
+ * The broker and the network are not part of it. Each run has a warm-up pass before the
+ * measured pass, and the numbers are only comparable on the same machine.
+ */
+class ChatFanoutBenchmark {
+
+    private static final int[] RATES_PER_SECOND = {10, 100, 1_000, 5_000};
+    private static final long WARMUP_MILLIS = 1_000;
+    private static final long MEASURE_MILLIS = 3_000;
+
+    @Test
+    void framesPerSecondAndP99ForBothModes() {
+        StringBuilder table = new StringBuilder(String.format(
+                "%n%-10s %-9s %10s %10s %10s %10s%n", "msgs/s", "batching", "frames/s", "p50 us", "p99 us", "max us"));
+        for (int rate : RATES_PER_SECOND) {
+            Result plain = run(false, rate);
+            Result batched = run(true, rate);
+            table.append(plain.row(rate, "off")).append(batched.row(rate, "on"));
+
+            // Sanity: batching never costs frames, and below the threshold it changes nothing
+            assertTrue(batched.framesPerSecond <= plain.framesPerSecond * 1.05);
+        }
+        System.out.println(table);
+    }
+
+    private static Result run(boolean batching, int rate) {
+        TimingPublisher publisher = new TimingPublisher();
+        ChatFanout fanout = new ChatFanout(batching, 5, 20, 60_000);
+        ReflectionTestUtils.setField(fanout, "topicPublisher", publisher);
+        ReflectionTestUtils.setField(fanout, "chatSseHub", mock(ChatSseHub.class));
+        ReflectionTestUtils.setField(fanout, "clusterBus", new ClusterBus("simple"));
+        try {
+            drive(fanout, publisher, rate, WARMUP_MILLIS);
+            return drive(fanout, publisher, rate, MEASURE_MILLIS);
+        } finally {
+            fanout.shutdown();
+        }
+    }
+
+    private static Result drive(ChatFanout fanout, TimingPublisher publisher, int rate, long millis) {
+        int count = (int) (rate * millis / 1000);
+        publisher.reset(count);
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            long due = start + i * interval;
+            while (System.nanoTime() < due) {
+                Thread.onSpinWait();
+            }
+            publisher.publishedAt[i] = System.nanoTime();
+            fanout.publish(new ChatMessageDto((long) i, 1L, 7L, "Teacher", "TEACHER", "question " + i, null, false));
+        }
+        // The last window still has to flush
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (publisher.delivered.get() < count) {
+            assertTrue(System.nanoTime() < deadline, "messages never sent");
+            Thread.onSpinWait();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long[] latencies = publisher.latencies.clone();
+        Arrays.sort(latencies);
+        return new Result(publisher.frames.get() / seconds,
+                latencies[count / 2] / 1000,
+                latencies[Math.min(count - 1, count * 99 / 100)] / 1000,
+                latencies[count - 1] / 1000);
+    }
+
+    private record Result(double framesPerSecond, long p50Micros, long p99Micros, long maxMicros) {
+        String row(int rate, String batching) {
+            return String.format("%-10d %-9s %10.0f %10d %10d %10d%n",
+                    rate, batching, framesPerSecond, p50Micros, p99Micros, maxMicros);
+        }
+    }
+
+    /**
+     * Stamps each message's latency when its frame is handed to the broker.
+     */
+    private static final class TimingPublisher extends TopicPublisher {
+        private long[] publishedAt;
+        private long[] latencies;
+        private final AtomicInteger frames = new AtomicInteger();
+        private final AtomicInteger delivered = new AtomicInteger();
+
+        void reset(int count) {
+            publishedAt = new long[count];
+            latencies = new long[count];
+            frames.set(0);
+            delivered.set(0);
+        }
+
+        @Override
+        public void send(String destination, Object payload, Map<String, String> nativeHeaders) {
+            long now = System.nanoTime();
+            List<?> messages = payload instanceof List<?> batch ? batch : List.of(payload);
+            for (Object message : messages) {
+                int index = ((ChatMessageDto) message).getId().intValue();
+                if (index < latencies.length && latencies[index] == 0) {
+                    latencies[index] = now - publishedAt[index];
+                    delivered.incrementAndGet();
+                }
+            }
+            frames.incrementAndGet();
+        }
+    }
+}
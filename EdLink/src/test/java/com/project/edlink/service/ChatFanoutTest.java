@@ -0,0 +1,147 @@
+package com.project.edlink.service;
+
+import com.project.edlink.dto.ChatMessageDto;
+import com.project.edlink.entities.TimeOrderedIdGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class ChatFanoutTest {
+
+    private static final Long SUBJECT = 3L;
+    private static final long LANE_IDLE_MILLIS = 60_000;
+
+    private RecordingPublisher publisher;
+    private ChatFanout fanout;
+
+    @BeforeEach
+    void setUp() {
+        publisher = new RecordingPublisher();
+        fanout = new ChatFanout(true, 20, 5, LANE_IDLE_MILLIS);
+        ReflectionTestUtils.setField(fanout, "topicPublisher", publisher);
+        ReflectionTestUtils.setField(fanout, "chatSseHub", mock(ChatSseHub.class));
+        ReflectionTestUtils.setField(fanout, "clusterBus", new ClusterBus("simple"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        fanout.shutdown();
+    }
+
+    @Test
+    void quietSubjectSendsEachMessageAtOnce() {
+        for (long id = 1; id <= 5; id++) {
+            fanout.publish(message(id));
+        }
+
+        assertEquals(5L, fanout.getStats().get("singleFrames"));
+        assertEquals(0L, fanout.getStats().get("batchFrames"));
+    }
+
+    @Test
+    void burstIsCoalescedInOrder() {
+        for (long id = 1; id <= 50; id++) {
+            fanout.publish(message(id));
+        }
+        // The last window flushes on the batcher thread
+        awaitTrue(() -> publisher.deliveredIds().size() == 50);
+
+        List<Long> delivered = publisher.deliveredIds();
+        for (int i = 0; i < delivered.size(); i++) {
+            assertEquals(i + 1L, delivered.get(i));
+        }
+        // First 5 go out alone, the rest share far fewer frames
+        assertTrue(publisher.frames.size() < 10);
+    }
+
+    @Test
+    void framesOfOneEpochAreNumberedWithoutGaps() {
+        for (long id = 1; id <= 50; id++) {
+            fanout.publish(message(id));
+        }
+        awaitTrue(() -> publisher.deliveredIds().size() == 50);
+
+        // Singles and batches share one counter, so a client can spot any lost frame
+        String epoch = publisher.seqs.get(0).split(":")[0];
+        for (int i = 0; i < publisher.seqs.size(); i++) {
+            assertEquals(epoch + ":" + (i + 1), publisher.seqs.get(i));
+        }
+        // Node id first: two replicas never count under the same epoch
+        assertTrue(epoch.startsWith(TimeOrderedIdGenerator.shared().getNodeId() + "-"), epoch);
+    }
+
+    @Test
+    void idleSubjectIsForgottenAndComesBackUnderANewEpoch() {
+        fanout.publish(message(1));
+        fanout.publish(message(2));
+        String[] before = publisher.seqs.get(1).split(":");
+        assertEquals("2", before[1]);
+
+        // Still in use: kept
+        fanout.evictIdleLanes(System.currentTimeMillis());
+        assertEquals(1, fanout.getStats().get("lanes"));
+
+        fanout.evictIdleLanes(System.currentTimeMillis() + LANE_IDLE_MILLIS + 1);
+        assertEquals(0, fanout.getStats().get("lanes"));
+        assertEquals(1L, fanout.getStats().get("evictedLanes"));
+
+        fanout.publish(message(3));
+        String[] after = publisher.seqs.get(2).split(":");
+        assertNotEquals(before[0], after[0]);
+        assertEquals("1", after[1]);
+    }
+
+    private static ChatMessageDto message(long id) {
+        return new ChatMessageDto(id, SUBJECT, 1L, "Asha", "STUDENT", "q" + id, null, false);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Keeps every frame with its seq header, in send order.
+     */
+    static final class RecordingPublisher extends TopicPublisher {
+        final List<Object> frames = Collections.synchronizedList(new ArrayList<>());
+        final List<String> seqs = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void send(String destination, Object payload, Map<String, String> nativeHeaders) {
+            synchronized (frames) {
+                frames.add(payload);
+                seqs.add(nativeHeaders.get(ChatFanout.SEQ_HEADER));
+            }
+        }
+
+        List<Long> deliveredIds() {
+            List<Long> ids = new ArrayList<>();
+            synchronized (frames) {
+                for (Object payload : frames) {
+                    if (payload instanceof List<?> batch) {
+                        batch.forEach(m -> ids.add(((ChatMessageDto) m).getId()));
+                    } else {
+                        ids.add(((ChatMessageDto) payload).getId());
+                    }
+                }
+            }
+            return ids;
+        }
+    }
+}
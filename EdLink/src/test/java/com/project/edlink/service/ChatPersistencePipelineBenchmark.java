@@ -0,0 +1,163 @@
+package com.project.edlink.service;
+
+import com.project.edlink.entities.ChatMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Committed chat messages per second: the old path, one INSERT and one commit per message on a
+ * pooled connection, against the group-commit pipeline in commit and enqueue durability, for
+ * 16, 64 and 256 concurrent senders. Run with: mvn -Pbenchmark test
+ *
+ * MySQL is a stubbed JdbcTemplate, as in ChatPersistencePipelineTest, with a fixed cost per
+ * statement (a round trip plus the commit fsync), and the old path gets ten connections like
+ * the default Hikari pool. Real per-row costs, lock waits and the broadcast are not part of it.
+ * Each case has a warm-up pass before the measured pass, and the numbers are only comparable
+ * on the same machine.
+ */
+class ChatPersistencePipelineBenchmark {
+
+    private static final int[] SENDER_COUNTS = {16, 64, 256};
+    private static final long COMMIT_MICROS = 1_000;
+    private static final int POOL_SIZE = 10;
+    private static final long WARMUP_MILLIS = 1_000;
+    private static final long MEASURE_MILLIS = 3_000;
+
+    @Test
+    void committedMessagesPerSecond() throws Exception {
+        StringBuilder table = new StringBuilder(String.format("%n%-8s %14s %14s %14s %12s%n",
+                "senders", "save/s", "commit/s", "enqueue/s", "rows/commit"));
+        for (int senders : SENDER_COUNTS) {
+            double save = perMessageSave(senders);
+            Result commit = pipeline("commit", senders);
+            Result enqueue = pipeline("enqueue", senders);
+            table.append(String.format("%-8d %14.0f %14.0f %14.0f %12.1f%n",
+                    senders, save, commit.rowsPerSecond, enqueue.rowsPerSecond, commit.rowsPerCommit));
+
+            // Sanity: once a batch fills before the window closes, sharing commits wins
+            if (senders == SENDER_COUNTS[SENDER_COUNTS.length - 1]) {
+                assertTrue(commit.rowsPerSecond > save, "commit " + commit.rowsPerSecond + " save " + save);
+            }
+        }
+        System.out.println(table);
+    }
+
+    /**
+     * The old ChatService path: every sender runs its own single-row INSERT and commit.
+     */
+    private static double perMessageSave(int senders) throws Exception {
+        StubMysql mysql = new StubMysql(POOL_SIZE);
+        Runnable send = () -> mysql.update("INSERT INTO chat_messages (subject_id, sender_id, content, created_at) "
+                + "VALUES (?, ?, ?, ?)", ChatPersistencePipelineBenchmark::bind);
+        drive(senders, WARMUP_MILLIS, send);
+        long before = mysql.rows.sum();
+        drive(senders, MEASURE_MILLIS, send);
+        return (mysql.rows.sum() - before) / (MEASURE_MILLIS / 1000.0);
+    }
+
+    private static Result pipeline(String durability, int senders) throws Exception {
+        // The pipeline has one writer, so a single connection is all it uses
+        StubMysql mysql = new StubMysql(1);
+        ChatPersistencePipeline pipeline = new ChatPersistencePipeline(durability, 200, 10, 10_000, 5_000);
+        ReflectionTestUtils.setField(pipeline, "jdbcTemplate", mysql);
+        pipeline.start();
+        try {
+            Runnable send = () -> {
+                try {
+                    pipeline.persist(new ChatMessage(null, 1L, 2L, "Is question 4 part of the midterm?", Instant.now()));
+                } catch (RuntimeException e) {
+                    // Refused when the queue stays full; shows up as lower throughput
+                }
+            };
+            drive(senders, WARMUP_MILLIS, send);
+            long rowsBefore = mysql.rows.sum();
+            long commitsBefore = mysql.statements.sum();
+            drive(senders, MEASURE_MILLIS, send);
+            long rows = mysql.rows.sum() - rowsBefore;
+            long commits = mysql.statements.sum() - commitsBefore;
+            return new Result(rows / (MEASURE_MILLIS / 1000.0), commits == 0 ? 0 : (double) rows / commits);
+        } finally {
+            pipeline.stop();
+        }
+    }
+
+    private static void drive(int senders, long millis, Runnable send) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(senders);
+        CountDownLatch done = new CountDownLatch(senders);
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        for (int s = 0; s < senders; s++) {
+            pool.execute(() -> {
+                try {
+                    while (System.nanoTime() < end) {
+                        send.run();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(millis + 30_000, TimeUnit.MILLISECONDS));
+        pool.shutdown();
+    }
+
+    private static void bind(PreparedStatement ps) throws SQLException {
+        ps.setLong(1, 1L);
+        ps.setLong(2, 2L);
+        ps.setString(3, "Is question 4 part of the midterm?");
+    }
+
+    private record Result(double rowsPerSecond, double rowsPerCommit) {
+    }
+
+    /**
+     * One statement costs COMMIT_MICROS whatever its row count, and at most poolSize run at once.
+     * The PreparedStatement is a stub-only mock so millions of setters are not recorded.
+     */
+    private static final class StubMysql extends JdbcTemplate {
+        private final Semaphore connections;
+        private final PreparedStatement ps = mock(PreparedStatement.class, withSettings().stubOnly());
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+
+        private StubMysql(int poolSize) {
+            this.connections = new Semaphore(poolSize);
+        }
+
+        @Override
+        public int update(String sql, PreparedStatementSetter pss) {
+            int count = 1;
+            for (int i = sql.indexOf("), ("); i >= 0; i = sql.indexOf("), (", i + 1)) {
+                count++;
+            }
+            connections.acquireUninterruptibly();
+            try {
+                pss.setValues(ps);
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(COMMIT_MICROS));
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                connections.release();
+            }
+            rows.add(count);
+            statements.increment();
+            return count;
+        }
+    }
+}
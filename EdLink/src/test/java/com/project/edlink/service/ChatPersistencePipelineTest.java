@@ -0,0 +1,203 @@
+package com.project.edlink.service;
+
+import com.project.edlink.entities.ChatMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ChatPersistencePipelineTest {
+
+    private static final String BAD_CONTENT = "violates a constraint";
+
+    // Ids in the order the fake MySQL committed them
+    private final List<Long> committed = Collections.synchronizedList(new ArrayList<>());
+
+    private JdbcTemplate jdbcTemplate;
+    private ChatPersistencePipeline pipeline;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class))).thenAnswer(inv -> {
+            List<Long> ids = new ArrayList<>();
+            List<String> contents = new ArrayList<>();
+            PreparedStatement ps = mock(PreparedStatement.class);
+            doAnswer(a -> {
+                // id is the first of five columns per row
+                if ((int) a.getArgument(0) % 5 == 1) {
+                    ids.add(a.getArgument(1));
+                }
+                return null;
+            }).when(ps).setLong(anyInt(), anyLong());
+            doAnswer(a -> contents.add(a.getArgument(1))).when(ps).setString(anyInt(), anyString());
+
+            inv.<PreparedStatementSetter>getArgument(1).setValues(ps);
+            if (contents.contains(BAD_CONTENT)) {
+                throw new DataIntegrityViolationException("Data too long for column 'content'");
+            }
+            committed.addAll(ids);
+            return ids.size();
+        });
+
+        // enqueue durability, so the test thread can fill a batch without waiting on commits;
+        // the 200 ms window keeps one burst inside one batch
+        pipeline = new ChatPersistencePipeline("enqueue", 500, 200, 10_000, 5_000);
+        ReflectionTestUtils.setField(pipeline, "jdbcTemplate", jdbcTemplate);
+        pipeline.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pipeline.stop();
+    }
+
+    @Test
+    void badRowIsDroppedAloneAndTheRestOfTheBatchCommits() {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ChatMessage message = message(i == 7 ? BAD_CONTENT : "message " + i);
+            pipeline.persist(message);
+            messages.add(message);
+        }
+
+        awaitTrue(() -> stat("rowsWritten") + stat("failedRows") == 20);
+
+        assertEquals(19, stat("rowsWritten"));
+        assertEquals(1, stat("failedRows"));
+        assertEquals(1, stat("rowByRowFallbacks"));
+        assertFalse(committed.contains(messages.get(7).getId()));
+        assertIncreasing(committed);
+    }
+
+    @Test
+    void idsCommitInIdOrderAcrossSenders() throws Exception {
+        int threads = 8;
+        int perThread = 500;
+        ExecutorService senders = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                done.add(senders.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        pipeline.persist(message("hello"));
+                    }
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            senders.shutdownNow();
+        }
+
+        awaitTrue(() -> stat("rowsWritten") == threads * perThread);
+        assertIncreasing(committed);
+    }
+
+    @Test
+    void contentOverTheColumnSizeIsRefusedBeforeQueueing() {
+        String tooLong = "é".repeat(ChatPersistencePipeline.MAX_CONTENT_BYTES / 2 + 1);
+
+        assertThrows(RuntimeException.class, () -> pipeline.persist(message(tooLong)));
+        assertEquals(0, stat("enqueued"));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void senderWaitingForRoomDoesNotHoldTheEnqueueLock() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        JdbcTemplate stuck = mock(JdbcTemplate.class);
+        when(stuck.update(anyString(), any(PreparedStatementSetter.class))).thenAnswer(inv -> {
+            writing.countDown();
+            release.await();
+            return 1;
+        });
+        ChatPersistencePipeline small = new ChatPersistencePipeline("enqueue", 1, 0, 1, 5_000);
+        ReflectionTestUtils.setField(small, "jdbcTemplate", stuck);
+        small.start();
+
+        try {
+            // One row held by the writer, one filling the only queue slot
+            small.persist(message("in flight"));
+            writing.await();
+            small.persist(message("queued"));
+
+            AtomicReference<RuntimeException> refused = new AtomicReference<>();
+            Thread sender = new Thread(() -> {
+                try {
+                    small.persist(message("waits"));
+                } catch (RuntimeException e) {
+                    refused.set(e);
+                }
+            });
+            sender.start();
+            awaitTrue(() -> sender.getState() == Thread.State.TIMED_WAITING);
+
+            long start = System.nanoTime();
+            synchronized (ReflectionTestUtils.getField(small, "enqueueLock")) {
+                assertTrue(System.nanoTime() - start < 500_000_000L, "enqueue lock held while waiting for room");
+            }
+
+            sender.join(5_000);
+            assertTrue(refused.get() != null, "sender was not refused");
+            assertEquals(1L, small.getStats().get("rejected"));
+        } finally {
+            release.countDown();
+            small.stop();
+        }
+    }
+
+    private static ChatMessage message(String content) {
+        return new ChatMessage(null, 1L, 2L, content, Instant.now());
+    }
+
+    private long stat(String name) {
+        return ((Number) pipeline.getStats().get(name)).longValue();
+    }
+
+    private static void assertIncreasing(List<Long> ids) {
+        synchronized (ids) {
+            for (int i = 1; i < ids.size(); i++) {
+                assertTrue(ids.get(i - 1) < ids.get(i), "id committed out of order at " + i);
+            }
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.project.edlink.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.edlink.dto.ChatMessageDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ChatResumeReplayTest {
+
+    private static final Long SUBJECT = 5L;
+    private static final String TOPIC = "/topic/chat.5";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Message<?>> sent = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> sendingThreads = Collections.synchronizedList(new ArrayList<>());
+    private final ChatService chatService = mock(ChatService.class);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    // Messages 101..(100 + stored) exist for the subject
+    private volatile long stored;
+    private volatile CountDownLatch holdQueries;
+
+    private ChatResumeReplay replay;
+
+    private void start(int maxMessages, int threads, int queueCapacity) {
+        replay = new ChatResumeReplay(maxMessages, threads, queueCapacity);
+
+        MessageChannel clientOutbound = (message, timeout) -> {
+            sent.add(message);
+            sendingThreads.add(Thread.currentThread().getName());
+            return true;
+        };
+        SimpMessagingTemplate template = new SimpMessagingTemplate(clientOutbound);
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+
+        when(chatService.getMessagesAfter(eq(SUBJECT), anyLong(), anyInt())).thenAnswer(inv -> {
+            CountDownLatch hold = holdQueries;
+            if (hold != null) {
+                hold.countDown();
+                release.await();
+            }
+            long after = inv.getArgument(1);
+            int limit = inv.getArgument(2);
+            return LongStream.rangeClosed(after + 1, Math.min(100 + stored, after + limit))
+                    .mapToObj(ChatResumeReplayTest::message)
+                    .toList();
+        });
+
+        ReflectionTestUtils.setField(replay, "chatService", chatService);
+        ReflectionTestUtils.setField(replay, "messagingTemplate", template);
+        ReflectionTestUtils.setField(replay, "clientOutboundChannel", clientOutbound);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        replay.shutdown();
+    }
+
+    @Test
+    void missedMessagesAreReplayedToTheOneSubscriptionOffTheInboundThread() throws Exception {
+        start(1_000, 2, 10);
+        stored = 3;
+
+        replay.afterMessageHandled(subscribe("session-1", "sub-0", "100"), null, mock(SimpleBrokerMessageHandler.class), null);
+
+        awaitTrue(() -> sent.size() == 1);
+        Message<?> frame = sent.get(0);
+        assertEquals(List.of(101L, 102L, 103L), ids(frame));
+        assertEquals("session-1", SimpMessageHeaderAccessor.getSessionId(frame.getHeaders()));
+        assertEquals("sub-0", SimpMessageHeaderAccessor.getSubscriptionId(frame.getHeaders()));
+        assertTrue(sendingThreads.get(0).startsWith("chat-resume-"), sendingThreads.get(0));
+        assertEquals(3L, replay.getStats().get("replayedMessages"));
+    }
+
+    @Test
+    void replayStopsAtMaxMessagesAndSignalsTheGap() throws Exception {
+        start(250, 2, 10);
+        stored = 1_000;
+
+        replay.afterMessageHandled(subscribe("session-1", "sub-0", "100"), null, mock(SimpleBrokerMessageHandler.class), null);
+
+        // A 200-message page, the remaining 50, then the empty gap frame
+        awaitTrue(() -> sent.size() == 3);
+        assertEquals(200, ids(sent.get(0)).size());
+        assertEquals(LongStream.rangeClosed(301, 350).boxed().toList(), ids(sent.get(1)));
+        assertTrue(ids(sent.get(2)).isEmpty());
+        assertEquals("true", gapHeader(sent.get(2)));
+        assertNull(gapHeader(sent.get(0)));
+        assertEquals(1L, replay.getStats().get("gapsTooLarge"));
+    }
+
+    @Test
+    void fullQueueTellsTheClientToReloadWithoutAQuery() throws Exception {
+        start(1_000, 1, 1);
+        stored = 3;
+        holdQueries = new CountDownLatch(1);
+
+        // One replay holds the only thread, the next waits in the queue, the third is refused
+        replay.afterMessageHandled(subscribe("session-1", "sub-0", "100"), null, mock(SimpleBrokerMessageHandler.class), null);
+        holdQueries.await();
+        replay.afterMessageHandled(subscribe("session-2", "sub-0", "100"), null, mock(SimpleBrokerMessageHandler.class), null);
+        replay.afterMessageHandled(subscribe("session-3", "sub-0", "100"), null, mock(SimpleBrokerMessageHandler.class), null);
+
+        assertEquals(1, sent.size());
+        assertEquals("session-3", SimpMessageHeaderAccessor.getSessionId(sent.get(0).getHeaders()));
+        assertEquals("true", gapHeader(sent.get(0)));
+        assertEquals(1L, replay.getStats().get("rejected"));
+
+        holdQueries = null;
+        release.countDown();
+        awaitTrue(() -> sent.size() == 3);
+    }
+
+    @Test
+    void onlyBrokerHandledSubscribesWithACursorAreReplayed() {
+        start(1_000, 2, 10);
+
+        // Before the broker has registered the subscription
+        replay.afterMessageHandled(subscribe("session-1", "sub-0", "100"), null, (message) -> { }, null);
+        // No cursor: a first connect
+        replay.afterMessageHandled(subscribe("session-1", "sub-1", null), null, mock(SimpleBrokerMessageHandler.class), null);
+
+        assertEquals(0L, replay.getStats().get("replays"));
+        verifyNoInteractions(chatService);
+    }
+
+    private List<Long> ids(Message<?> frame) throws Exception {
+        ChatMessageDto[] messages = objectMapper.readValue((byte[]) frame.getPayload(), ChatMessageDto[].class);
+        return Arrays.stream(messages).map(ChatMessageDto::getId).toList();
+    }
+
+    private static String gapHeader(Message<?> frame) {
+        return SimpMessageHeaderAccessor.wrap(frame).getFirstNativeHeader(ChatResumeReplay.GAP_HEADER);
+    }
+
+    private static Message<byte[]> subscribe(String sessionId, String subscriptionId, String lastSeen) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(TOPIC);
+        if (lastSeen != null) {
+            accessor.setNativeHeader(ChatResumeReplay.LAST_SEEN_HEADER, lastSeen);
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static ChatMessageDto message(long id) {
+        return new ChatMessageDto(id, SUBJECT, 1L, "Asha", "STUDENT", "q" + id, null, false);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.project.edlink.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.edlink.dto.ChatMessageDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the hub's fan-out in-process with emitters that record (or stall) their writes, so the
+ * 10k-subscriber case runs without 10k sockets. What it does not cover is Tomcat's side: the
+ * async dispatch per emitter and the kernel send buffers.
+ */
+class ChatSseHubTest {
+
+    private static final Long SUBJECT = 3L;
+
+    private final List<RecordingEmitter> created = Collections.synchronizedList(new ArrayList<>());
+    private volatile CountDownLatch stallNext;
+
+    private ChatSseHub hub;
+
+    private void startHub(int senderThreads, long sendTimeoutMillis) {
+        hub = new ChatSseHub(300_000, senderThreads, sendTimeoutMillis, 256, 3_600_000) {
+            @Override
+            SseEmitter newEmitter(long timeout) {
+                RecordingEmitter emitter = new RecordingEmitter(stallNext);
+                stallNext = null;
+                created.add(emitter);
+                return emitter;
+            }
+        };
+        ReflectionTestUtils.setField(hub, "objectMapper", new ObjectMapper());
+        hub.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        created.forEach(RecordingEmitter::release);
+        hub.shutdown();
+    }
+
+    @Test
+    void tenThousandSubscribersKeepReceivingWhileOneClientStalls() {
+        startHub(4, 500);
+
+        CountDownLatch stalled = new CountDownLatch(1);
+        stallNext = stalled;
+        hub.subscribe(SUBJECT, List::of);
+        for (int i = 0; i < 10_000; i++) {
+            hub.subscribe(SUBJECT, List::of);
+        }
+
+        int messages = 20;
+        for (long id = 1; id <= messages; id++) {
+            hub.broadcast(message(id));
+        }
+
+        List<RecordingEmitter> healthy = created.subList(1, created.size());
+        awaitTrue(() -> healthy.stream().allMatch(e -> e.received.size() == messages), 15_000);
+        for (RecordingEmitter emitter : healthy) {
+            assertEquals(inOrder(messages), emitter.received);
+        }
+
+        // The stalled stream is cut loose once its write passes the send timeout
+        awaitTrue(() -> ((Number) hub.getStats().get("droppedSlow")).longValue() == 1, 5_000);
+        assertEquals(10_000, hub.getStats().get("subscribers"));
+    }
+
+    @Test
+    void messageBroadcastWhileTheBacklogLoadsIsNeitherLostNorDuplicated() {
+        startHub(2, 5_000);
+
+        hub.subscribe(SUBJECT, () -> {
+            // Both land between registration and the end of the backlog query
+            hub.broadcast(message(3));
+            hub.broadcast(message(4));
+            return List.of(message(1), message(2), message(3));
+        });
+        // Message 3's own fan-out can also come after the backlog went out
+        hub.broadcast(message(3));
+        hub.broadcast(message(5));
+
+        RecordingEmitter emitter = created.get(0);
+        awaitTrue(() -> emitter.received.size() >= 5, 5_000);
+        assertEquals(inOrder(5), emitter.received);
+    }
+
+    private static ChatMessageDto message(long id) {
+        return new ChatMessageDto(id, SUBJECT, 7L, "Teacher", "TEACHER", "message " + id, null, false);
+    }
+
+    private static List<String> inOrder(int count) {
+        List<String> ids = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            ids.add(String.valueOf(id));
+        }
+        return ids;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch stall;
+
+        RecordingEmitter(CountDownLatch stall) {
+            this.stall = stall;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            if (stall != null) {
+                try {
+                    stall.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return;
+            }
+            String frame = builder.build().stream()
+                    .map(part -> String.valueOf(part.getData()))
+                    .collect(Collectors.joining());
+            if (frame.startsWith("id:")) {
+                received.add(frame.substring(3, frame.indexOf('\n')));
+            }
+        }
+
+        void release() {
+            if (stall != null) {
+                stall.countDown();
+            }
+        }
+    }
+}
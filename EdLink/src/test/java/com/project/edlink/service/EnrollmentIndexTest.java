@@ -0,0 +1,116 @@
+package com.project.edlink.service;
+
+import com.project.edlink.repository.EnrollmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EnrollmentIndexTest {
+
+    private static final int STUDENTS = 300;
+    private static final int SUBJECTS = 40;
+
+    private final Set<String> enrolled = new HashSet<>();
+    private EnrollmentRepository repository;
+    private EnrollmentIndex index;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(42);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            long studentId = 1 + random.nextInt(STUDENTS);
+            long subjectId = 1 + random.nextInt(SUBJECTS);
+            // Duplicate rows are kept on purpose, the index must collapse them
+            rows.add(new Object[]{studentId, subjectId});
+            enrolled.add(key(studentId, subjectId));
+        }
+
+        // The repository is the reference: exists answers from the same data set
+        repository = mock(EnrollmentRepository.class);
+        when(repository.findAllStudentSubjectPairs()).thenReturn(rows);
+        when(repository.existsByStudentIdAndSubjectId(anyLong(), anyLong()))
+                .thenAnswer(inv -> enrolled.contains(key(inv.getArgument(0), inv.getArgument(1))));
+
+        index = new EnrollmentIndex();
+        ReflectionTestUtils.setField(index, "enrollmentRepository", repository);
+        index.load();
+    }
+
+    @Test
+    void enrolledPairsAreAnsweredFromTheIndexAlone() {
+        for (String pair : enrolled) {
+            String[] ids = pair.split(":");
+            long studentId = Long.parseLong(ids[0]);
+            long subjectId = Long.parseLong(ids[1]);
+            assertTrue(index.isEnrolled(studentId, subjectId), "student " + studentId + ", subject " + subjectId);
+            assertTrue(Arrays.binarySearch(index.subjectsOf(studentId), subjectId) >= 0);
+            assertTrue(Arrays.binarySearch(index.studentsOf(subjectId), studentId) >= 0);
+        }
+
+        verify(repository, never()).existsByStudentIdAndSubjectId(anyLong(), anyLong());
+        assertEquals(0L, index.getStats().get("repositoryFallbacks"));
+        assertEquals((long) enrolled.size(), index.getStats().get("enrollments"));
+    }
+
+    @Test
+    void refusalsAreConfirmedAgainstTheRepository() {
+        long refusals = 0;
+        for (long studentId = 0; studentId <= STUDENTS + 1; studentId++) {
+            for (long subjectId = 0; subjectId <= SUBJECTS + 1; subjectId++) {
+                if (!enrolled.contains(key(studentId, subjectId))) {
+                    assertFalse(index.isEnrolled(studentId, subjectId), "student " + studentId + ", subject " + subjectId);
+                    refusals++;
+                }
+            }
+        }
+        assertEquals(refusals, index.getStats().get("repositoryFallbacks"));
+        assertEquals((long) enrolled.size(), index.getStats().get("enrollments"));
+    }
+
+    @Test
+    void incrementalAddKeepsBothDirectionsSorted() {
+        long studentId = STUDENTS + 10;
+        index.add(studentId, 7L);
+        index.add(studentId, 3L);
+        index.add(studentId, 7L);
+
+        assertArrayEquals(new long[]{3, 7}, index.subjectsOf(studentId));
+        assertTrue(index.isEnrolled(studentId, 3L));
+
+        long[] students = index.studentsOf(7L);
+        for (int i = 1; i < students.length; i++) {
+            assertTrue(students[i - 1] < students[i]);
+        }
+    }
+
+    @Test
+    void enrollmentFromAnotherReplicaIsPickedUp() {
+        long studentId = STUDENTS + 20;
+        enrolled.add(key(studentId, 5L));
+
+        assertTrue(index.isEnrolled(studentId, 5L));
+        assertArrayEquals(new long[]{5}, index.subjectsOf(studentId));
+    }
+
+    private static String key(long studentId, long subjectId) {
+        return studentId + ":" + subjectId;
+    }
+}
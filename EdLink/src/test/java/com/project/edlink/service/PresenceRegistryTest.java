@@ -0,0 +1,104 @@
+package com.project.edlink.service;
+
+import com.project.edlink.dto.PresenceUpdateDto;
+import com.project.edlink.security.AuthenticatedUser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class PresenceRegistryTest {
+
+    private static final Long SUBJECT = 5L;
+
+    private final AuthenticatedUser user = new AuthenticatedUser(42L, "s@edlink.test", "Student", "STUDENT");
+
+    private PresenceBroadcaster broadcaster;
+    private PresenceRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        broadcaster = mock(PresenceBroadcaster.class);
+        // No heartbeat window: a user is online only while subscribed, and swept as soon as not
+        registry = new PresenceRegistry(0, false, 15_000);
+        ReflectionTestUtils.setField(registry, "presenceBroadcaster", broadcaster);
+        ReflectionTestUtils.setField(registry, "clusterBus", new ClusterBus("simple"));
+    }
+
+    @Test
+    void subscribeHandledAfterDisconnectLeavesNothingBehind() {
+        registry.disconnected("s1");
+        registry.subscribed("s1", "sub-0", user, SUBJECT);
+
+        assertFalse(registry.isOnline(SUBJECT, user.getId()));
+        assertEquals(0, registry.getStats().get("sessions"));
+        verify(broadcaster, never()).publish(any());
+    }
+
+    @Test
+    void sweepNeverDropsASubjectMapThatIsBeingUpdated() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread sweeper = new Thread(() -> {
+            while (running.get()) {
+                registry.sweep();
+            }
+        });
+        sweeper.start();
+        try {
+            for (int i = 0; i < 20_000; i++) {
+                String session = "s" + i;
+                registry.subscribed(session, "sub-0", user, SUBJECT);
+                assertTrue(registry.isOnline(SUBJECT, user.getId()), "update lost at iteration " + i);
+                registry.disconnected(session);
+            }
+        } finally {
+            running.set(false);
+            sweeper.join();
+        }
+
+        registry.sweep();
+        assertEquals(0, registry.getStats().get("subjects"));
+    }
+
+    @Test
+    void userOnlineOnAnotherReplicaStaysOnlineUntilThatReplicaSaysOtherwise() {
+        registry.remoteTransition("1-a", new PresenceUpdateDto(user.getId(), SUBJECT, "Student", "STUDENT", true));
+        assertTrue(registry.isOnline(SUBJECT, user.getId()));
+        assertEquals(Set.of(user.getId()), registry.onlineUserIds(SUBJECT));
+
+        // Leaving this replica is not broadcast while the other one still has the user
+        registry.subscribed("s1", "sub-0", user, SUBJECT);
+        registry.disconnected("s1");
+        verify(broadcaster).publish(argThat(PresenceUpdateDto::isOnline));
+        verify(broadcaster, never()).publish(argThat(update -> !update.isOnline()));
+        assertTrue(registry.isOnline(SUBJECT, user.getId()));
+
+        // The other replica's digest no longer lists the user
+        registry.remoteDigest("1-a", new PresenceRegistry.Digest(Map.of()));
+        assertFalse(registry.isOnline(SUBJECT, user.getId()));
+        assertEquals(Set.of(), registry.onlineUserIds(SUBJECT));
+    }
+
+    @Test
+    void digestOnlyReplacesItsOwnReplicasEntries() {
+        registry.remoteTransition("1-a", new PresenceUpdateDto(user.getId(), SUBJECT, "Student", "STUDENT", true));
+        registry.remoteDigest("2-b", new PresenceRegistry.Digest(Map.of(SUBJECT, Set.of(7L))));
+
+        assertEquals(Set.of(user.getId(), 7L), registry.onlineUserIds(SUBJECT));
+
+        registry.remoteTransition("1-a", new PresenceUpdateDto(user.getId(), SUBJECT, "Student", "STUDENT", false));
+        assertEquals(Set.of(7L), registry.onlineUserIds(SUBJECT));
+    }
+}
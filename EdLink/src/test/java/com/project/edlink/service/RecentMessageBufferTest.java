@@ -0,0 +1,75 @@
+package com.project.edlink.service;
+
+import com.project.edlink.dto.ChatMessageDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RecentMessageBufferTest {
+
+    private static final Long SUBJECT = 7L;
+
+    @Test
+    void servesCursorsInsideTheWindowAndRefusesOlderOnes() {
+        RecentMessageBuffer buffer = new RecentMessageBuffer(true, 5, 30, 64, "simple");
+        for (long id = 101; id <= 108; id++) {
+            buffer.append(message(id));
+        }
+
+        // Ring holds 104..108, so it is complete for anything above 103
+        assertEquals(List.of(106L, 107L, 108L), ids(buffer.after(SUBJECT, 105, 50)));
+        assertEquals(List.of(104L, 105L), ids(buffer.after(SUBJECT, 103, 2)));
+        assertEquals(List.of(), ids(buffer.after(SUBJECT, 108, 50)));
+        assertNull(buffer.after(SUBJECT, 102, 50));
+    }
+
+    @Test
+    void outOfOrderAndDuplicateAppendsStaySorted() {
+        RecentMessageBuffer buffer = new RecentMessageBuffer(true, 10, 30, 64, "simple");
+        buffer.append(message(10));
+        buffer.append(message(13));
+        buffer.append(message(12));
+        buffer.append(message(13));
+        buffer.append(message(11));
+
+        assertEquals(List.of(11L, 12L, 13L), ids(buffer.after(SUBJECT, 10, 50)));
+    }
+
+    @Test
+    void newestPageNeedsEnoughMessagesOrWholeHistory() {
+        RecentMessageBuffer buffer = new RecentMessageBuffer(true, 10, 30, 64, "simple");
+        buffer.seed(SUBJECT, List.of(message(1), message(2)), true);
+
+        assertEquals(List.of(1L, 2L), ids(buffer.newest(SUBJECT, 50)));
+        assertEquals(List.of(2L), ids(buffer.newest(SUBJECT, 1)));
+
+        RecentMessageBuffer partial = new RecentMessageBuffer(true, 10, 30, 64, "simple");
+        partial.append(message(40));
+        assertNull(partial.newest(SUBJECT, 50));
+    }
+
+    @Test
+    void relayModeNeverAnswersFromTheRing() {
+        // Other replicas' sends never reach this ring
+        RecentMessageBuffer buffer = new RecentMessageBuffer(true, 10, 30, 64, "relay");
+        buffer.append(message(1));
+
+        assertNull(buffer.after(SUBJECT, 0, 50));
+    }
+
+    private static ChatMessageDto message(long id) {
+        return new ChatMessageDto(id, SUBJECT, 1L, "Asha", "STUDENT", "hello " + id, null, false);
+    }
+
+    private static List<Long> ids(List<ChatMessageDto> messages) {
+        List<Long> ids = new ArrayList<>();
+        for (ChatMessageDto message : messages) {
+            ids.add(message.getId());
+        }
+        return ids;
+    }
+}
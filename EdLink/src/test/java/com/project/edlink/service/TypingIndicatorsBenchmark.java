@@ -0,0 +1,182 @@
+package com.project.edlink.service;
+
+import com.project.edlink.dto.TypingUpdateDto;
+import com.project.edlink.security.AuthenticatedUser;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sustained typing load: 500 and 2,000 concurrent typists spread over a few subjects, each
+ * signalling every 250 ms (eight times what the web client sends), with the production ttl,
+ * throttle and broadcast tick. Reports offered and accepted signals per second, typing() call
+ * latency, flush tick time and frames per second. Run with: mvn -Pbenchmark test
+ *
+ * Covers TypingIndicators up to the hand-off to the broker; the inbound channel, the
+ * @MessageMapping dispatch and the socket writes are not part of it. Each run has a warm-up
+ * pass before the measured pass, and the numbers are only comparable on the same machine.
+ */
+class TypingIndicatorsBenchmark {
+
+    private static final int[] TYPIST_COUNTS = {500, 2_000};
+    private static final int SUBJECTS = 5;
+    private static final int DRIVER_THREADS = 64;
+    private static final long SIGNAL_INTERVAL_MILLIS = 250;
+    private static final long TICK_MILLIS = 1_000;
+    private static final long WARMUP_MILLIS = 2_000;
+    private static final long MEASURE_MILLIS = 5_000;
+
+    @Test
+    void signalsFramesAndLatencyUnderLoad() throws Exception {
+        StringBuilder table = new StringBuilder(String.format("%n%-8s %10s %10s %10s %10s %10s %10s %10s%n",
+                "typists", "offered/s", "accept/s", "call p50", "call p99", "tick p99", "tick max", "frames/s"));
+        table.append(String.format("%-8s %10s %10s %10s %10s %10s %10s %10s%n",
+                "", "", "", "us", "us", "us", "us", ""));
+        for (int typists : TYPIST_COUNTS) {
+            Result result = run(typists);
+            table.append(result.row(typists));
+
+            // Sanity: the throttle caps accepted signals near one per typist per second, and the
+            // broadcast stays one frame per subject per tick however many people type
+            assertTrue(result.acceptedPerSecond <= typists * 1.2, "accepted " + result.acceptedPerSecond);
+            assertTrue(result.framesPerSecond <= SUBJECTS * 1.2, "frames " + result.framesPerSecond);
+        }
+        System.out.println(table);
+    }
+
+    private static Result run(int typists) throws Exception {
+        CountingPublisher publisher = new CountingPublisher();
+        TypingIndicators indicators = new TypingIndicators(5_000, 1_000);
+        ReflectionTestUtils.setField(indicators, "topicPublisher", publisher);
+        ReflectionTestUtils.setField(indicators, "clusterBus", new ClusterBus("simple"));
+
+        List<Long> tickNanos = Collections.synchronizedList(new ArrayList<>());
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+        ticker.scheduleAtFixedRate(() -> {
+            long start = System.nanoTime();
+            indicators.flush();
+            tickNanos.add(System.nanoTime() - start);
+        }, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+        try {
+            drive(indicators, typists, WARMUP_MILLIS);
+            tickNanos.clear();
+            publisher.frames.reset();
+            Map<String, Object> before = indicators.getStats();
+            Load load = drive(indicators, typists, MEASURE_MILLIS);
+            Map<String, Object> after = indicators.getStats();
+
+            double seconds = MEASURE_MILLIS / 1000.0;
+            long accepted = (long) after.get("acceptedSignals") - (long) before.get("acceptedSignals");
+            long[] ticks;
+            synchronized (tickNanos) {
+                ticks = tickNanos.stream().mapToLong(Long::longValue).sorted().toArray();
+            }
+            return new Result(load.signals / seconds, accepted / seconds,
+                    load.callNanos[load.callNanos.length / 2] / 1000,
+                    load.callNanos[Math.min(load.callNanos.length - 1, load.callNanos.length * 99 / 100)] / 1000,
+                    ticks.length == 0 ? 0 : ticks[Math.min(ticks.length - 1, ticks.length * 99 / 100)] / 1000,
+                    ticks.length == 0 ? 0 : ticks[ticks.length - 1] / 1000,
+                    publisher.frames.sum() / seconds);
+        } finally {
+            ticker.shutdownNow();
+        }
+    }
+
+    /**
+     * Each driver thread owns every DRIVER_THREADS-th typist and signals for each one when due,
+     * with a random phase so signals do not arrive in lockstep.
+     */
+    private static Load drive(TypingIndicators indicators, int typists, long millis) throws Exception {
+        ExecutorService drivers = Executors.newFixedThreadPool(DRIVER_THREADS);
+        CountDownLatch done = new CountDownLatch(DRIVER_THREADS);
+        List<long[]> samples = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger signals = new AtomicInteger();
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+
+        for (int t = 0; t < DRIVER_THREADS; t++) {
+            int thread = t;
+            drivers.execute(() -> {
+                try {
+                    List<AuthenticatedUser> users = new ArrayList<>();
+                    for (int i = thread; i < typists; i += DRIVER_THREADS) {
+                        users.add(new AuthenticatedUser(10_000L + i, "s" + i + "@edlink.test", "Student " + i, "STUDENT"));
+                    }
+                    long interval = TimeUnit.MILLISECONDS.toNanos(SIGNAL_INTERVAL_MILLIS);
+                    long[] due = new long[users.size()];
+                    for (int u = 0; u < due.length; u++) {
+                        due[u] = System.nanoTime() + ThreadLocalRandom.current().nextLong(interval);
+                    }
+                    long[] callNanos = new long[(int) (users.size() * (millis / SIGNAL_INTERVAL_MILLIS + 2))];
+                    int calls = 0;
+                    long now;
+                    while ((now = System.nanoTime()) < end) {
+                        for (int u = 0; u < users.size(); u++) {
+                            if (due[u] > now) {
+                                continue;
+                            }
+                            AuthenticatedUser user = users.get(u);
+                            long start = System.nanoTime();
+                            indicators.typing(user, user.getId() % SUBJECTS, true);
+                            if (calls < callNanos.length) {
+                                callNanos[calls++] = System.nanoTime() - start;
+                            }
+                            due[u] += interval;
+                        }
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    }
+                    signals.addAndGet(calls);
+                    samples.add(Arrays.copyOf(callNanos, calls));
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(millis + 30_000, TimeUnit.MILLISECONDS));
+        drivers.shutdown();
+
+        long[] all = samples.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return new Load(signals.get(), all.length == 0 ? new long[]{0} : all);
+    }
+
+    private record Load(long signals, long[] callNanos) {
+    }
+
+    private record Result(double offeredPerSecond, double acceptedPerSecond, long callP50Micros,
+                          long callP99Micros, long tickP99Micros, long tickMaxMicros, double framesPerSecond) {
+        String row(int typists) {
+            return String.format("%-8d %10.0f %10.0f %10d %10d %10d %10d %10.1f%n", typists, offeredPerSecond,
+                    acceptedPerSecond, callP50Micros, callP99Micros, tickP99Micros, tickMaxMicros, framesPerSecond);
+        }
+    }
+
+    /**
+     * Counts the frames handed to the broker; the set sizes are not needed here.
+     */
+    private static final class CountingPublisher extends TopicPublisher {
+        private final LongAdder frames = new LongAdder();
+
+        @Override
+        public void send(String destination, Object payload, Map<String, String> nativeHeaders) {
+            if (payload instanceof TypingUpdateDto) {
+                frames.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.project.edlink.service;
+
+import com.project.edlink.dto.TypingUpdateDto;
+import com.project.edlink.security.AuthenticatedUser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+class TypingIndicatorsTest {
+
+    private static final Long SUBJECT = 9L;
+    private static final int TYPISTS = 500;
+    private static final int SIGNALS_PER_TYPIST = 20;
+
+    private TopicPublisher publisher;
+    private ClusterBus clusterBus;
+    private TypingIndicators typing;
+
+    @BeforeEach
+    void setUp() {
+        publisher = mock(TopicPublisher.class);
+        clusterBus = new ClusterBus("simple");
+        typing = new TypingIndicators(60_000, 60_000);
+        ReflectionTestUtils.setField(typing, "topicPublisher", publisher);
+        ReflectionTestUtils.setField(typing, "clusterBus", clusterBus);
+    }
+
+    /**
+     * Correctness under contention: throttling and the one-frame-per-tick set. Throughput and
+     * latency under sustained load are in TypingIndicatorsBenchmark.
+     */
+    @Test
+    void fiveHundredConcurrentTypistsCollapseIntoOneFrame() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(TYPISTS);
+        for (int i = 0; i < TYPISTS; i++) {
+            AuthenticatedUser user = new AuthenticatedUser(1000L + i, "s" + i + "@edlink.test", "Student " + i, "STUDENT");
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    for (int k = 0; k < SIGNALS_PER_TYPIST; k++) {
+                        typing.typing(user, SUBJECT, true);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        // One accepted signal per typist, the rest throttled
+        assertEquals((long) TYPISTS, typing.getStats().get("acceptedSignals"));
+        assertEquals((long) TYPISTS * (SIGNALS_PER_TYPIST - 1), typing.getStats().get("throttledSignals"));
+        assertEquals(TYPISTS, typing.typingUserIds(SUBJECT).size());
+
+        typing.flush();
+        typing.flush();
+
+        // Second tick has nothing new to say
+        ArgumentCaptor<Object> frame = ArgumentCaptor.forClass(Object.class);
+        verify(publisher, times(1)).send(eq("/topic/typing." + SUBJECT), frame.capture());
+        verifyNoMoreInteractions(publisher);
+        assertEquals(TYPISTS, ((TypingUpdateDto) frame.getValue()).getTypists().size());
+    }
+
+    @Test
+    void frameCarriesDisplayNamesAndThisReplicasOrigin() {
+        typing.typing(new AuthenticatedUser(1L, "asha@edlink.test", "Asha Rao", "STUDENT"), SUBJECT, true);
+        typing.typing(new AuthenticatedUser(2L, "ravi@edlink.test", "Ravi Menon", "TEACHER"), SUBJECT, true);
+        typing.flush();
+
+        ArgumentCaptor<Object> frame = ArgumentCaptor.forClass(Object.class);
+        verify(publisher).send(eq("/topic/typing." + SUBJECT), frame.capture());
+        TypingUpdateDto update = (TypingUpdateDto) frame.getValue();
+
+        // Browsers merge the sets of all replicas by origin; emails never leave the server
+        assertEquals(clusterBus.getOrigin(), update.getOrigin());
+        assertEquals(SUBJECT, update.getSubjectId());
+        Map<Long, String> names = update.getTypists().stream()
+                .collect(Collectors.toMap(TypingUpdateDto.Typist::getUserId, TypingUpdateDto.Typist::getName));
+        assertEquals(Map.of(1L, "Asha Rao", 2L, "Ravi Menon"), names);
+    }
+
+    @Test
+    void stopSignalAndDeadlineClearTheSet() throws Exception {
+        TypingIndicators shortLived = new TypingIndicators(20, 0);
+        ReflectionTestUtils.setField(shortLived, "topicPublisher", publisher);
+        ReflectionTestUtils.setField(shortLived, "clusterBus", clusterBus);
+        AuthenticatedUser asha = new AuthenticatedUser(1L, "asha@edlink.test", "Asha", "STUDENT");
+        AuthenticatedUser ravi = new AuthenticatedUser(2L, "ravi@edlink.test", "Ravi", "STUDENT");
+
+        shortLived.typing(asha, SUBJECT, true);
+        shortLived.typing(ravi, SUBJECT, true);
+        shortLived.typing(asha, SUBJECT, false);
+        assertEquals(1, shortLived.typingUserIds(SUBJECT).size());
+
+        Thread.sleep(50);
+        shortLived.flush();
+        assertTrue(shortLived.typingUserIds(SUBJECT).isEmpty());
+    }
+}
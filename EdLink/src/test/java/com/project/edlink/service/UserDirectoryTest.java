@@ -0,0 +1,90 @@
+package com.project.edlink.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.edlink.dto.UserProfile;
+import com.project.edlink.entities.User;
+import com.project.edlink.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserDirectoryTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final ChatVersions chatVersions = mock(ChatVersions.class);
+
+    private UserDirectory directory(long ttlMillis, ClusterBus clusterBus) {
+        UserDirectory directory = new UserDirectory(100, ttlMillis);
+        ReflectionTestUtils.setField(directory, "userRepository", userRepository);
+        ReflectionTestUtils.setField(directory, "chatVersions", chatVersions);
+        ReflectionTestUtils.setField(directory, "clusterBus", clusterBus);
+        directory.listen();
+        return directory;
+    }
+
+    @Test
+    void profileChangedOnAnotherReplicaIsReloaded() {
+        ClusterBus clusterBus = new ClusterBus("relay");
+        ReflectionTestUtils.setField(clusterBus, "objectMapper", new ObjectMapper());
+        UserDirectory directory = directory(300_000, clusterBus);
+        when(userRepository.findProfilesByIdIn(anyCollection()))
+                .thenReturn(List.of(new UserProfile(7L, "Asha", "STUDENT", "ACTIVE")))
+                .thenReturn(List.of(new UserProfile(7L, "Asha Rao", "STUDENT", "ACTIVE")));
+
+        assertEquals("Asha", directory.getAll(List.of(7L)).get(7L).getName());
+        assertEquals("Asha", directory.getAll(List.of(7L)).get(7L).getName());
+
+        String event = "{\"origin\":\"1-other\",\"type\":\"" + UserDirectory.CLUSTER_EVENT + "\",\"body\":{\"userId\":7}}";
+        clusterBus.receive(MessageBuilder.withPayload(event.getBytes(StandardCharsets.UTF_8)).build());
+
+        assertEquals("Asha Rao", directory.getAll(List.of(7L)).get(7L).getName());
+        assertEquals(1L, directory.getStats().get("remoteInvalidations"));
+        verify(userRepository, times(2)).findProfilesByIdIn(anyCollection());
+    }
+
+    @Test
+    void localUpdateWritesThroughWithoutAQuery() {
+        UserDirectory directory = directory(300_000, new ClusterBus("simple"));
+        when(userRepository.findProfilesByIdIn(anyCollection()))
+                .thenReturn(List.of(new UserProfile(7L, "Asha", "STUDENT", "ACTIVE")));
+        directory.getAll(List.of(7L));
+
+        directory.update(new User(7L, "Asha Rao", "asha@edlink.test", "hash", "STUDENT", "10", "ACTIVE"));
+
+        assertEquals("Asha Rao", directory.getAll(List.of(7L)).get(7L).getName());
+        verify(userRepository, times(1)).findProfilesByIdIn(anyCollection());
+        verify(chatVersions).profilesChanged();
+    }
+
+    @Test
+    void expiredEntryIsReloaded() {
+        UserDirectory directory = directory(20, new ClusterBus("simple"));
+        when(userRepository.findProfilesByIdIn(anyCollection()))
+                .thenReturn(List.of(new UserProfile(7L, "Asha", "STUDENT", "ACTIVE")))
+                .thenReturn(List.of(new UserProfile(7L, "Asha", "STUDENT", "DISABLED")));
+
+        assertEquals("ACTIVE", directory.getAll(List.of(7L)).get(7L).getStatus());
+        awaitTrue(() -> "DISABLED".equals(directory.getAll(List.of(7L)).get(7L).getStatus()));
+        assertEquals(1L, directory.getStats().get("expired"));
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.onSpinWait();
+        }
+    }
+}
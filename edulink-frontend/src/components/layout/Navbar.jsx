@@ -8,8 +8,8 @@ export const Navbar = () => {
   const { user, logout, isAuthenticated } = useAuth()
   const navigate = useNavigate()
 
-  const handleLogout = () => {
-    logout()
+  const handleLogout = async () => {
+    await logout()
     navigate('/login')
   }
 
@@ -148,8 +148,8 @@ export const AuthProvider = ({ children }) => {
     }
   }
 
-  const logout = () => {
-    authService.logout()
+  const logout = async () => {
+    await authService.logout()
     setUser(null)
     toast.success('Logged out successfully')
   }
@@ -10,11 +10,30 @@ import { chatService } from '../../services/chatService'
 import { subjectService } from '../../services/subjectService'
 import { useAuth } from '../../context/AuthContext'
 import { cn } from '../../utils/cn'
+import { decodeJWT } from '../../utils/jwt'
+import { chatMessageFromCbor, decodeCbor, isCborFrame, presenceFromCbor, readCborItems } from '../../utils/cbor'
 import { Circle, MessageSquare, Users } from 'lucide-react'
 import SockJS from 'sockjs-client/dist/sockjs'
 import { Client } from '@stomp/stompjs'
 
 const POLL_INTERVAL_MS = 15000
+const PAGE_SIZE = 50
+// How long to wait for STOMP before falling back to the SSE stream
+const STREAM_FALLBACK_MS = 10000
+// Typing signals while the user keeps typing; the server forgets a typist after ~5 s
+const TYPING_SIGNAL_MS = 2000
+// Seq epochs remembered for gap detection (one per replica and per subject lane)
+const MAX_SEQ_EPOCHS = 16
+// Binary (CBOR) broadcasts over a plain WebSocket to /ws-binary instead of SockJS to /ws.
+// The server only switches if edlink.ws.cbor.enabled is on; otherwise frames stay JSON.
+const USE_CBOR = import.meta.env.VITE_WS_CODEC === 'cbor'
+
+// One item or an array of them per frame, in either encoding
+const readItems = (message, fromCbor) => {
+  if (isCborFrame(message)) return readCborItems(message, fromCbor)
+  const body = JSON.parse(message.body)
+  return Array.isArray(body) ? body : [body]
+}
 
 export const SubjectChat = ({ mode }) => {
   const { subjectId } = useParams()
@@ -24,6 +43,8 @@ export const SubjectChat = ({ mode }) => {
   const [loadingSubject, setLoadingSubject] = useState(true)
   const [messages, setMessages] = useState([])
   const [loadingMessages, setLoadingMessages] = useState(true)
+  const [hasOlder, setHasOlder] = useState(false)
+  const [loadingOlder, setLoadingOlder] = useState(false)
   const [input, setInput] = useState('')
   const [sending, setSending] = useState(false)
   const [participants, setParticipants] = useState(null)
@@ -31,6 +52,15 @@ export const SubjectChat = ({ mode }) => {
   const messagesEndRef = useRef(null)
   const pollingRef = useRef(null)
   const stompClientRef = useRef(null)
+  const streamRef = useRef(null)
+  const lastMessageIdRef = useRef(null)
+  // Last frame number and message id per seq epoch; in relay mode every replica counts under its own epoch
+  const seqByEpochRef = useRef(new Map())
+  const lastTypingSignalRef = useRef(0)
+  const [typists, setTypists] = useState([])
+  // Latest typing set per server replica; shown as their union
+  const typingByOriginRef = useRef({})
+  const skipScrollRef = useRef(false)
 
   const numericSubjectId = useMemo(() => parseInt(subjectId, 10), [subjectId])
 
@@ -67,8 +97,10 @@ export const SubjectChat = ({ mode }) => {
         await Promise.all([
           chatService.pingPresence(numericSubjectId).catch(() => {}),
           (async () => {
-            const res = await chatService.getMessages(numericSubjectId)
-            setMessages(res.data || [])
+            const res = await chatService.getMessages(numericSubjectId, { limit: PAGE_SIZE })
+            const page = res.data || []
+            setMessages(page)
+            setHasOlder(page.length >= PAGE_SIZE)
           })(),
           (async () => {
             const res = await chatService.getParticipants(numericSubjectId)
@@ -86,7 +118,28 @@ export const SubjectChat = ({ mode }) => {
     fetchInitialData()
   }, [numericSubjectId])
 
+  const loadOlderMessages = async () => {
+    if (loadingOlder || messages.length === 0) return
+    setLoadingOlder(true)
+    try {
+      const res = await chatService.getMessages(numericSubjectId, { before: messages[0].id, limit: PAGE_SIZE })
+      const older = res.data || []
+      // Prepending history should not jump the view to the bottom
+      skipScrollRef.current = true
+      setMessages((prev) => [...older, ...prev])
+      setHasOlder(older.length >= PAGE_SIZE)
+    } catch (error) {
+      console.error('Error loading older messages:', error)
+    } finally {
+      setLoadingOlder(false)
+    }
+  }
+
   useEffect(() => {
+    if (skipScrollRef.current) {
+      skipScrollRef.current = false
+      return
+    }
     const scrollToBottom = () => {
       if (messagesEndRef.current) {
         messagesEndRef.current.scrollIntoView({ behavior: 'smooth' })
@@ -121,6 +174,70 @@ export const SubjectChat = ({ mode }) => {
     }
   }, [numericSubjectId])
 
+  useEffect(() => {
+    lastMessageIdRef.current = messages.length > 0 ? messages[messages.length - 1].id : null
+  }, [messages])
+
+  // Same dedupe for every live source: REST, STOMP and the SSE stream can overlap, and a resume
+  // replay can land after newer live messages, so each message goes in at its id's place
+  const appendMessage = (message) => {
+    if (!message || !message.id) return
+    setMessages((prev) => {
+      let index = prev.length
+      while (index > 0 && prev[index - 1].id > message.id) index--
+      if (index > 0 && prev[index - 1].id === message.id) return prev
+      if (index === prev.length) return [...prev, message]
+      return [...prev.slice(0, index), message, ...prev.slice(index)]
+    })
+  }
+
+  const catchUp = (afterId = lastMessageIdRef.current) => {
+    if (!afterId) return
+    chatService
+      .getMessages(numericSubjectId, { after: afterId, limit: 200 })
+      .then((res) => (res.data || []).forEach(appendMessage))
+      .catch((error) => console.error('Error catching up on messages:', error))
+  }
+
+  const reloadNewestPage = () => {
+    chatService
+      .getMessages(numericSubjectId, { limit: PAGE_SIZE })
+      .then((res) => {
+        const page = res.data || []
+        setMessages(page)
+        setHasOlder(page.length >= PAGE_SIZE)
+      })
+      .catch((error) => console.error('Error reloading messages:', error))
+  }
+
+  // Chat frames carry seq "{epoch}:{n}"; a jump within one epoch means a frame was lost.
+  // Epochs of different replicas interleave, so each one is checked against its own last n,
+  // and the catch-up starts after that epoch's last message: another replica's newer ids
+  // may already be on screen.
+  const checkSequence = (seq, frameMessages) => {
+    if (!seq) return
+    const [epoch, n] = seq.split(':')
+    const seqByEpoch = seqByEpochRef.current
+    const previous = seqByEpoch.get(epoch)
+    const lastId = frameMessages.reduce((max, m) => (m?.id > max ? m.id : max), previous?.lastId ?? 0)
+    seqByEpoch.delete(epoch)
+    seqByEpoch.set(epoch, { n: Number(n), lastId })
+    // Keep only the most recently used epochs; idle subjects start new ones on the server
+    if (seqByEpoch.size > MAX_SEQ_EPOCHS) {
+      seqByEpoch.delete(seqByEpoch.keys().next().value)
+    }
+    if (previous && Number(n) > previous.n + 1) {
+      catchUp(previous.lastId || undefined)
+    }
+  }
+
+  const closeStream = () => {
+    if (streamRef.current) {
+      streamRef.current.close()
+      streamRef.current = null
+    }
+  }
+
   // WebSocket (STOMP) connection for real-time messages and presence updates
   useEffect(() => {
     const token = localStorage.getItem('token')
@@ -128,43 +245,79 @@ export const SubjectChat = ({ mode }) => {
       return
     }
 
+    // Proxies that break SockJS leave STOMP unconnected; receive messages over SSE instead
+    const fallbackTimer = setTimeout(() => {
+      if (!stompClientRef.current?.connected && !streamRef.current) {
+        streamRef.current = chatService.openStream(numericSubjectId, appendMessage)
+      }
+    }, STREAM_FALLBACK_MS)
+
     const baseUrl = import.meta.env.VITE_API_BASE_URL || 'http://localhost:8075'
     // SockJS expects an http/https URL; it will handle the WebSocket upgrade internally
     const wsUrl = `${baseUrl}/ws`
+    // SockJS only carries text, so binary frames need the plain WebSocket endpoint
+    const binaryWsUrl = `${baseUrl.replace(/^http/, 'ws')}/ws-binary`
 
     const client = new Client({
-      webSocketFactory: () => new SockJS(wsUrl),
+      webSocketFactory: () => (USE_CBOR ? new WebSocket(binaryWsUrl) : new SockJS(wsUrl)),
       connectHeaders: {
         Authorization: `Bearer ${token}`,
+        ...(USE_CBOR ? { codec: 'cbor' } : {}),
       },
       debug: () => {},
       reconnectDelay: 5000,
     })
 
     client.onConnect = () => {
+      closeStream()
+
+      // After a reconnect (e.g. evicted as a slow consumer) the server replays what we missed
+      // since our last message; a gap too large to replay asks us to reload the newest page
+      const resumeHeaders = lastMessageIdRef.current
+        ? { 'last-seen-id': String(lastMessageIdRef.current) }
+        : {}
+      seqByEpochRef.current = new Map()
+      typingByOriginRef.current = {}
+      setTypists([])
+
       // Subscribe to chat messages
       client.subscribe(`/topic/chat.${numericSubjectId}`, (message) => {
         try {
-          const body = JSON.parse(message.body)
-          if (!body || !body.id) return
+          if (message.headers['resume-gap']) {
+            reloadNewestPage()
+            return
+          }
+          // Replays and busy subjects send one array per frame
+          const frameMessages = readItems(message, chatMessageFromCbor)
+          checkSequence(message.headers.seq, frameMessages)
+          frameMessages.forEach(appendMessage)
+        } catch (e) {
+          console.error('Error parsing chat message from WebSocket:', e)
+        }
+      }, resumeHeaders)
 
-          setMessages((prev) => {
-            // Avoid duplicates (we may already have this from REST)
-            if (prev.some((m) => m.id === body.id)) {
-              return prev
-            }
-            return [...prev, body]
+      // Who's typing: each replica's whole set, at most once a second per replica
+      client.subscribe(`/topic/typing.${numericSubjectId}`, (message) => {
+        try {
+          const body = isCborFrame(message) ? decodeCbor(message.binaryBody) : JSON.parse(message.body)
+          const selfId = decodeJWT(localStorage.getItem('token'))?.uid
+          typingByOriginRef.current[body?.origin || ''] = body?.typists || []
+          const merged = new Map()
+          Object.values(typingByOriginRef.current).flat().forEach((t) => {
+            if (t.userId !== selfId) merged.set(t.userId, t)
           })
+          setTypists([...merged.values()])
         } catch (e) {
-          console.error('Error parsing chat message from WebSocket:', e)
+          console.error('Error parsing typing update from WebSocket:', e)
         }
       })
 
       // Subscribe to presence updates
       client.subscribe(`/topic/presence.${numericSubjectId}`, (message) => {
         try {
-          const presence = JSON.parse(message.body)
-          if (!presence || !presence.userId) return
+          // Server batches online/offline transitions into one array per tick
+          const updates = readItems(message, presenceFromCbor).filter((p) => p && p.userId)
+          if (updates.length === 0) return
 
           setParticipants((prev) => {
             if (!prev) return prev
@@ -172,21 +325,23 @@ export const SubjectChat = ({ mode }) => {
             const existing = prev.participants || []
             const updatedList = [...existing]
 
-            const idx = updatedList.findIndex((p) => p.userId === presence.userId)
-            if (idx >= 0) {
-              updatedList[idx] = {
-                ...updatedList[idx],
-                online: presence.online,
+            updates.forEach((presence) => {
+              const idx = updatedList.findIndex((p) => p.userId === presence.userId)
+              if (idx >= 0) {
+                updatedList[idx] = {
+                  ...updatedList[idx],
+                  online: presence.online,
+                }
+              } else {
+                // If not in list yet, add a minimal entry; full list will be refreshed periodically
+                updatedList.push({
+                  userId: presence.userId,
+                  name: presence.userName,
+                  role: presence.role,
+                  online: presence.online,
+                })
               }
-            } else {
-              // If not in list yet, add a minimal entry; full list will be refreshed periodically
-              updatedList.push({
-                userId: presence.userId,
-                name: presence.userName,
-                role: presence.role,
-                online: presence.online,
-              })
-            }
+            })
 
             const onlineStudents = updatedList.filter(
               (p) => p.role === 'STUDENT' && p.online
@@ -214,6 +369,8 @@ export const SubjectChat = ({ mode }) => {
     stompClientRef.current = client
 
     return () => {
+      clearTimeout(fallbackTimer)
+      closeStream()
       if (stompClientRef.current) {
         stompClientRef.current.deactivate()
         stompClientRef.current = null
@@ -221,6 +378,24 @@ export const SubjectChat = ({ mode }) => {
     }
   }, [numericSubjectId])
 
+  const sendTyping = (typing) => {
+    const client = stompClientRef.current
+    if (!client || !client.connected) return
+    client.publish({
+      destination: '/app/typing',
+      body: JSON.stringify({ subjectId: numericSubjectId, typing }),
+    })
+  }
+
+  const handleInputChange = (value) => {
+    setInput(value)
+    const now = Date.now()
+    if (value.trim() && now - lastTypingSignalRef.current >= TYPING_SIGNAL_MS) {
+      lastTypingSignalRef.current = now
+      sendTyping(true)
+    }
+  }
+
   const handleSend = async (e) => {
     e?.preventDefault()
     const trimmed = input.trim()
@@ -240,12 +415,14 @@ export const SubjectChat = ({ mode }) => {
           }),
         })
         setInput('')
+        lastTypingSignalRef.current = 0
+        sendTyping(false)
       } else {
         // Fallback to REST API
         const res = await chatService.sendMessage(numericSubjectId, trimmed)
         const message = res.data
         if (message) {
-          setMessages((prev) => [...prev, message])
+          appendMessage(message)
           setInput('')
         }
       }
@@ -316,7 +493,15 @@ export const SubjectChat = ({ mode }) => {
                   No messages yet. Start the conversation!
                 </div>
               ) : (
-                messages.map((msg) => (
+                <>
+                {hasOlder && (
+                  <div className="flex justify-center">
+                    <Button variant="outline" size="sm" onClick={loadOlderMessages} disabled={loadingOlder}>
+                      {loadingOlder ? 'Loading...' : 'Load older messages'}
+                    </Button>
+                  </div>
+                )}
+                {messages.map((msg) => (
                   <div
                     key={msg.id}
                     className={cn('flex w-full', msg.own ? 'justify-end' : 'justify-start')}
@@ -346,16 +531,25 @@ export const SubjectChat = ({ mode }) => {
                       <p className="whitespace-pre-wrap break-words text-[13px]">{msg.content}</p>
                     </div>
                   </div>
-                ))
+                ))}
+                </>
               )}
               <div ref={messagesEndRef} />
             </div>
 
+            {typists.length > 0 && (
+              <p className="mt-1 text-xs text-muted-foreground">
+                {typists.length > 3
+                  ? `${typists.length} people are typing…`
+                  : `${typists.map((t) => t.name || 'Someone').join(', ')} ${typists.length === 1 ? 'is' : 'are'} typing…`}
+              </p>
+            )}
+
             <form onSubmit={handleSend} className="mt-2 flex items-center gap-2">
               <Input
                 placeholder="Type your message..."
                 value={input}
-                onChange={(e) => setInput(e.target.value)}
+                onChange={(e) => handleInputChange(e.target.value)}
                 onKeyDown={(e) => {
                   if (e.key === 'Enter' && !e.shiftKey) {
                     e.preventDefault()
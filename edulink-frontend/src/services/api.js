@@ -5,8 +5,29 @@ const api = axios.create({
   headers: {
     'Content-Type': 'application/json',
   },
+  // Refresh token travels as an HttpOnly cookie scoped to /api/auth
+  withCredentials: true,
 })
 
+let refreshPromise = null
+
+// One refresh call shared by every request that hit 401 at the same time
+export const refreshAccessToken = () => {
+  if (!refreshPromise) {
+    refreshPromise = api
+      .post('/api/auth/refresh')
+      .then((response) => {
+        const token = response.data?.data
+        localStorage.setItem('token', token)
+        return token
+      })
+      .finally(() => {
+        refreshPromise = null
+      })
+  }
+  return refreshPromise
+}
+
 // Request interceptor to attach token
 api.interceptors.request.use(
   (config) => {
@@ -26,7 +47,22 @@ api.interceptors.response.use(
   (response) => {
     return response
   },
-  (error) => {
+  async (error) => {
+    const original = error.config
+    const isAuthCall = original?.url?.startsWith('/api/auth/')
+
+    // Access tokens are short-lived: try one silent refresh before giving up
+    if (error.response?.status === 401 && original && !original._retried && !isAuthCall) {
+      original._retried = true
+      try {
+        const token = await refreshAccessToken()
+        original.headers.Authorization = `Bearer ${token}`
+        return api(original)
+      } catch (refreshError) {
+        // fall through to the logout handling below
+      }
+    }
+
     if (error.response?.status === 401) {
       // Unauthorized - clear token and redirect to login
       localStorage.removeItem('token')
@@ -16,9 +16,16 @@ export const authService = {
     return response.data
   },
 
-  logout: () => {
-    localStorage.removeItem('token')
-    localStorage.removeItem('user')
+  logout: async () => {
+    // The server ends this session by its refresh cookie; local state is cleared regardless
+    try {
+      await api.post('/api/auth/logout')
+    } catch (error) {
+      // already logged out or offline
+    } finally {
+      localStorage.removeItem('token')
+      localStorage.removeItem('user')
+    }
   },
 
   forgotPassword: async (email) => {
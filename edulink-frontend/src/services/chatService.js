@@ -1,10 +1,23 @@
-import api from './api'
+import api, { refreshAccessToken } from './api'
+import { decodeJWT } from '../utils/jwt'
+
+const baseUrl = import.meta.env.VITE_API_BASE_URL || 'http://localhost:8090'
+
+// Reopen the stream with a fresh token when the current one has less than this left
+const STREAM_TOKEN_MARGIN_MS = 60000
 
 export const chatService = {
-  async getMessages(subjectId, afterId) {
+  // Keyset paging: no cursor = newest page, before = older page, after = newer messages
+  async getMessages(subjectId, { before, after, limit } = {}) {
     const params = {}
-    if (afterId) {
-      params.afterId = afterId
+    if (before) {
+      params.before = before
+    }
+    if (after) {
+      params.after = after
+    }
+    if (limit) {
+      params.limit = limit
     }
     const response = await api.get(`/api/chat/subjects/${subjectId}/messages`, { params })
     return response.data
@@ -20,6 +33,75 @@ export const chatService = {
     return response.data
   },
 
+  // SSE fallback when SockJS cannot connect. EventSource cannot set headers, so the token
+  // goes in the query string. The browser's own reconnect would reuse that URL, expired token
+  // and all, so on any error we close the stream ourselves, refresh the token if it is (nearly)
+  // expired or the last attempt never opened, and reopen after the last id we saw.
+  openStream(subjectId, onMessage) {
+    let source = null
+    let lastEventId = null
+    let retryTimer = null
+    let failures = 0
+    let opened = false
+    let closed = false
+
+    const connect = async () => {
+      let token = localStorage.getItem('token')
+      const claims = token ? decodeJWT(token) : null
+      const expiresSoon = !claims || (claims.exp && claims.exp * 1000 - Date.now() < STREAM_TOKEN_MARGIN_MS)
+      if (expiresSoon || failures > 0) {
+        try {
+          token = await refreshAccessToken()
+        } catch (e) {
+          // api.js already sent the user back to the login page
+          return
+        }
+      }
+      if (closed) {
+        return
+      }
+
+      const params = new URLSearchParams({ access_token: token || '' })
+      if (lastEventId) {
+        params.set('after', lastEventId)
+      }
+      opened = false
+      source = new EventSource(`${baseUrl}/api/chat/subjects/${subjectId}/stream?${params}`, { withCredentials: true })
+      source.addEventListener('open', () => {
+        opened = true
+      })
+      source.addEventListener('message', (event) => {
+        lastEventId = event.lastEventId || lastEventId
+        try {
+          onMessage(JSON.parse(event.data))
+        } catch (e) {
+          console.error('Error parsing chat message from stream:', e)
+        }
+      })
+      source.onerror = () => {
+        source.close()
+        if (closed) {
+          return
+        }
+        // A server-side timeout ends an open stream; reopen at once, back off on real failures
+        failures = opened ? 0 : failures + 1
+        const delay = failures === 0 ? 0 : Math.min(30000, 1000 * 2 ** failures)
+        retryTimer = setTimeout(connect, delay)
+      }
+    }
+
+    connect()
+    return {
+      close() {
+        closed = true
+        clearTimeout(retryTimer)
+        if (source) {
+          source.close()
+        }
+      },
+    }
+  },
+
   async getParticipants(subjectId) {
     const response = await api.get(`/api/chat/subjects/${subjectId}/participants`)
     return response.data
@@ -0,0 +1,154 @@
+// Minimal CBOR (RFC 8949) decoder for the server's ".cbor" STOMP topics.
+// Covers what Jackson writes: integers, strings, arrays, maps (definite or indefinite length),
+// floats, booleans and null. Tags are skipped.
+
+const textDecoder = new TextDecoder()
+
+export const decodeCbor = (bytes) => {
+  const data = bytes instanceof Uint8Array ? bytes : new Uint8Array(bytes)
+  const view = new DataView(data.buffer, data.byteOffset, data.byteLength)
+  let offset = 0
+
+  const readLength = (info) => {
+    if (info < 24) return info
+    if (info === 24) return view.getUint8(offset++)
+    if (info === 25) {
+      offset += 2
+      return view.getUint16(offset - 2)
+    }
+    if (info === 26) {
+      offset += 4
+      return view.getUint32(offset - 4)
+    }
+    if (info === 27) {
+      offset += 8
+      // Same precision as JSON.parse gives the JSON topics
+      return Number(view.getBigUint64(offset - 8))
+    }
+    if (info === 31) return -1
+    throw new Error(`Unsupported CBOR length ${info}`)
+  }
+
+  const readHalf = () => {
+    const half = view.getUint16(offset)
+    offset += 2
+    const exponent = (half >> 10) & 0x1f
+    const fraction = half & 0x3ff
+    const sign = half & 0x8000 ? -1 : 1
+    if (exponent === 0) return sign * 2 ** -14 * (fraction / 1024)
+    if (exponent === 31) return fraction ? NaN : sign * Infinity
+    return sign * 2 ** (exponent - 15) * (1 + fraction / 1024)
+  }
+
+  const readChunks = (major, length, read) => {
+    if (length >= 0) return read(length)
+    // Indefinite length: definite chunks of the same major type until the break byte
+    const parts = []
+    while (data[offset] !== 0xff) {
+      const initial = data[offset++]
+      if (initial >> 5 !== major) throw new Error('Bad CBOR string chunk')
+      parts.push(read(readLength(initial & 0x1f)))
+    }
+    offset++
+    return parts
+  }
+
+  const readItem = () => {
+    const initial = data[offset++]
+    const major = initial >> 5
+    const info = initial & 0x1f
+
+    switch (major) {
+      case 0:
+        return readLength(info)
+      case 1:
+        return -1 - readLength(info)
+      case 2: {
+        const read = (n) => {
+          offset += n
+          return data.slice(offset - n, offset)
+        }
+        const value = readChunks(2, readLength(info), read)
+        return Array.isArray(value) ? new Uint8Array(value.flatMap((chunk) => [...chunk])) : value
+      }
+      case 3: {
+        const read = (n) => {
+          offset += n
+          return textDecoder.decode(data.subarray(offset - n, offset))
+        }
+        const value = readChunks(3, readLength(info), read)
+        return Array.isArray(value) ? value.join('') : value
+      }
+      case 4: {
+        const length = readLength(info)
+        const items = []
+        while (length >= 0 ? items.length < length : data[offset] !== 0xff) {
+          items.push(readItem())
+        }
+        if (length < 0) offset++
+        return items
+      }
+      case 5: {
+        const length = readLength(info)
+        const map = {}
+        let count = 0
+        while (length >= 0 ? count < length : data[offset] !== 0xff) {
+          const key = readItem()
+          map[key] = readItem()
+          count++
+        }
+        if (length < 0) offset++
+        return map
+      }
+      case 6:
+        readLength(info)
+        return readItem()
+      default:
+        if (info === 20) return false
+        if (info === 21) return true
+        if (info === 22 || info === 23) return null
+        if (info === 25) return readHalf()
+        if (info === 26) {
+          offset += 4
+          return view.getFloat32(offset - 4)
+        }
+        if (info === 27) {
+          offset += 8
+          return view.getFloat64(offset - 8)
+        }
+        throw new Error(`Unsupported CBOR simple value ${info}`)
+    }
+  }
+
+  return readItem()
+}
+
+// Chat messages and presence updates are positional arrays, see StompCodecs on the server
+export const chatMessageFromCbor = ([id, subjectId, senderId, senderName, senderRole, content, createdAt, own]) => ({
+  id,
+  subjectId,
+  senderId,
+  senderName,
+  senderRole,
+  content,
+  createdAt,
+  own,
+})
+
+export const presenceFromCbor = ([userId, subjectId, userName, role, online]) => ({
+  userId,
+  subjectId,
+  userName,
+  role,
+  online,
+})
+
+export const isCborFrame = (message) => message.headers['content-type'] === 'application/octet-stream'
+
+// One positional array per frame, or an array of them (batches, replays, presence ticks)
+export const readCborItems = (message, fromArray) => {
+  const body = decodeCbor(message.binaryBody)
+  if (!Array.isArray(body)) return []
+  const batch = body.length === 0 || Array.isArray(body[0])
+  return (batch ? body : [body]).map(fromArray)
+}